@@ -0,0 +1,40 @@
+package org.group.jcommon.jackson.util;
+
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.core.util.BufferRecyclers;
+
+/**
+ * Where a {@link RecyclingJsonFactory} gets the {@link BufferRecycler} that
+ * each parser and generator takes its buffers from and returns them to.
+ * Recyclers may be handed to several threads at once, which Jackson's
+ * recyclers support.
+ */
+public interface BufferRecyclingStrategy {
+
+    BufferRecycler acquire();
+
+    /**
+     * Jackson's default: a recycler per thread, softly referenced. Cheap for
+     * long-lived pooled threads, but every new thread allocates its own
+     * buffers.
+     */
+    @SuppressWarnings("deprecation")
+    static BufferRecyclingStrategy threadLocal() {
+        return BufferRecyclers::getBufferRecycler;
+    }
+
+    /**
+     * No recycling, every parser and generator allocates new buffers.
+     */
+    static BufferRecyclingStrategy none() {
+        return BufferRecycler::new;
+    }
+
+    /**
+     * A pool shared by all threads, striped by the number of processors,
+     * that keeps buffers of up to {@link StripedBufferPool#DEFAULT_MAX_BUFFER_SIZE}.
+     */
+    static StripedBufferPool striped() {
+        return new StripedBufferPool();
+    }
+}
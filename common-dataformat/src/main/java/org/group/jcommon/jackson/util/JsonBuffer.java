@@ -0,0 +1,101 @@
+package org.group.jcommon.jackson.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that {@link ObjectMappers} appends JSON to. It is
+ * meant to be kept and reused: the bytes are read in place through
+ * {@link #array()} and {@link #size()} or {@link #asByteBuffer()}, and
+ * {@link #reset()} keeps the array for the next values.
+ *
+ * Not thread safe.
+ */
+public class JsonBuffer extends OutputStream {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private byte[] bytes;
+    private int size;
+
+    public JsonBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public JsonBuffer(int capacity) {
+        this.bytes = new byte[Math.max(capacity, 1)];
+    }
+
+    /**
+     * A buffer on a recycled array, which it may outgrow.
+     */
+    JsonBuffer(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(size + 1);
+        bytes[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(size + len);
+        System.arraycopy(b, off, bytes, size, len);
+        size += len;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new OutOfMemoryError("JSON larger than 2GB");
+        }
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(capacity, 2L * bytes.length)));
+        }
+    }
+
+    /**
+     * The backing array, valid up to {@link #size()}, until the next write.
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the buffer, keeping its capacity.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    void truncate(int size) {
+        this.size = size;
+    }
+
+    /**
+     * A view of the content, valid until the next write.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, size);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, 0, size, StandardCharsets.UTF_8);
+    }
+}
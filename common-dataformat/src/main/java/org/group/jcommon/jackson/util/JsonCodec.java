@@ -0,0 +1,235 @@
+package org.group.jcommon.jackson.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import org.group.jcommon.jackson.DataFormatException;
+
+/**
+ * Reads and writes values of one type with readers and writers resolved
+ * once, see {@link ObjectMappers#codec(Class)}. Values are written as the
+ * codec's type, not as their runtime class.
+ *
+ * Codecs are thread safe, and take the configuration of the mappers when
+ * they are created.
+ */
+public class JsonCodec<T> {
+    private final ObjectReader reader;
+    private final ObjectReader streamReader;
+    private final ObjectWriter writer;
+    private final ObjectWriter prettyWriter;
+    private final ObjectWriter compactWriter;
+    // whether a failure of the compact writer holds for every value of the type
+    private final boolean compactFailureRemembered;
+    // set once the compact writer failed, so that it isn't tried again
+    private volatile boolean compactUnsupported;
+
+    JsonCodec(JavaType type, ObjectMapper mapper, ObjectMapper compactMapper) {
+        this.reader = mapper.readerFor(type);
+        this.streamReader = reader.without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        this.writer = mapper.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.prettyWriter = writer.withDefaultPrettyPrinter();
+        this.compactWriter = compactMapper == mapper ? writer
+                : compactMapper.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // the serializers of containers and abstract types depend on the values
+        this.compactFailureRemembered = !type.isContainerType() && !type.isReferenceType() && !type.isAbstract()
+                && !type.isJavaLangObject();
+    }
+
+    /**
+     * @throws DataFormatException
+     */
+    public T mustRead(@Nullable String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return reader.readValue(json);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Reads UTF-8 <code>json</code>.
+     *
+     * @throws DataFormatException
+     */
+    public T mustRead(@Nullable byte[] json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return reader.readValue(json);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Reads the UTF-8 JSON between the position and the limit of
+     * <code>json</code>, leaving the position unchanged.
+     *
+     * @throws DataFormatException
+     */
+    public T mustRead(@Nullable ByteBuffer json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            if (json.hasArray()) {
+                return reader.readValue(json.array(), json.arrayOffset() + json.position(), json.remaining());
+            }
+            return reader.readValue(new ByteBufferBackedInputStream(json.duplicate()));
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Reads from <code>json</code>, which is not closed.
+     *
+     * @throws DataFormatException
+     */
+    public T mustRead(@Nullable InputStream json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return streamReader.readValue(json);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * @throws DataFormatException
+     */
+    public String mustWrite(@Nullable T value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return writer.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * @throws DataFormatException
+     */
+    public byte[] mustWriteAsBytes(@Nullable T value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Writes <code>value</code> to <code>out</code>, which is not closed; see
+     * {@link JsonBuffer} to append to a reused buffer.
+     *
+     * @throws DataFormatException
+     */
+    public void mustWrite(@Nullable T value, OutputStream out) {
+        try {
+            writer.writeValue(out, value);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * @throws DataFormatException
+     */
+    public String mustWritePretty(@Nullable T value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return prettyWriter.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Writes <code>value</code> with the compact writer if the type supports
+     * it, see {@link ObjectMappers#writeObjectCompact(Object)}. When the
+     * compact writer fails, <code>value</code> is written with the default
+     * writer; the compact writer is no longer tried for a bean type whose
+     * definition it rejects, but still is for each value of a container.
+     *
+     * @throws DataFormatException
+     */
+    public String writeCompact(@Nullable T value) {
+        try {
+            if (!compactUnsupported) {
+                try {
+                    return compactWriter.writeValueAsString(value);
+                } catch (JsonMappingException e) {
+                    compactFailed(e);
+                }
+            }
+            return writer.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Appends <code>value</code> to <code>buffer</code> with the compact
+     * writer if the type supports it.
+     *
+     * @throws DataFormatException
+     */
+    public void writeCompact(@Nullable T value, JsonBuffer buffer) {
+        try {
+            if (!compactUnsupported) {
+                int start = buffer.size();
+                try {
+                    compactWriter.writeValue(buffer, value);
+                    return;
+                } catch (JsonMappingException e) {
+                    compactFailed(e);
+                    buffer.truncate(start);
+                }
+            }
+            writer.writeValue(buffer, value);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    private void compactFailed(JsonMappingException e) {
+        if (compactFailureRemembered && e instanceof InvalidDefinitionException) {
+            compactUnsupported = true;
+        }
+    }
+
+    /**
+     * Whether values are still written with the compact writer.
+     */
+    boolean compactSupported() {
+        return !compactUnsupported;
+    }
+}
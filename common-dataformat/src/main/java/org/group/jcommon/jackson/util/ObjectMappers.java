@@ -1,40 +1,73 @@
 package org.group.jcommon.jackson.util;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nullable;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.BufferRecycler;
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
-import com.google.common.collect.Maps;
+import com.google.protobuf.FieldMask;
 import com.google.protobuf.Message;
 import com.google.protobuf.MessageOrBuilder;
-import com.google.protobuf.util.JsonFormat;
 
 import org.group.jcommon.jackson.DataFormatException;
+import org.group.jcommon.protobuf.jackson.FieldMaskProjection;
 import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.group.jcommon.protobuf.jackson.ProtobufTrees;
+import org.group.jcommon.protobuf.jackson.ProtobufWarmup;
+import org.group.jcommon.protobuf.jackson.ProtocolBufferMessageBodyProvider;
 
 public class ObjectMappers {
 
-    private static final ObjectMapper DEFAULT_INSTANCE = new ObjectMapper();
+    private static final ObjectMapper DEFAULT_INSTANCE = new ObjectMapper(recyclingFactory());
 
-    private static final ObjectMapper SNAKE_CASE_INSTANCE = new ObjectMapper();
+    private static final ObjectMapper SNAKE_CASE_INSTANCE = new ObjectMapper(recyclingFactory());
 
-    private static final ObjectMapper COMPACT_INSTANCE = new ObjectMapper();
+    private static final ObjectMapper COMPACT_INSTANCE = new ObjectMapper(recyclingFactory());
 
     private static final ObjectMapper YAML_INSTANCE = new ObjectMapper(new YAMLFactory());
 
     private static final XmlMapper XML_INSTANCE = new XmlMapper();
 
+    /**
+     * Reads and writes messages as {@code JsonFormat} does, ignoring unknown
+     * fields and enum values.
+     */
+    private static final ObjectMapper PROTO_JSON_INSTANCE = ProtocolBufferMessageBodyProvider
+            .defaultObjectMapper(recyclingFactory());
+
+    private static final ObjectWriter PROTO_JSON_PRETTY_WRITER;
+
+    // larger buffers are not given back between values
+    private static final int MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+
+    // kept with the classes, so that the codecs don't keep their class loaders
+    private static final ClassValue<JsonCodec<?>> CLASS_CODECS = new ClassValue<JsonCodec<?>>() {
+        @Override
+        protected JsonCodec<?> computeValue(Class<?> type) {
+            return newCodec(DEFAULT_INSTANCE.constructType(type));
+        }
+    };
+
+    private static final ConcurrentMap<JavaType, JsonCodec<?>> TYPE_CODECS = new ConcurrentHashMap<>();
+
     static {
         DEFAULT_INSTANCE.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         DEFAULT_INSTANCE.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
@@ -52,10 +85,41 @@ public class ObjectMappers {
         COMPACT_INSTANCE.registerModule(new ProtobufModule());
 
         XML_INSTANCE.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        PROTO_JSON_INSTANCE.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        PROTO_JSON_INSTANCE.configure(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL, true);
+        PROTO_JSON_PRETTY_WRITER = PROTO_JSON_INSTANCE.writerWithDefaultPrettyPrinter();
+    }
+
+    private static RecyclingJsonFactory recyclingFactory() {
+        return new RecyclingJsonFactory(BufferRecyclingStrategy.threadLocal());
+    }
+
+    /**
+     * Changes where the JSON mappers of this class, including the ones of
+     * {@link #codec(Class)}, get their parser and generator buffers, and
+     * {@link #writeObjectCompact(Object, OutputStream)} its own. The
+     * default is Jackson's, per thread; a {@link StripedBufferPool} suits
+     * virtual or short-lived threads better. YAML and XML are unaffected.
+     */
+    public static void setBufferRecycling(BufferRecyclingStrategy strategy) {
+        for (ObjectMapper mapper : new ObjectMapper[] { DEFAULT_INSTANCE, SNAKE_CASE_INSTANCE, COMPACT_INSTANCE,
+                PROTO_JSON_INSTANCE }) {
+            ((RecyclingJsonFactory) mapper.getFactory()).setStrategy(strategy);
+        }
     }
 
-    private static final ConcurrentMap<Class<? extends Message>, Method> PROTOBUF_DEFAULT_INSTANCE_METHOD_CACHE = Maps
-            .newConcurrentMap();
+    /**
+     * Warms up the message types of <code>warmup</code> on the mappers of
+     * this class that read and write messages, and their codecs, see
+     * {@link #codec(Class)}.
+     */
+    public static ProtobufWarmup.Report warmUp(ProtobufWarmup warmup) {
+        for (Class<? extends Message> type : warmup.messageTypes()) {
+            codec(type);
+        }
+        return warmup.warmUp(DEFAULT_INSTANCE, COMPACT_INSTANCE, PROTO_JSON_INSTANCE);
+    }
 
     public static ObjectMapper get() {
         return DEFAULT_INSTANCE;
@@ -73,6 +137,46 @@ public class ObjectMappers {
         return XML_INSTANCE;
     }
 
+    /**
+     * Mapper for the proto3 JSON mapping: default values are omitted, 64-bit
+     * integers are strings, enums are names and well-known types have their
+     * special representations. Unknown fields and enum values are ignored.
+     */
+    public static ObjectMapper protoJson() {
+        return PROTO_JSON_INSTANCE;
+    }
+
+    /**
+     * Codec of <code>clazz</code>, with its reader and writers resolved once
+     * and cached. Messages are read and written as proto3 JSON, see
+     * {@link #protoJson()}, other types with the default mapper.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JsonCodec<T> codec(Class<T> clazz) {
+        return (JsonCodec<T>) CLASS_CODECS.get(clazz);
+    }
+
+    /**
+     * Codec of the type of <code>typeRef</code>, see {@link #codec(Class)}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JsonCodec<T> codec(TypeReference<T> typeRef) {
+        JavaType type = DEFAULT_INSTANCE.getTypeFactory().constructType(typeRef);
+        return (JsonCodec<T>) TYPE_CODECS.computeIfAbsent(type, ObjectMappers::newCodec);
+    }
+
+    private static JsonCodec<?> newCodec(JavaType type) {
+        if (MessageOrBuilder.class.isAssignableFrom(type.getRawClass())) {
+            return new JsonCodec<>(type, PROTO_JSON_INSTANCE, PROTO_JSON_INSTANCE);
+        }
+        return new JsonCodec<>(type, DEFAULT_INSTANCE, COMPACT_INSTANCE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JsonCodec<Object> runtimeCodec(Object o) {
+        return (JsonCodec<Object>) codec(o.getClass());
+    }
+
     /**
      * Deserialize <code>json</code> to an object of type <code>clazz</code>.
      *
@@ -89,23 +193,93 @@ public class ObjectMappers {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public static <T extends Message> T mustReadProto(@Nullable String json, Class<T> clazz) {
+    /**
+     * Deserialize UTF-8 <code>json</code> to an object of type
+     * <code>clazz</code>.
+     *
+     * @throws DataFormatException
+     */
+    public static <T> T mustReadValue(@Nullable byte[] json, Class<T> clazz) {
         if (json == null) {
             return null;
         }
         try {
-            Method method = PROTOBUF_DEFAULT_INSTANCE_METHOD_CACHE.get(clazz);
-            if (method == null) {
-                method = clazz.getMethod("getDefaultInstance");
-                PROTOBUF_DEFAULT_INSTANCE_METHOD_CACHE.put(clazz, method);
-            }
-            Message.Builder b = ((T) method.invoke(null)).toBuilder();
-            JsonFormat.parser().ignoringUnknownFields().merge(json, b);
-            return (T) (b.build());
+            return DEFAULT_INSTANCE.readValue(json, clazz);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Deserialize the UTF-8 JSON between the position and the limit of
+     * <code>json</code> to an object of type <code>clazz</code>. The position
+     * is left unchanged.
+     *
+     * @throws DataFormatException
+     */
+    public static <T> T mustReadValue(@Nullable ByteBuffer json, Class<T> clazz) {
+        if (json == null) {
+            return null;
+        }
+        try (JsonParser parser = parser(DEFAULT_INSTANCE, json)) {
+            return DEFAULT_INSTANCE.readValue(parser, clazz);
         } catch (IOException e) {
             throw new DataFormatException(e);
-        } catch (SecurityException | ReflectiveOperationException e) {
+        }
+    }
+
+    /**
+     * Deserialize the JSON read from <code>json</code> to an object of type
+     * <code>clazz</code>. The stream is not closed.
+     *
+     * @throws DataFormatException
+     */
+    public static <T> T mustReadValue(@Nullable InputStream json, Class<T> clazz) {
+        if (json == null) {
+            return null;
+        }
+        try (JsonParser parser = parser(DEFAULT_INSTANCE, json)) {
+            return DEFAULT_INSTANCE.readValue(parser, clazz);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Deserialize proto3 JSON <code>json</code> to a message of type
+     * <code>clazz</code>, ignoring unknown fields.
+     *
+     * @throws DataFormatException
+     */
+    public static <T extends Message> T mustReadProto(@Nullable String json, Class<T> clazz) {
+        return codec(clazz).mustRead(json);
+    }
+
+    public static <T extends Message> T mustReadProto(@Nullable byte[] json, Class<T> clazz) {
+        return codec(clazz).mustRead(json);
+    }
+
+    public static <T extends Message> T mustReadProto(@Nullable ByteBuffer json, Class<T> clazz) {
+        return codec(clazz).mustRead(json);
+    }
+
+    public static <T extends Message> T mustReadProto(@Nullable InputStream json, Class<T> clazz) {
+        return codec(clazz).mustRead(json);
+    }
+
+    /**
+     * Converts a proto3 JSON tree to a message of type <code>clazz</code>,
+     * without writing it out; see {@link ProtobufTrees}.
+     *
+     * @throws DataFormatException
+     */
+    public static <T extends Message> T mustReadProto(@Nullable JsonNode tree, Class<T> clazz) {
+        if (tree == null) {
+            return null;
+        }
+        try {
+            return ProtobufTrees.fromTree(tree, clazz, PROTO_JSON_INSTANCE);
+        } catch (IOException | IllegalArgumentException e) {
             throw new DataFormatException(e);
         }
     }
@@ -127,6 +301,58 @@ public class ObjectMappers {
         }
     }
 
+    public static <T> T mustReadValue(@Nullable byte[] json, TypeReference<T> typeRef) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return DEFAULT_INSTANCE.readValue(json, typeRef);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    public static <T> T mustReadValue(@Nullable ByteBuffer json, TypeReference<T> typeRef) {
+        if (json == null) {
+            return null;
+        }
+        try (JsonParser parser = parser(DEFAULT_INSTANCE, json)) {
+            return DEFAULT_INSTANCE.readValue(parser, typeRef);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    public static <T> T mustReadValue(@Nullable InputStream json, TypeReference<T> typeRef) {
+        if (json == null) {
+            return null;
+        }
+        try (JsonParser parser = parser(DEFAULT_INSTANCE, json)) {
+            return DEFAULT_INSTANCE.readValue(parser, typeRef);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Parser of the bytes between the position and the limit, read in place
+     * when the buffer has an array.
+     */
+    private static JsonParser parser(ObjectMapper mapper, ByteBuffer json) throws IOException {
+        if (json.hasArray()) {
+            return mapper.getFactory().createParser(json.array(), json.arrayOffset() + json.position(),
+                    json.remaining());
+        }
+        return mapper.getFactory().createParser(new ByteBufferBackedInputStream(json.duplicate()));
+    }
+
+    /**
+     * Parser of the stream, which is left open.
+     */
+    private static JsonParser parser(ObjectMapper mapper, InputStream json) throws IOException {
+        return mapper.getFactory().createParser(json).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
     /**
      * Serialize <code>o</code> to a string.
      *
@@ -138,7 +364,7 @@ public class ObjectMappers {
         }
         try {
             if (o instanceof MessageOrBuilder) {
-                return JsonFormat.printer().omittingInsignificantWhitespace().print((MessageOrBuilder) o);
+                return PROTO_JSON_INSTANCE.writeValueAsString(protoValue((MessageOrBuilder) o));
             } else {
                 return DEFAULT_INSTANCE.writeValueAsString(o);
             }
@@ -147,13 +373,59 @@ public class ObjectMappers {
         }
     }
 
+    /**
+     * Serialize <code>o</code> to UTF-8 bytes.
+     *
+     * @throws DataFormatException
+     */
+    public static byte[] mustWriteValueAsBytes(@Nullable Object o) {
+        if (o == null) {
+            return null;
+        }
+        try {
+            if (o instanceof MessageOrBuilder) {
+                return PROTO_JSON_INSTANCE.writeValueAsBytes(protoValue((MessageOrBuilder) o));
+            } else {
+                return DEFAULT_INSTANCE.writeValueAsBytes(o);
+            }
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Serialize <code>o</code> to <code>out</code>, which is not closed. Pass
+     * a reused {@link JsonBuffer} to append to it without allocating a new
+     * array per value. A null <code>o</code> is written as <code>null</code>.
+     *
+     * @throws DataFormatException
+     */
+    public static void mustWriteValue(@Nullable Object o, OutputStream out) {
+        try {
+            write(DEFAULT_INSTANCE, o, out);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    private static void write(ObjectMapper mapper, @Nullable Object o, OutputStream out) throws IOException {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (o instanceof MessageOrBuilder) {
+                PROTO_JSON_INSTANCE.writeValue(generator, protoValue((MessageOrBuilder) o));
+            } else {
+                mapper.writeValue(generator, o);
+            }
+        }
+    }
+
     public static String mustWriteValuePretty(@Nullable Object o) {
         if (o == null) {
             return null;
         }
         try {
             if (o instanceof MessageOrBuilder) {
-                return JsonFormat.printer().print((MessageOrBuilder) o);
+                return PROTO_JSON_PRETTY_WRITER.writeValueAsString(protoValue((MessageOrBuilder) o));
             } else {
                 return DEFAULT_INSTANCE.writerWithDefaultPrettyPrinter().writeValueAsString(o);
             }
@@ -162,6 +434,50 @@ public class ObjectMappers {
         }
     }
 
+    /**
+     * Builders are written as their messages, so that builders of well-known
+     * types get the same special representations.
+     */
+    private static MessageOrBuilder protoValue(MessageOrBuilder o) {
+        return o instanceof Message.Builder ? ((Message.Builder) o).buildPartial() : o;
+    }
+
+    /**
+     * Serialize the fields of <code>message</code> selected by
+     * <code>fieldMask</code> to a string, as if it had been trimmed with
+     * <code>FieldMaskUtil.merge</code>; see {@link FieldMaskProjection}.
+     *
+     * @throws DataFormatException
+     */
+    public static String mustWriteProto(@Nullable MessageOrBuilder message, FieldMask fieldMask) {
+        if (message == null) {
+            return null;
+        }
+        try {
+            return PROTO_JSON_INSTANCE.writer().withAttribute(FieldMaskProjection.ATTRIBUTE,
+                    FieldMaskProjection.of(fieldMask)).writeValueAsString(protoValue(message));
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    /**
+     * Converts <code>message</code> to the tree of its proto3 JSON, without
+     * writing it out; see {@link ProtobufTrees}.
+     *
+     * @throws DataFormatException
+     */
+    public static JsonNode mustProtoToTree(@Nullable MessageOrBuilder message) {
+        if (message == null) {
+            return null;
+        }
+        try {
+            return ProtobufTrees.toTree(message, PROTO_JSON_INSTANCE);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
     public static JsonNode mustReadTree(@Nullable String json) {
         if (json == null) {
             return null;
@@ -173,6 +489,39 @@ public class ObjectMappers {
         }
     }
 
+    public static JsonNode mustReadTree(@Nullable byte[] json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return DEFAULT_INSTANCE.readTree(json);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    public static JsonNode mustReadTree(@Nullable ByteBuffer json) {
+        if (json == null) {
+            return null;
+        }
+        try (JsonParser parser = parser(DEFAULT_INSTANCE, json)) {
+            return DEFAULT_INSTANCE.readTree(parser);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
+    public static JsonNode mustReadTree(@Nullable InputStream json) {
+        if (json == null) {
+            return null;
+        }
+        try (JsonParser parser = parser(DEFAULT_INSTANCE, json)) {
+            return DEFAULT_INSTANCE.readTree(parser);
+        } catch (IOException e) {
+            throw new DataFormatException(e);
+        }
+    }
+
     /**
      * Serialize <code>o</code> to a string using compact JSON serializer (i.e.,
      * NON_DEFAULT only) if possible.
@@ -180,21 +529,53 @@ public class ObjectMappers {
      * @throws DataFormatException
      */
     public static String writeObjectCompact(@Nullable Object o) {
+        if (o == null) {
+            return "null";
+        }
+        // Not all objects can be serialized using COMPACT_INSTANCE. E.g.,
+        // objects without default constructor. So the codec falls back to
+        // standard serializer, and remembers it for bean classes.
+        Object value = o instanceof MessageOrBuilder ? protoValue((MessageOrBuilder) o) : o;
+        return runtimeCodec(value).writeCompact(value);
+    }
+
+    /**
+     * Serialize <code>o</code> to <code>out</code>, which is not closed, using
+     * compact JSON serializer if possible. A null <code>o</code> is written as
+     * <code>null</code>.
+     *
+     * @throws DataFormatException
+     */
+    public static void writeObjectCompact(@Nullable Object o, OutputStream out) {
+        // buffered, so that nothing is written before falling back, in an
+        // array recycled like the generators' buffers, see setBufferRecycling
+        BufferRecycler recycler = COMPACT_INSTANCE.getFactory()._getBufferRecycler();
+        JsonBuffer buffer = new JsonBuffer(recycler.allocByteBuffer(BufferRecycler.BYTE_WRITE_CONCAT_BUFFER));
         try {
-            if (o instanceof MessageOrBuilder) {
-                return JsonFormat.printer().omittingInsignificantWhitespace().print((MessageOrBuilder) o);
-            } else {
-                try {
-                    // Not all objects can be serialized using COMPACT_INSTANCE.
-                    // E.g., objects without default constructor. So we fall back
-                    // to standard serializer.
-                    return COMPACT_INSTANCE.writeValueAsString(o);
-                } catch (JsonMappingException e) {
-                    return DEFAULT_INSTANCE.writeValueAsString(o);
-                }
-            }
+            writeObjectCompact(o, buffer);
+            buffer.writeTo(out);
         } catch (IOException e) {
             throw new DataFormatException(e);
+        } finally {
+            if (buffer.array().length <= MAX_POOLED_BUFFER_SIZE) {
+                recycler.releaseByteBuffer(BufferRecycler.BYTE_WRITE_CONCAT_BUFFER, buffer.array());
+            }
+        }
+    }
+
+    /**
+     * Append <code>o</code> to <code>buffer</code> using compact JSON
+     * serializer if possible. A null <code>o</code> is written as
+     * <code>null</code>.
+     *
+     * @throws DataFormatException
+     */
+    public static void writeObjectCompact(@Nullable Object o, JsonBuffer buffer) {
+        if (o == null) {
+            mustWriteValue(null, buffer);
+            return;
         }
+        Object value = o instanceof MessageOrBuilder ? protoValue((MessageOrBuilder) o) : o;
+        runtimeCodec(value).writeCompact(value, buffer);
     }
-}
\ No newline at end of file
+}
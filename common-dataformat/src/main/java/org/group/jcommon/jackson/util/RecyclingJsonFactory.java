@@ -0,0 +1,45 @@
+package org.group.jcommon.jackson.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+
+/**
+ * {@link JsonFactory} whose parsers and generators get their buffers from a
+ * {@link BufferRecyclingStrategy}, which can be changed at any time.
+ */
+public class RecyclingJsonFactory extends JsonFactory {
+    private static final long serialVersionUID = 1L;
+
+    private transient volatile BufferRecyclingStrategy strategy;
+
+    public RecyclingJsonFactory(BufferRecyclingStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    protected RecyclingJsonFactory(RecyclingJsonFactory src, ObjectCodec codec) {
+        super(src, codec);
+        this.strategy = src.strategy;
+    }
+
+    public BufferRecyclingStrategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(BufferRecyclingStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    @Override
+    public BufferRecycler _getBufferRecycler() {
+        BufferRecyclingStrategy current = strategy;
+        // null once deserialized
+        return current != null ? current.acquire() : super._getBufferRecycler();
+    }
+
+    @Override
+    public JsonFactory copy() {
+        _checkInvalidCopy(RecyclingJsonFactory.class);
+        return new RecyclingJsonFactory(this, null);
+    }
+}
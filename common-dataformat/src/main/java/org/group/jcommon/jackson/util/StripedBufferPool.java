@@ -0,0 +1,170 @@
+package org.group.jcommon.jackson.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.util.BufferRecycler;
+
+/**
+ * Buffer recycling shared by all threads, so that short-lived or virtual
+ * threads reuse the buffers of earlier ones instead of allocating their own.
+ *
+ * Threads are spread over stripes, one per processor rounded up to a power
+ * of two, to keep contention low. Each stripe holds at most one buffer of
+ * each kind, taken and returned with atomic operations: a thread that finds
+ * the slot empty allocates, and a buffer returned to a full slot is dropped.
+ * Buffers larger than the maximum size are never kept, which bounds the
+ * retained memory, see {@link #maxRetainedBytes()}.
+ */
+public class StripedBufferPool implements BufferRecyclingStrategy {
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 64 * 1024;
+
+    // byte and char buffer kinds of BufferRecycler
+    private static final int BYTE_BUFFER_KINDS = 4;
+    private static final int CHAR_BUFFER_KINDS = 4;
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final int maxBufferSize;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public StripedBufferPool() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * @param stripes       rounded up to a power of two
+     * @param maxBufferSize largest buffer kept, in bytes or chars
+     */
+    public StripedBufferPool(int stripes, int maxBufferSize) {
+        int count = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = count - 1;
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    @Override
+    public BufferRecycler acquire() {
+        long id = Thread.currentThread().getId();
+        return stripes[(int) (id ^ (id >>> 32)) & mask];
+    }
+
+    /**
+     * Number of buffers requested by parsers and generators.
+     */
+    public long acquired() {
+        return acquired.sum();
+    }
+
+    /**
+     * Number of requests served with a pooled buffer.
+     */
+    public long reused() {
+        return reused.sum();
+    }
+
+    /**
+     * Number of requests that allocated a new buffer.
+     */
+    public long allocated() {
+        return allocated.sum();
+    }
+
+    /**
+     * Number of returned buffers that were not kept, being too large or
+     * their slot already taken.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Memory currently held by the pool, in bytes.
+     */
+    public long retainedBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.retainedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Upper bound of {@link #retainedBytes()}.
+     */
+    public long maxRetainedBytes() {
+        return (long) stripes.length * maxBufferSize * (BYTE_BUFFER_KINDS + 2 * CHAR_BUFFER_KINDS);
+    }
+
+    @Override
+    public String toString() {
+        return "StripedBufferPool{stripes=" + stripes.length + ", acquired=" + acquired() + ", reused=" + reused()
+                + ", allocated=" + allocated() + ", dropped=" + dropped() + ", retainedBytes=" + retainedBytes() + "}";
+    }
+
+    private final class Stripe extends BufferRecycler {
+
+        Stripe() {
+            super(BYTE_BUFFER_KINDS, CHAR_BUFFER_KINDS);
+        }
+
+        @Override
+        public byte[] allocByteBuffer(int ix, int minSize) {
+            acquired.increment();
+            int size = Math.max(minSize, byteBufferLength(ix));
+            byte[] buffer = _byteBuffers.getAndSet(ix, null);
+            if (buffer != null && buffer.length >= size) {
+                reused.increment();
+                return buffer;
+            }
+            allocated.increment();
+            return balloc(size);
+        }
+
+        @Override
+        public void releaseByteBuffer(int ix, byte[] buffer) {
+            if (buffer.length > maxBufferSize || !_byteBuffers.compareAndSet(ix, null, buffer)) {
+                dropped.increment();
+            }
+        }
+
+        @Override
+        public char[] allocCharBuffer(int ix, int minSize) {
+            acquired.increment();
+            int size = Math.max(minSize, charBufferLength(ix));
+            char[] buffer = _charBuffers.getAndSet(ix, null);
+            if (buffer != null && buffer.length >= size) {
+                reused.increment();
+                return buffer;
+            }
+            allocated.increment();
+            return calloc(size);
+        }
+
+        @Override
+        public void releaseCharBuffer(int ix, char[] buffer) {
+            if (buffer.length > maxBufferSize || !_charBuffers.compareAndSet(ix, null, buffer)) {
+                dropped.increment();
+            }
+        }
+
+        long retainedBytes() {
+            long bytes = 0;
+            for (int i = 0; i < _byteBuffers.length(); i++) {
+                byte[] buffer = _byteBuffers.get(i);
+                bytes += buffer == null ? 0 : buffer.length;
+            }
+            for (int i = 0; i < _charBuffers.length(); i++) {
+                char[] buffer = _charBuffers.get(i);
+                bytes += buffer == null ? 0 : 2L * buffer.length;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.google.protobuf.ByteOutput;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * The backing array of a {@link ByteString}, obtained without copying through
+ * {@link UnsafeByteOperations#unsafeWriteTo}. The array is shared with the
+ * {@code ByteString} and must only be read.
+ */
+final class ByteStringContent extends ByteOutput {
+  private static final byte[] EMPTY = new byte[0];
+
+  byte[] array;
+  int offset;
+  int length;
+  private boolean fragmented;
+
+  private ByteStringContent() {
+  }
+
+  /**
+   * Returns the content of {@code bytes}, or {@code null} if it is not backed
+   * by a single array (e.g. ropes or direct buffers).
+   */
+  static ByteStringContent of(ByteString bytes) throws IOException {
+    ByteStringContent content = new ByteStringContent();
+    UnsafeByteOperations.unsafeWriteTo(bytes, content);
+    if (content.fragmented) {
+      return null;
+    }
+    if (content.array == null) {
+      content.array = EMPTY;
+    }
+    return content;
+  }
+
+  @Override
+  public void writeLazy(byte[] value, int offset, int length) {
+    if (array != null) {
+      fragmented = true;
+    } else {
+      this.array = value;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  @Override
+  public void writeLazy(ByteBuffer value) {
+    if (value.hasArray()) {
+      writeLazy(value.array(), value.arrayOffset() + value.position(), value.remaining());
+    } else {
+      fragmented = true;
+    }
+  }
+
+  // the array passed to the eager methods may be reused by the caller
+
+  @Override
+  public void write(byte value) {
+    fragmented = true;
+  }
+
+  @Override
+  public void write(byte[] value, int offset, int length) {
+    fragmented = true;
+  }
+
+  @Override
+  public void write(ByteBuffer value) {
+    fragmented = true;
+  }
+}
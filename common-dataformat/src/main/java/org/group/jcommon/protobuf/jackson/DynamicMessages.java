@@ -0,0 +1,85 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.protobuf.BoolValue;
+import com.google.protobuf.BytesValue;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DoubleValue;
+import com.google.protobuf.Duration;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Message;
+import com.google.protobuf.StringValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.UInt32Value;
+import com.google.protobuf.UInt64Value;
+import com.google.protobuf.Value;
+
+/**
+ * Reading and writing {@link DynamicMessage}s. They are written like any
+ * message; reading needs the descriptor, given to the reader as the
+ * {@link #DESCRIPTOR_ATTRIBUTE} attribute, see {@link #reader}.
+ *
+ * Dynamic well-known types, such as a {@code google.protobuf.Timestamp} field
+ * of a dynamic message, are converted to and from their generated classes, so
+ * that they get the same special representations.
+ */
+public final class DynamicMessages {
+  public static final String DESCRIPTOR_ATTRIBUTE = DynamicMessages.class.getName() + ".descriptor";
+
+  private static final Map<String, Message> WELL_KNOWN_TYPES = new HashMap<>();
+
+  static {
+    for (Message defaultInstance : Arrays.asList(Duration.getDefaultInstance(), FieldMask.getDefaultInstance(),
+        ListValue.getDefaultInstance(), Struct.getDefaultInstance(), Timestamp.getDefaultInstance(),
+        Value.getDefaultInstance(), DoubleValue.getDefaultInstance(), FloatValue.getDefaultInstance(),
+        Int64Value.getDefaultInstance(), UInt64Value.getDefaultInstance(), Int32Value.getDefaultInstance(),
+        UInt32Value.getDefaultInstance(), BoolValue.getDefaultInstance(), StringValue.getDefaultInstance(),
+        BytesValue.getDefaultInstance())) {
+      WELL_KNOWN_TYPES.put(defaultInstance.getDescriptorForType().getFullName(), defaultInstance);
+    }
+  }
+
+  private DynamicMessages() {
+  }
+
+  /**
+   * Reader of {@code mapper} for dynamic messages of type {@code descriptor}.
+   */
+  public static ObjectReader reader(ObjectMapper mapper, Descriptor descriptor) {
+    return mapper.readerFor(DynamicMessage.class).withAttribute(DESCRIPTOR_ATTRIBUTE, descriptor);
+  }
+
+  /**
+   * The default instance of the generated well-known type with the name of
+   * {@code descriptor}, or null.
+   */
+  public static Message wellKnownType(Descriptor descriptor) {
+    return WELL_KNOWN_TYPES.get(descriptor.getFullName());
+  }
+
+  static Collection<Message> wellKnownTypes() {
+    return WELL_KNOWN_TYPES.values();
+  }
+
+  public static Message toGenerated(Message message, Message defaultInstance) throws InvalidProtocolBufferException {
+    return defaultInstance.getParserForType().parseFrom(message.toByteString());
+  }
+
+  public static DynamicMessage toDynamic(Message message, Descriptor descriptor)
+      throws InvalidProtocolBufferException {
+    return DynamicMessage.parseFrom(descriptor, message.toByteString());
+  }
+}
@@ -0,0 +1,127 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Message;
+
+/**
+ * Message descriptors loaded at runtime from {@link FileDescriptorSet}s, by
+ * full name, for reading and writing {@link com.google.protobuf.DynamicMessage}s.
+ *
+ * Registering a set again replaces the descriptors of its messages; the
+ * codecs of the previous versions are cached per descriptor and are dropped
+ * from the bounded caches once unused, see
+ * {@link ProtobufJacksonConfig#maxDynamicSchemas()}.
+ */
+public class DynamicSchemaRegistry {
+  // dependencies the sets may leave out, such as google/protobuf/timestamp.proto
+  private static final Map<String, FileDescriptor> WELL_KNOWN_FILES = new HashMap<>();
+
+  static {
+    for (Message defaultInstance : DynamicMessages.wellKnownTypes()) {
+      FileDescriptor file = defaultInstance.getDescriptorForType().getFile();
+      WELL_KNOWN_FILES.put(file.getName(), file);
+    }
+  }
+
+  private final ConcurrentMap<String, Descriptor> descriptors = new ConcurrentHashMap<>();
+
+  /**
+   * Builds the files of {@code fileDescriptorSet} and registers their
+   * messages, nested ones included.
+   *
+   * @return the files, in the order of the set
+   * @throws IllegalArgumentException if a dependency is neither in the set nor
+   *         a well-known type file
+   */
+  public List<FileDescriptor> register(FileDescriptorSet fileDescriptorSet) throws DescriptorValidationException {
+    Map<String, FileDescriptorProto> protos = new LinkedHashMap<>();
+    for (FileDescriptorProto proto : fileDescriptorSet.getFileList()) {
+      protos.put(proto.getName(), proto);
+    }
+    Map<String, FileDescriptor> built = new HashMap<>();
+    List<FileDescriptor> files = new ArrayList<>(protos.size());
+    for (String name : protos.keySet()) {
+      files.add(build(name, protos, built, new ArrayList<>()));
+    }
+    for (FileDescriptor file : files) {
+      register(file.getMessageTypes());
+    }
+    return files;
+  }
+
+  private static FileDescriptor build(String name, Map<String, FileDescriptorProto> protos,
+      Map<String, FileDescriptor> built, List<String> path) throws DescriptorValidationException {
+    FileDescriptor file = built.get(name);
+    if (file != null) {
+      return file;
+    }
+    FileDescriptorProto proto = protos.get(name);
+    if (proto == null) {
+      file = WELL_KNOWN_FILES.get(name);
+      if (file == null) {
+        throw new IllegalArgumentException("Missing dependency " + name + " of " + path);
+      }
+      return file;
+    }
+    if (path.contains(name)) {
+      throw new IllegalArgumentException("Circular dependency " + path + " -> " + name);
+    }
+    path.add(name);
+    FileDescriptor[] dependencies = new FileDescriptor[proto.getDependencyCount()];
+    for (int i = 0; i < dependencies.length; i++) {
+      dependencies[i] = build(proto.getDependency(i), protos, built, path);
+    }
+    path.remove(path.size() - 1);
+
+    file = FileDescriptor.buildFrom(proto, dependencies);
+    built.put(name, file);
+    return file;
+  }
+
+  private void register(List<Descriptor> messageDescriptors) {
+    for (Descriptor descriptor : messageDescriptors) {
+      if (!descriptor.getOptions().getMapEntry()) {
+        descriptors.put(descriptor.getFullName(), descriptor);
+        register(descriptor.getNestedTypes());
+      }
+    }
+  }
+
+  /**
+   * The descriptor of the message named {@code fullName}, or null.
+   */
+  public Descriptor find(String fullName) {
+    return descriptors.get(fullName);
+  }
+
+  public Descriptor remove(String fullName) {
+    return descriptors.remove(fullName);
+  }
+
+  /**
+   * Reader of {@code mapper} for dynamic messages named {@code fullName}.
+   *
+   * @throws IllegalArgumentException if no such message is registered
+   */
+  public ObjectReader reader(ObjectMapper mapper, String fullName) {
+    Descriptor descriptor = find(fullName);
+    if (descriptor == null) {
+      throw new IllegalArgumentException("Unknown message type " + fullName);
+    }
+    return DynamicMessages.reader(mapper, descriptor);
+  }
+}
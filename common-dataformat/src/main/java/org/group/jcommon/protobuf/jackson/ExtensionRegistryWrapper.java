@@ -1,54 +1,62 @@
 package org.group.jcommon.protobuf.jackson;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.ExtensionRegistry;
 import com.google.protobuf.ExtensionRegistry.ExtensionInfo;
 
+/**
+ * The extensions of an {@link ExtensionRegistry}, indexed per message type in
+ * {@link ExtensionTable}s.
+ *
+ * Tables are kept for every descriptor by default. Services that load
+ * descriptors at runtime can bound them with {@link #wrap(ExtensionRegistry,
+ * long)} or let them go under memory pressure with
+ * {@link #wrapSoftly(ExtensionRegistry)}; the serializers keep their own
+ * per-type state the same way, see {@link #newDescriptorCache()}.
+ */
 public class ExtensionRegistryWrapper {
-  private final Function<Descriptor, Set<ExtensionInfo>> extensionFunction;
+  private final ExtensionRegistry extensionRegistry;
+  // null to keep every descriptor
+  private final CacheBuilder<Object, Object> retention;
+  private final ConcurrentMap<Descriptor, ExtensionTable> tables;
 
-  private ExtensionRegistryWrapper() {
-    this.extensionFunction = new Function<Descriptor, Set<ExtensionInfo>>() {
-
-      @Override
-      public Set<ExtensionInfo> apply(Descriptor descriptor) {
-        return Collections.emptySet();
-      }
-    };
+  private ExtensionRegistryWrapper(ExtensionRegistry extensionRegistry, CacheBuilder<Object, Object> retention) {
+    this.extensionRegistry = extensionRegistry;
+    this.retention = retention;
+    this.tables = newDescriptorCache();
   }
 
-  private ExtensionRegistryWrapper(final ExtensionRegistry extensionRegistry) {
-    this.extensionFunction = new Function<Descriptor, Set<ExtensionInfo>>() {
-      private final Map<Descriptor, Set<ExtensionInfo>> extensionCache = new ConcurrentHashMap<>();
-
-      @Override
-      public Set<ExtensionInfo> apply(Descriptor descriptor) {
-        Set<ExtensionInfo> cached = extensionCache.get(descriptor);
-        if (cached != null) {
-          return cached;
-        }
+  public static ExtensionRegistryWrapper wrap(ExtensionRegistry extensionRegistry) {
+    return new ExtensionRegistryWrapper(extensionRegistry, null);
+  }
 
-        Set<ExtensionInfo> extensions = extensionRegistry
-            .getAllImmutableExtensionsByExtendedType(descriptor.getFullName());
-        extensionCache.put(descriptor, extensions);
-        return extensions;
-      }
-    };
+  /**
+   * Keeps the tables of at most {@code maximumSize} descriptors, the least
+   * recently used being evicted first.
+   */
+  public static ExtensionRegistryWrapper wrap(ExtensionRegistry extensionRegistry, long maximumSize) {
+    return new ExtensionRegistryWrapper(extensionRegistry, CacheBuilder.newBuilder().maximumSize(maximumSize));
   }
 
-  public static ExtensionRegistryWrapper wrap(ExtensionRegistry extensionRegistry) {
-    return new ExtensionRegistryWrapper(extensionRegistry);
+  /**
+   * Keeps the tables softly, so that they and the descriptors they refer to
+   * can be collected when memory runs low. Weak keys alone would not do, as
+   * the tables hold on to their descriptors.
+   */
+  public static ExtensionRegistryWrapper wrapSoftly(ExtensionRegistry extensionRegistry) {
+    return new ExtensionRegistryWrapper(extensionRegistry, CacheBuilder.newBuilder().softValues());
   }
 
   public static ExtensionRegistryWrapper empty() {
-    return new ExtensionRegistryWrapper();
+    return new ExtensionRegistryWrapper(null, null);
   }
 
   /**
@@ -60,10 +68,36 @@ public class ExtensionRegistryWrapper {
   }
 
   public Set<ExtensionInfo> getExtensionsByDescriptor(Descriptor descriptor) {
-    return extensionFunction.apply(descriptor);
+    return getExtensionTable(descriptor, null).extensions();
+  }
+
+  /**
+   * The extensions of {@code descriptor} with their JSON names under
+   * {@code namingStrategy}, built once and shared.
+   */
+  public ExtensionTable getExtensionTable(Descriptor descriptor, PropertyNamingStrategy namingStrategy) {
+    if (extensionRegistry == null) {
+      return ExtensionTable.EMPTY;
+    }
+    ExtensionTable table = ExtensionTable.find(tables.get(descriptor), namingStrategy);
+    if (table == null) {
+      ExtensionTable head = tables.compute(descriptor, (key, previous) -> {
+        if (ExtensionTable.find(previous, namingStrategy) != null) {
+          return previous;
+        }
+        return ExtensionTable.build(extensionRegistry.getAllImmutableExtensionsByExtendedType(key.getFullName()),
+            namingStrategy, previous);
+      });
+      table = ExtensionTable.find(head, namingStrategy);
+    }
+    return table;
   }
 
-  private interface Function<T, V> {
-    V apply(T t);
+  /**
+   * A map keyed by descriptors that retains them as this wrapper does, for
+   * other per-type state.
+   */
+  public <V> ConcurrentMap<Descriptor, V> newDescriptorCache() {
+    return retention == null ? new ConcurrentHashMap<>() : retention.<Descriptor, V>build().asMap();
   }
 }
@@ -0,0 +1,113 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy.PropertyNamingStrategyBase;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.ExtensionRegistry.ExtensionInfo;
+import com.google.protobuf.Message;
+
+/**
+ * Immutable index of the extensions registered for one message type under
+ * one naming strategy, see
+ * {@link ExtensionRegistryWrapper#getExtensionTable}. Extensions are in field
+ * number order, and their JSON names are translated and interned up front.
+ *
+ * Tables for the same descriptor but other naming strategies share the
+ * extensions and are chained through {@link #next}.
+ */
+public final class ExtensionTable {
+  static final ExtensionTable EMPTY = new ExtensionTable(null, new ExtensionInfo[0], new String[0], null);
+
+  final PropertyNamingStrategy namingStrategy;
+  final ExtensionTable next;
+
+  private final ExtensionInfo[] extensions;
+  private final String[] names;
+  private final Map<String, ExtensionInfo> byName;
+  private final Set<ExtensionInfo> extensionSet;
+
+  private ExtensionTable(PropertyNamingStrategy namingStrategy, ExtensionInfo[] extensions, String[] names,
+      ExtensionTable next) {
+    this.namingStrategy = namingStrategy;
+    this.next = next;
+    this.extensions = extensions;
+    this.names = names;
+    this.byName = new HashMap<>(extensions.length * 2);
+    for (int i = 0; i < extensions.length; i++) {
+      byName.putIfAbsent(names[i], extensions[i]);
+    }
+    this.extensionSet = next != null ? next.extensionSet
+        : Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(extensions)));
+  }
+
+  static ExtensionTable build(Set<ExtensionInfo> extensions, PropertyNamingStrategy namingStrategy,
+      ExtensionTable next) {
+    ExtensionInfo[] sorted;
+    if (next != null) {
+      sorted = next.extensions;
+    } else {
+      sorted = extensions.toArray(new ExtensionInfo[0]);
+      Arrays.sort(sorted, Comparator.comparingInt(extension -> extension.descriptor.getNumber()));
+    }
+    PropertyNamingStrategyBase translator = new PropertyNamingStrategyWrapper(namingStrategy);
+    String[] names = new String[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      names[i] = translator.translate(sorted[i].descriptor.getName()).intern();
+    }
+    return new ExtensionTable(namingStrategy, sorted, names, next);
+  }
+
+  static ExtensionTable find(ExtensionTable head, PropertyNamingStrategy namingStrategy) {
+    for (ExtensionTable table = head; table != null; table = table.next) {
+      if (table.namingStrategy == namingStrategy) {
+        return table;
+      }
+    }
+    return null;
+  }
+
+  public int size() {
+    return extensions.length;
+  }
+
+  public ExtensionInfo get(int index) {
+    return extensions[index];
+  }
+
+  public FieldDescriptor descriptor(int index) {
+    return extensions[index].descriptor;
+  }
+
+  /**
+   * The translated JSON name, interned.
+   */
+  public String name(int index) {
+    return names[index];
+  }
+
+  /**
+   * The default instance of a message extension, null for other types.
+   */
+  public Message defaultInstance(int index) {
+    return extensions[index].defaultInstance;
+  }
+
+  public ExtensionInfo findByName(String name) {
+    return byName.get(name);
+  }
+
+  /**
+   * The extensions, in field number order.
+   */
+  public Set<ExtensionInfo> extensions() {
+    return extensionSet;
+  }
+}
@@ -0,0 +1,234 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.math.BigInteger;
+
+/**
+ * Parses JSON numbers straight from the parser's character buffer into
+ * correctly rounded {@code double} and {@code float} values, without creating
+ * a {@code String}.
+ *
+ * Doubles use Clinger's fast path when the significand and the power of ten
+ * are both exact, and the Eisel-Lemire algorithm otherwise. The few inputs
+ * these cannot decide (more than 19 significant digits, exact halfway cases,
+ * out-of-range exponents) return {@code NaN}, and the caller falls back to
+ * {@link Double#parseDouble}, so the results are always identical.
+ */
+final class FastDoubleParser {
+  private static final int MAX_SIGNIFICANT_DIGITS = 19;
+  private static final int MIN_POWER = -325;
+  private static final int MAX_POWER = 308;
+
+  private static final double[] DOUBLE_POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+  private static final float[] FLOAT_POWERS_OF_TEN = {
+      1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+  // 10^q truncated to 128 bits with the most significant bit set, high and low halves
+  private static final long[] MANTISSA_HIGH = new long[MAX_POWER - MIN_POWER + 1];
+  private static final long[] MANTISSA_LOW = new long[MAX_POWER - MIN_POWER + 1];
+
+  static {
+    for (int q = MIN_POWER; q <= MAX_POWER; q++) {
+      final BigInteger mantissa;
+      if (q >= 0) {
+        BigInteger power = BigInteger.TEN.pow(q);
+        int shift = 128 - power.bitLength();
+        mantissa = shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+      } else {
+        BigInteger power = BigInteger.TEN.pow(-q);
+        mantissa = BigInteger.ONE.shiftLeft(power.bitLength() + 127).divide(power);
+      }
+      MANTISSA_HIGH[q - MIN_POWER] = mantissa.shiftRight(64).longValue();
+      MANTISSA_LOW[q - MIN_POWER] = mantissa.longValue();
+    }
+  }
+
+  private FastDoubleParser() {
+  }
+
+  /**
+   * Returns the value of the JSON number in {@code buffer}, or {@code NaN} if
+   * it must be parsed with {@link Double#parseDouble}.
+   */
+  static double parseDouble(char[] buffer, int offset, int length) {
+    Decimal decimal = Decimal.parse(buffer, offset, length);
+    if (decimal == null) {
+      return Double.NaN;
+    }
+
+    long significand = decimal.significand;
+    int power = decimal.power;
+    if (-22 <= power && power <= 22 && significand >= 0 && significand <= 1L << 53) {
+      // both are exact, so is the result of a single operation
+      double value = significand;
+      value = power < 0 ? value / DOUBLE_POWERS_OF_TEN[-power] : value * DOUBLE_POWERS_OF_TEN[power];
+      return decimal.negative ? -value : value;
+    }
+    if (significand == 0) {
+      return decimal.negative ? -0.0 : 0.0;
+    }
+    if (power < MIN_POWER || power > MAX_POWER) {
+      return Double.NaN;
+    }
+    return eiselLemire(decimal.negative, significand, power);
+  }
+
+  /**
+   * Returns the value of the JSON number in {@code buffer}, or {@code NaN} if
+   * it must be parsed with {@link Float#parseFloat}.
+   */
+  static float parseFloat(char[] buffer, int offset, int length) {
+    Decimal decimal = Decimal.parse(buffer, offset, length);
+    if (decimal == null) {
+      return Float.NaN;
+    }
+
+    long significand = decimal.significand;
+    int power = decimal.power;
+    if (-10 <= power && power <= 10 && significand >= 0 && significand <= 1L << 24) {
+      float value = significand;
+      value = power < 0 ? value / FLOAT_POWERS_OF_TEN[-power] : value * FLOAT_POWERS_OF_TEN[power];
+      return decimal.negative ? -value : value;
+    }
+    if (significand == 0) {
+      return decimal.negative ? -0.0f : 0.0f;
+    }
+    // rounding to double first could round twice
+    return Float.NaN;
+  }
+
+  private static double eiselLemire(boolean negative, long significand, int power) {
+    long factorHigh = MANTISSA_HIGH[power - MIN_POWER];
+    // floor(log2(10^power)) + bias + 63
+    long exponent = (((152170L + 65536L) * power) >> 16) + 1024 + 63;
+
+    int lz = Long.numberOfLeadingZeros(significand);
+    long normalized = significand << lz;
+
+    long upper = unsignedMultiplyHigh(normalized, factorHigh);
+    long lower = normalized * factorHigh;
+    if ((upper & 0x1FF) == 0x1FF && Long.compareUnsigned(lower + normalized, lower) < 0) {
+      // the truncated factor may have made a difference, use its low half too
+      long factorLow = MANTISSA_LOW[power - MIN_POWER];
+      long productLow = normalized * factorLow;
+      long productMiddle2 = unsignedMultiplyHigh(normalized, factorLow);
+      long productMiddle = lower + productMiddle2;
+      long productHigh = upper;
+      if (Long.compareUnsigned(productMiddle, lower) < 0) {
+        productHigh++;
+      }
+      if (productMiddle + 1 == 0 && (productHigh & 0x1FF) == 0x1FF
+          && Long.compareUnsigned(productLow + normalized, productLow) < 0) {
+        return Double.NaN;
+      }
+      upper = productHigh;
+      lower = productMiddle;
+    }
+
+    long upperBit = upper >>> 63;
+    long mantissa = upper >>> (upperBit + 9);
+    lz += (int) (1 ^ upperBit);
+    if (lower == 0 && (upper & 0x1FF) == 0 && (mantissa & 3) == 1) {
+      // might be exactly halfway between two doubles
+      return Double.NaN;
+    }
+
+    mantissa += mantissa & 1;
+    mantissa >>>= 1;
+    if (mantissa >= 1L << 53) {
+      mantissa = 1L << 52;
+      lz--;
+    }
+    mantissa &= ~(1L << 52);
+
+    long realExponent = exponent - lz;
+    if (realExponent < 1 || realExponent > 2046) {
+      // subnormal or infinite
+      return Double.NaN;
+    }
+    return Double.longBitsToDouble(mantissa | realExponent << 52 | (negative ? 1L << 63 : 0L));
+  }
+
+  private static long unsignedMultiplyHigh(long x, long y) {
+    return ShortestDecimal.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+  }
+
+  /**
+   * A JSON number as significand 10^power, with at most 19 significant
+   * digits.
+   */
+  private static final class Decimal {
+    boolean negative;
+    long significand;
+    int power;
+
+    static Decimal parse(char[] buffer, int offset, int length) {
+      int i = offset;
+      int end = offset + length;
+      Decimal decimal = new Decimal();
+      if (i < end && buffer[i] == '-') {
+        decimal.negative = true;
+        i++;
+      }
+
+      long significand = 0;
+      int digits = 0;
+      int significantDigits = 0;
+      int fractionDigits = 0;
+      boolean fraction = false;
+      for (; i < end; i++) {
+        char c = buffer[i];
+        if (c >= '0' && c <= '9') {
+          digits++;
+          if (fraction) {
+            fractionDigits++;
+          }
+          if (significantDigits > 0 || c != '0') {
+            if (++significantDigits > MAX_SIGNIFICANT_DIGITS) {
+              return null;
+            }
+            significand = significand * 10 + (c - '0');
+          }
+        } else if (c == '.' && !fraction) {
+          fraction = true;
+        } else {
+          break;
+        }
+      }
+      if (digits == 0) {
+        return null;
+      }
+
+      int exponent = 0;
+      if (i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+        i++;
+        boolean negativeExponent = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+          negativeExponent = buffer[i] == '-';
+          i++;
+        }
+        if (i == end) {
+          return null;
+        }
+        for (; i < end; i++) {
+          char c = buffer[i];
+          if (c < '0' || c > '9' || exponent > 10_000) {
+            return null;
+          }
+          exponent = exponent * 10 + (c - '0');
+        }
+        if (negativeExponent) {
+          exponent = -exponent;
+        }
+      }
+      if (i != end) {
+        return null;
+      }
+
+      decimal.significand = significand;
+      decimal.power = exponent - fractionDigits;
+      return decimal;
+    }
+  }
+}
@@ -0,0 +1,490 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Throwables;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor.JavaType;
+import com.google.protobuf.Descriptors.FileDescriptor.Syntax;
+import com.google.protobuf.GeneratedMessageV3;
+
+/**
+ * Direct access to a field of a generated message or builder class,
+ * bypassing the reflective {@code getField}/{@code setField} API.
+ *
+ * Accessors are bound to the generated {@code getFoo()}, {@code hasFoo()} and
+ * {@code setFoo(...)} methods through method handles, so primitive values are
+ * never boxed. Repeated numeric and boolean fields of builders are bound to
+ * {@code addFoo(...)}, which appends to the builder's primitive list. Map
+ * fields are bound to {@code getFooMap()} and, for builders,
+ * {@code putFoo(key, value)}, so entries are read and written without
+ * creating entry messages. Enum and message fields, and the other repeated
+ * fields, only have their presence bound ({@code hasFoo()} or
+ * {@code getFooCount()}), which lets absent fields be skipped cheaply.
+ * Accessors are resolved once per class with {@link #accessorsFor(Class)};
+ * fields that cannot be bound safely (oneof members, proto3 enums, enum-valued
+ * maps, or names the protobuf compiler would have mangled) have no accessor
+ * and stay on the reflective path, as do {@code DynamicMessage}s.
+ *
+ * What this saves is the boxing and the {@code FieldAccessorTable} lookups of
+ * the reflective API, not the cost of the call: the handles are held in
+ * instance fields, which HotSpot doesn't treat as constants, so the generated
+ * methods are not inlined into the serializers. Inlined, per-type code is
+ * what the generated codecs are for, see {@link GeneratedJacksonCodec}.
+ */
+public final class FieldAccessor {
+  private static final FieldAccessor[] NONE = new FieldAccessor[0];
+
+  private static final ClassValue<FieldAccessor[]> ACCESSORS = new ClassValue<FieldAccessor[]>() {
+    @Override
+    protected FieldAccessor[] computeValue(Class<?> type) {
+      return buildAccessors(type);
+    }
+  };
+
+  private final FieldDescriptor field;
+  private final MethodHandle getter;
+  private final MethodHandle hazzer;
+  private final MethodHandle setter;
+  private final MethodHandle adder;
+  private final MethodHandle putter;
+  private final MethodHandle counter;
+  private final MethodHandle utf8Getter;
+
+  private FieldAccessor(FieldDescriptor field, MethodHandle getter, MethodHandle hazzer, MethodHandle setter,
+      MethodHandle adder, MethodHandle putter, MethodHandle counter, MethodHandle utf8Getter) {
+    this.field = field;
+    this.getter = getter;
+    this.hazzer = hazzer;
+    this.setter = setter;
+    this.adder = adder;
+    this.putter = putter;
+    this.counter = counter;
+    this.utf8Getter = utf8Getter;
+  }
+
+  /**
+   * Returns the accessors of {@code type} indexed by
+   * {@link FieldDescriptor#getIndex()}, or {@code null} if {@code type} is not
+   * a generated message or builder class. Entries are {@code null} for fields
+   * that must be accessed reflectively.
+   */
+  public static FieldAccessor[] accessorsFor(Class<?> type) {
+    FieldAccessor[] accessors = ACCESSORS.get(type);
+    return accessors == NONE ? null : accessors;
+  }
+
+  public FieldDescriptor getField() {
+    return field;
+  }
+
+  /**
+   * Whether this accessor belongs to a repeated or map field; the element
+   * getters and setters are unavailable, elements are added with
+   * {@code addFoo(...)} for numeric and boolean fields of builders.
+   */
+  public boolean isRepeated() {
+    return field.isRepeated();
+  }
+
+  /**
+   * Whether this accessor is bound to the {@code getFooMap()} method of a map
+   * field, and {@code putFoo(...)} for builders.
+   */
+  public boolean isMap() {
+    return field.isMapField();
+  }
+
+  /**
+   * Returns the map storage of a map field, without converting it to entry
+   * messages.
+   */
+  public Map<?, ?> getMap(Object message) {
+    return (Map<?, ?>) get(message);
+  }
+
+  public boolean canGet() {
+    return getter != null;
+  }
+
+  public boolean canSet() {
+    return setter != null;
+  }
+
+  /**
+   * Whether the field is set, or non-empty if it is repeated, read from the
+   * has-bits or element count without going through the reflective API.
+   * Unlike the other methods, this is available for every field that has an
+   * accessor, including the enum and message fields that have no getter.
+   */
+  public boolean isPresent(Object message) {
+    if (counter == null) {
+      return has(message);
+    }
+
+    try {
+      return (int) counter.invokeExact(message) > 0;
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  /**
+   * Same semantics as {@code MessageOrBuilder.hasField}: the has-method for
+   * proto2, a non-default value for proto3.
+   */
+  public boolean has(Object message) {
+    if (hazzer != null) {
+      try {
+        return (boolean) hazzer.invokeExact(message);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+
+    switch (field.getJavaType()) {
+      case INT:
+        return getInt(message) != 0;
+      case LONG:
+        return getLong(message) != 0L;
+      case FLOAT:
+        return Float.floatToIntBits(getFloat(message)) != 0;
+      case DOUBLE:
+        return Double.doubleToLongBits(getDouble(message)) != 0L;
+      case BOOLEAN:
+        return getBoolean(message);
+      case STRING:
+        return !((String) get(message)).isEmpty();
+      case BYTE_STRING:
+        return !((ByteString) get(message)).isEmpty();
+      default:
+        throw new IllegalStateException("Unsupported field type " + field.getJavaType());
+    }
+  }
+
+  public int getInt(Object message) {
+    try {
+      return (int) getter.invokeExact(message);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public long getLong(Object message) {
+    try {
+      return (long) getter.invokeExact(message);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public float getFloat(Object message) {
+    try {
+      return (float) getter.invokeExact(message);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public double getDouble(Object message) {
+    try {
+      return (double) getter.invokeExact(message);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public boolean getBoolean(Object message) {
+    try {
+      return (boolean) getter.invokeExact(message);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  /**
+   * Whether a string field can be read as UTF-8 with {@link #getUtf8}. Only
+   * proto2 strings are kept undecoded by the parser, so proto3 ones are read
+   * as {@code String}s.
+   */
+  public boolean canGetUtf8() {
+    return utf8Getter != null;
+  }
+
+  /**
+   * Reads a string field through {@code getFooBytes()}.
+   */
+  public ByteString getUtf8(Object message) {
+    try {
+      return (ByteString) utf8Getter.invokeExact(message);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  /**
+   * Reads a {@code String} or {@code ByteString} field.
+   */
+  public Object get(Object message) {
+    try {
+      return (Object) getter.invokeExact(message);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public void setInt(Object builder, int value) {
+    try {
+      setter.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public void setLong(Object builder, long value) {
+    try {
+      setter.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public void setFloat(Object builder, float value) {
+    try {
+      setter.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public void setDouble(Object builder, double value) {
+    try {
+      setter.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public void setBoolean(Object builder, boolean value) {
+    try {
+      setter.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  /**
+   * Sets a {@code String} or {@code ByteString} field.
+   */
+  public void set(Object builder, Object value) {
+    try {
+      setter.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public void addInt(Object builder, int value) {
+    try {
+      adder.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public void addLong(Object builder, long value) {
+    try {
+      adder.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public void addFloat(Object builder, float value) {
+    try {
+      adder.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public void addDouble(Object builder, double value) {
+    try {
+      adder.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  public void addBoolean(Object builder, boolean value) {
+    try {
+      adder.invokeExact(builder, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  /**
+   * Puts an entry into a map field; the key and value are those returned by
+   * the reflective API for the entry's fields.
+   */
+  public void put(Object builder, Object key, Object value) {
+    try {
+      putter.invokeExact(builder, key, value);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  private static RuntimeException propagate(Throwable t) {
+    Throwables.throwIfUnchecked(t);
+    throw new RuntimeException(t);
+  }
+
+  private static FieldAccessor[] buildAccessors(Class<?> type) {
+    if (!GeneratedMessageV3.class.isAssignableFrom(type) && !GeneratedMessageV3.Builder.class.isAssignableFrom(type)) {
+      return NONE;
+    }
+
+    final Descriptor descriptor;
+    try {
+      descriptor = (Descriptor) type.getMethod("getDescriptor").invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return NONE;
+    }
+
+    boolean builder = GeneratedMessageV3.Builder.class.isAssignableFrom(type);
+    List<FieldDescriptor> fields = descriptor.getFields();
+    FieldAccessor[] accessors = new FieldAccessor[fields.size()];
+    for (FieldDescriptor field : fields) {
+      accessors[field.getIndex()] = buildAccessor(type, field, builder);
+    }
+    return accessors;
+  }
+
+  private static FieldAccessor buildAccessor(Class<?> type, FieldDescriptor field, boolean builder) {
+    if (field.isMapField()) {
+      return buildMapAccessor(type, field, builder);
+    }
+
+    String name = ProtobufJavaNames.accessorName(field);
+    if (name == null || field.getContainingOneof() != null) {
+      return null;
+    }
+
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    Class<?> valueType = valueType(field.getJavaType());
+    try {
+      if (field.isRepeated()) {
+        MethodHandle adder = null;
+        if (builder && valueType != null && valueType.isPrimitive()) {
+          adder = lookup.findVirtual(type, "add" + name, MethodType.methodType(type, valueType))
+              .asType(MethodType.methodType(void.class, Object.class, valueType));
+        }
+        return new FieldAccessor(field, null, null, null, adder, null, counter(lookup, type, name), null);
+      }
+
+      if (valueType == null) {
+        // enum and message fields only get their presence bound
+        if (field.getFile().getSyntax() == Syntax.PROTO3 && field.getJavaType() != JavaType.MESSAGE) {
+          return null;
+        }
+        MethodHandle hazzer = lookup.findVirtual(type, "has" + name, MethodType.methodType(boolean.class))
+            .asType(MethodType.methodType(boolean.class, Object.class));
+        return new FieldAccessor(field, null, hazzer, null, null, null, null, null);
+      }
+
+      Class<?> erasedValueType = valueType.isPrimitive() ? valueType : Object.class;
+      MethodHandle getter = lookup.findVirtual(type, "get" + name, MethodType.methodType(valueType))
+          .asType(MethodType.methodType(erasedValueType, Object.class));
+
+      MethodHandle hazzer = null;
+      MethodHandle utf8Getter = null;
+      if (field.getFile().getSyntax() == Syntax.PROTO2) {
+        hazzer = lookup.findVirtual(type, "has" + name, MethodType.methodType(boolean.class))
+            .asType(MethodType.methodType(boolean.class, Object.class));
+        if (field.getJavaType() == JavaType.STRING) {
+          utf8Getter = lookup.findVirtual(type, "get" + name + "Bytes", MethodType.methodType(ByteString.class))
+              .asType(MethodType.methodType(ByteString.class, Object.class));
+        }
+      }
+
+      MethodHandle setter = null;
+      if (builder) {
+        setter = lookup.findVirtual(type, "set" + name, MethodType.methodType(type, valueType))
+            .asType(MethodType.methodType(void.class, Object.class, erasedValueType));
+      }
+
+      return new FieldAccessor(field, getter, hazzer, setter, null, null, null, utf8Getter);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // unexpected generated code, stay on the reflective path
+      return null;
+    }
+  }
+
+  private static FieldAccessor buildMapAccessor(Class<?> type, FieldDescriptor field, boolean builder) {
+    // enum values would need converting to and from the generated enum type
+    String name = ProtobufJavaNames.accessorName(field);
+    if (name == null || field.getMessageType().findFieldByName("value").getJavaType() == JavaType.ENUM) {
+      return null;
+    }
+
+    try {
+      MethodHandle getter = MethodHandles.publicLookup()
+          .findVirtual(type, "get" + name + "Map", MethodType.methodType(Map.class))
+          .asType(MethodType.methodType(Object.class, Object.class));
+
+      MethodHandle putter = null;
+      if (builder) {
+        for (Method method : type.getMethods()) {
+          if (method.getName().equals("put" + name) && method.getParameterCount() == 2) {
+            putter = MethodHandles.publicLookup().unreflect(method)
+                .asType(MethodType.methodType(void.class, Object.class, Object.class, Object.class));
+          }
+        }
+        if (putter == null) {
+          return null;
+        }
+      }
+
+      return new FieldAccessor(field, getter, null, null, null, putter,
+          counter(MethodHandles.publicLookup(), type, name), null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static MethodHandle counter(MethodHandles.Lookup lookup, Class<?> type, String name)
+      throws ReflectiveOperationException {
+    return lookup.findVirtual(type, "get" + name + "Count", MethodType.methodType(int.class))
+        .asType(MethodType.methodType(int.class, Object.class));
+  }
+
+  private static Class<?> valueType(JavaType javaType) {
+    switch (javaType) {
+      case INT:
+        return int.class;
+      case LONG:
+        return long.class;
+      case FLOAT:
+        return float.class;
+      case DOUBLE:
+        return double.class;
+      case BOOLEAN:
+        return boolean.class;
+      case STRING:
+        return String.class;
+      case BYTE_STRING:
+        return ByteString.class;
+      default:
+        return null;
+    }
+  }
+}
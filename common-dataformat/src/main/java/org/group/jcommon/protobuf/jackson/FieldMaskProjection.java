@@ -0,0 +1,169 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.FieldMask;
+
+/**
+ * A {@link FieldMask} compiled to a tree of field names, for writing only the
+ * selected fields of a message straight from it, without trimming a copy
+ * with {@code FieldMaskUtil.merge} first.
+ *
+ * The projection is given to the writer as the {@link #ATTRIBUTE} attribute,
+ * either compiled or as a {@code FieldMask}, see {@link #writer}. The output
+ * is that of the message trimmed by {@code FieldMaskUtil.merge} with
+ * {@code MergeOptions.setReplacePrimitiveFields(true)}: selected fields are
+ * written as they would be without a mask. The plain {@code merge} differs in
+ * that it sets every selected scalar field, so an unset oneof member or proto2
+ * field is then written with its default value; this isn't done here.
+ *
+ * Sub-paths of repeated, map and scalar fields, unknown names and extensions
+ * are ignored, and an empty mask selects no field. Sub-paths of well-known
+ * types select the whole value, as their JSON form is not an object of their
+ * fields.
+ *
+ * Compiled masks are cached, as the same masks recur from request to request.
+ */
+public final class FieldMaskProjection {
+  public static final String ATTRIBUTE = FieldMaskProjection.class.getName();
+
+  private static final long MAX_CACHED_MASKS = 1000;
+  private static final Cache<FieldMask, FieldMaskProjection> COMPILED = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHED_MASKS).build();
+  private static final FieldMaskProjection ALL = new FieldMaskProjection(null, FieldMask.getDefaultInstance());
+
+  // null when every field is selected
+  private final Map<String, FieldMaskProjection> children;
+  private final FieldMask mask;
+  // per message type, the child of each field by index, null for the fields not selected
+  private final ConcurrentMap<Descriptor, FieldMaskProjection[]> resolved;
+
+  private FieldMaskProjection(Map<String, FieldMaskProjection> children, FieldMask mask) {
+    this.children = children;
+    this.mask = mask;
+    // weak keys, so that dropped dynamic schemas are not kept
+    this.resolved = children == null ? null
+        : CacheBuilder.newBuilder().weakKeys().<Descriptor, FieldMaskProjection[]>build().asMap();
+  }
+
+  /**
+   * The compiled form of {@code fieldMask}, from the cache if it was seen
+   * recently.
+   */
+  public static FieldMaskProjection of(FieldMask fieldMask) {
+    try {
+      return COMPILED.get(fieldMask, () -> compile(fieldMask.getPathsList()));
+    } catch (ExecutionException e) {
+      // compile throws no checked exception
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Writer of {@code mapper} that writes the messages projected on
+   * {@code fieldMask}.
+   */
+  public static ObjectWriter writer(ObjectMapper mapper, FieldMask fieldMask) {
+    return mapper.writer().withAttribute(ATTRIBUTE, of(fieldMask));
+  }
+
+  /**
+   * The projection given as an {@link #ATTRIBUTE} value, or null.
+   *
+   * @throws IllegalArgumentException if {@code attribute} is neither a
+   *         projection nor a {@code FieldMask}
+   */
+  public static FieldMaskProjection fromAttribute(Object attribute) {
+    if (attribute == null || attribute instanceof FieldMaskProjection) {
+      return (FieldMaskProjection) attribute;
+    } else if (attribute instanceof FieldMask) {
+      return of((FieldMask) attribute);
+    }
+    throw new IllegalArgumentException("Unsupported projection " + attribute.getClass().getName());
+  }
+
+  private static FieldMaskProjection compile(List<String> paths) {
+    Map<String, List<String>> subPaths = new LinkedHashMap<>();
+    for (String path : paths) {
+      int dot = path.indexOf('.');
+      String name = dot < 0 ? path : path.substring(0, dot);
+      if (name.isEmpty()) {
+        continue;
+      }
+      List<String> fieldPaths = subPaths.computeIfAbsent(name, key -> new ArrayList<>());
+      if (dot < 0) {
+        // the whole field, whatever else is asked for
+        fieldPaths.clear();
+        fieldPaths.add(null);
+      } else if (fieldPaths.isEmpty() || fieldPaths.get(0) != null) {
+        fieldPaths.add(path.substring(dot + 1));
+      }
+    }
+
+    Map<String, FieldMaskProjection> children = new HashMap<>();
+    for (Map.Entry<String, List<String>> entry : subPaths.entrySet()) {
+      List<String> fieldPaths = entry.getValue();
+      children.put(entry.getKey(), fieldPaths.get(0) == null ? ALL : compile(fieldPaths));
+    }
+    return new FieldMaskProjection(Collections.unmodifiableMap(children),
+        FieldMask.newBuilder().addAllPaths(paths).build());
+  }
+
+  /**
+   * Whether every field, nested ones included, is selected.
+   */
+  public boolean isAll() {
+    return children == null;
+  }
+
+  /**
+   * The paths of this projection, relative to the message it applies to.
+   */
+  public FieldMask toFieldMask() {
+    return mask;
+  }
+
+  /**
+   * The projections of the fields of {@code descriptor}, by field index;
+   * null for the fields that are not written.
+   */
+  public FieldMaskProjection[] resolve(Descriptor descriptor) {
+    FieldMaskProjection[] fields = resolved.get(descriptor);
+    if (fields == null) {
+      fields = new FieldMaskProjection[descriptor.getFields().size()];
+      for (FieldDescriptor field : descriptor.getFields()) {
+        FieldMaskProjection child = children.get(field.getName());
+        if (child == null || child.isAll()) {
+          fields[field.getIndex()] = child;
+        } else if (isSingularMessage(field)) {
+          // well-known types aren't written as objects of their fields
+          fields[field.getIndex()] = DynamicMessages.wellKnownType(field.getMessageType()) == null ? child : ALL;
+        }
+      }
+      resolved.putIfAbsent(descriptor, fields);
+    }
+    return fields;
+  }
+
+  private static boolean isSingularMessage(FieldDescriptor field) {
+    return !field.isRepeated() && field.getJavaType() == FieldDescriptor.JavaType.MESSAGE;
+  }
+
+  @Override
+  public String toString() {
+    return isAll() ? "*" : String.join(",", mask.getPathsList());
+  }
+}
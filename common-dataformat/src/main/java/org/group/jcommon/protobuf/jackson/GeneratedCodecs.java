@@ -0,0 +1,87 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.ser.Serializers;
+import com.google.protobuf.Message;
+
+/**
+ * Finds the {@link GeneratedJacksonCodec} of a message class by naming
+ * convention.
+ */
+final class GeneratedCodecs {
+  private static final ClassValue<Optional<GeneratedJacksonCodec<?>>> CODECS =
+      new ClassValue<Optional<GeneratedJacksonCodec<?>>>() {
+        @Override
+        protected Optional<GeneratedJacksonCodec<?>> computeValue(Class<?> type) {
+          return Optional.ofNullable(loadCodec(type));
+        }
+      };
+
+  private GeneratedCodecs() {
+  }
+
+  /**
+   * Returns the codec generated for {@code messageType}, or {@code null}.
+   */
+  @SuppressWarnings("unchecked")
+  static <T extends Message> GeneratedJacksonCodec<T> find(Class<T> messageType) {
+    return (GeneratedJacksonCodec<T>) CODECS.get(messageType).orElse(null);
+  }
+
+  private static GeneratedJacksonCodec<?> loadCodec(Class<?> messageType) {
+    String codecName = ProtobufJavaNames.codecClassName(messageType.getName());
+    final Class<?> codecType;
+    try {
+      codecType = Class.forName(codecName, true, messageType.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+
+    if (!GeneratedJacksonCodec.class.isAssignableFrom(codecType)) {
+      return null;
+    }
+
+    try {
+      return (GeneratedJacksonCodec<?>) codecType.getConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Unable to instantiate generated codec " + codecName, e);
+    }
+  }
+
+  /**
+   * Serializers for message classes with a generated codec, used by
+   * mappers with the default naming strategy.
+   */
+  static final class CodecSerializers extends Serializers.Base {
+    private final ProtobufJacksonConfig config;
+    private final ConcurrentMap<Class<?>, JsonSerializer<?>> serializerCache;
+
+    CodecSerializers(ProtobufJacksonConfig config) {
+      this.config = config;
+      this.serializerCache = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public JsonSerializer<?> findSerializer(SerializationConfig serializationConfig, JavaType type,
+        BeanDescription beanDesc) {
+      Class<?> rawClass = type.getRawClass();
+      if (!Message.class.isAssignableFrom(rawClass) || serializationConfig.getPropertyNamingStrategy() != null) {
+        return null;
+      }
+
+      GeneratedJacksonCodec<?> codec = find((Class<? extends Message>) rawClass);
+      if (codec == null) {
+        return null;
+      }
+      return serializerCache.computeIfAbsent(rawClass, key -> codec.newSerializer(config));
+    }
+  }
+}
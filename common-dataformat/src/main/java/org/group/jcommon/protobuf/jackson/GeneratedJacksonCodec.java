@@ -0,0 +1,20 @@
+package org.group.jcommon.protobuf.jackson;
+
+import com.google.protobuf.Message;
+
+/**
+ * Serializer and deserializer generated for one message type by
+ * {@link org.group.jcommon.protobuf.jackson.codegen.JacksonCodecGenerator}.
+ *
+ * {@link ProtobufModule} looks codecs up by name, see
+ * {@link ProtobufJavaNames#codecClassName(String)}, and uses them in place of
+ * the reflective {@code MessageSerializer}/{@code MessageDeserializer} when the
+ * mapper uses the default naming strategy. Implementations must have a public
+ * no-arg constructor.
+ */
+public interface GeneratedJacksonCodec<T extends Message> {
+
+  GeneratedMessageSerializer<T> newSerializer(ProtobufJacksonConfig config);
+
+  GeneratedMessageDeserializer<T, ?> newDeserializer(ProtobufJacksonConfig config);
+}
@@ -0,0 +1,100 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+/**
+ * Base class of generated deserializers, see {@link GeneratedJacksonCodec}.
+ *
+ * Subclasses dispatch on the JSON field name with a {@code switch} and set
+ * values through the generated builder setters, accepting the same input as
+ * {@code MessageDeserializer} with the default naming strategy.
+ */
+public abstract class GeneratedMessageDeserializer<T extends Message, V extends Message.Builder>
+    extends ProtobufDeserializer<T, V> {
+  /**
+   *
+   */
+  private static final long serialVersionUID = 1L;
+
+  private final boolean acceptLiteralFieldnames;
+
+  protected GeneratedMessageDeserializer(Class<T> messageType, ProtobufJacksonConfig config) {
+    super(messageType, config);
+
+    this.acceptLiteralFieldnames = config.acceptLiteralFieldnames();
+  }
+
+  @Override
+  protected void populate(V builder, JsonParser parser, DeserializationContext context) throws IOException {
+    JsonToken token = parser.getCurrentToken();
+    if (token == JsonToken.START_ARRAY) {
+      token = parser.nextToken();
+    }
+
+    switch (token) {
+      case END_OBJECT:
+        return;
+      case START_OBJECT:
+        token = parser.nextToken();
+        if (token == JsonToken.END_OBJECT) {
+          return;
+        }
+        break;
+      default:
+        break; // make findbugs happy
+    }
+
+    do {
+      if (!token.equals(JsonToken.FIELD_NAME)) {
+        throw reportWrongToken(JsonToken.FIELD_NAME, context, "");
+      }
+
+      String name = parser.getCurrentName();
+      if (!readField(builder, name, parser, context)
+          && !(acceptLiteralFieldnames && readLiteralField(builder, name, parser, context))) {
+        context.handleUnknownProperty(parser, this, builder, name);
+        parser.nextToken();
+        parser.skipChildren();
+      }
+    } while ((token = parser.nextToken()) != JsonToken.END_OBJECT);
+  }
+
+  /**
+   * Reads the value of the field whose JSON name is {@code name}. The parser
+   * is positioned on the field name; returns {@code false} without moving it
+   * if there is no such field.
+   */
+  protected abstract boolean readField(V builder, String name, JsonParser parser, DeserializationContext context)
+      throws IOException;
+
+  /**
+   * Same as {@link #readField} for the proto field names that differ from the
+   * JSON names, used when literal field names are accepted.
+   */
+  protected boolean readLiteralField(V builder, String name, JsonParser parser, DeserializationContext context)
+      throws IOException {
+    return false;
+  }
+
+  protected void addRepeatedValue(V builder, FieldDescriptor field, JsonParser parser,
+      DeserializationContext context) throws IOException {
+    Object value = readValue(builder, field, null, parser, context);
+    if (value != null) {
+      builder.addRepeatedField(field, value);
+    }
+  }
+
+  private AssertionError reportWrongToken(JsonToken expected, DeserializationContext context, String message)
+      throws JsonMappingException {
+    context.reportWrongTokenException(this, expected, message);
+    // the previous method should have thrown
+    throw new AssertionError();
+  }
+}
@@ -0,0 +1,83 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+
+/**
+ * Base class of generated serializers, see {@link GeneratedJacksonCodec}.
+ *
+ * Subclasses write the fields of one message type with straight-line calls to
+ * its generated getters and produce the same output as
+ * {@code MessageSerializer} with the default naming strategy. Messages
+ * written with a {@link FieldMaskProjection} are left to
+ * {@code MessageSerializer}.
+ */
+public abstract class GeneratedMessageSerializer<T extends Message> extends ProtobufSerializer<T> {
+  /**
+   *
+   */
+  private static final long serialVersionUID = 1L;
+
+  protected GeneratedMessageSerializer(Class<T> messageType) {
+    super(messageType);
+  }
+
+  protected GeneratedMessageSerializer(Class<T> messageType, ProtobufJacksonConfig config) {
+    super(messageType, config);
+  }
+
+  @Override
+  public void serialize(T message, JsonGenerator generator, SerializerProvider serializerProvider)
+      throws IOException {
+    if (serializerProvider.getAttribute(FieldMaskProjection.ATTRIBUTE) != null) {
+      // projections are written by MessageSerializer, which walks the selected fields only
+      serializerProvider.findValueSerializer(MessageOrBuilder.class).serialize(message, generator,
+          serializerProvider);
+      return;
+    }
+
+    Include include = serializerProvider.getConfig().getDefaultPropertyInclusion().getValueInclusion();
+
+    generator.writeStartObject();
+    writeFields(message, generator, serializerProvider, include);
+    generator.writeEndObject();
+  }
+
+  protected abstract void writeFields(T message, JsonGenerator generator, SerializerProvider serializerProvider,
+      Include include) throws IOException;
+
+  /**
+   * Whether unset proto2 fields are written with their default value.
+   */
+  protected static boolean writeDefaultValues(Include include) {
+    return include != Include.NON_DEFAULT;
+  }
+
+  protected static boolean writeEmptyCollections(Include include) {
+    return include != Include.NON_DEFAULT && include != Include.NON_EMPTY;
+  }
+
+  protected static boolean writeNulls(Include include) {
+    return include == Include.ALWAYS;
+  }
+
+  protected static boolean writeSingleElementArraysUnwrapped(SerializerProvider serializerProvider) {
+    return serializerProvider.isEnabled(SerializationFeature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED);
+  }
+
+  /**
+   * Resolves the number of an open enum field, keeping unrecognized values
+   * like the reflective API does.
+   */
+  protected static EnumValueDescriptor enumValue(FieldDescriptor field, int number) {
+    return field.getEnumType().findValueByNumberCreatingIfUnknown(number);
+  }
+}
@@ -0,0 +1,188 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Throwables;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.Message;
+
+/**
+ * The has-bits of a generated message class, read straight from its
+ * {@code bitField0_}, {@code bitField1_}, ... words, so that the fields set
+ * in a message are found without calling {@code hasFoo()} on every field.
+ *
+ * Which bit belongs to which field is found out once per class, by setting
+ * each singular field alone on a builder and looking at the bits of the
+ * message built; the bits must follow the declaration order of their fields.
+ * Fields that set no bit (repeated, map and oneof fields, and proto3 fields
+ * without presence) have to be checked one by one, {@link #next} returns
+ * them whether they are set or not. Builders, whose bits have another layout,
+ * and classes whose bits cannot be read or mapped this way have no has-bits.
+ */
+public final class HasBits {
+  private static final HasBits NONE = new HasBits(new MethodHandle[0], new int[0], new int[0]);
+
+  private static final ClassValue<HasBits> HAS_BITS = new ClassValue<HasBits>() {
+    @Override
+    protected HasBits computeValue(Class<?> type) {
+      return build(type);
+    }
+  };
+
+  private final MethodHandle[] words;
+  // field index of each bit, -1 for bits of no field
+  private final int[] fieldOfBit;
+  // bit of each field index, -1 for the fields checked one by one
+  private final int[] bitOfField;
+  // from each field index, the first field checked one by one and the first bit of a field
+  private final int[] nextUnbitted;
+  private final int[] nextBit;
+
+  private HasBits(MethodHandle[] words, int[] fieldOfBit, int[] bitOfField) {
+    this.words = words;
+    this.fieldOfBit = fieldOfBit;
+    this.bitOfField = bitOfField;
+    this.nextUnbitted = new int[bitOfField.length + 1];
+    this.nextBit = new int[bitOfField.length + 1];
+    nextUnbitted[bitOfField.length] = bitOfField.length;
+    nextBit[bitOfField.length] = fieldOfBit.length;
+    for (int i = bitOfField.length - 1; i >= 0; i--) {
+      nextUnbitted[i] = bitOfField[i] < 0 ? i : nextUnbitted[i + 1];
+      nextBit[i] = bitOfField[i] >= 0 ? bitOfField[i] : nextBit[i + 1];
+    }
+  }
+
+  /**
+   * Returns the has-bits of {@code type}, or {@code null} if it is not a
+   * generated message class whose bits could be mapped to its fields.
+   */
+  public static HasBits forClass(Class<?> type) {
+    HasBits hasBits = HAS_BITS.get(type);
+    return hasBits == NONE ? null : hasBits;
+  }
+
+  /**
+   * Returns the index, at or after {@code fromIndex}, of the next field that
+   * is either set according to its has-bit or has no has-bit, or -1 past the
+   * last one.
+   */
+  public int next(Object message, int fromIndex) {
+    int unbitted = nextUnbitted[fromIndex];
+    int position = nextBit[fromIndex];
+    while (position < fieldOfBit.length) {
+      int word = position >>> 5;
+      int bits = word(message, word) & (-1 << (position & 31));
+      if (bits == 0) {
+        position = (word + 1) << 5;
+        continue;
+      }
+
+      position = (word << 5) + Integer.numberOfTrailingZeros(bits);
+      int field = fieldOfBit[position];
+      if (field >= 0) {
+        return Math.min(field, unbitted);
+      }
+      position++;
+    }
+    return unbitted < bitOfField.length ? unbitted : -1;
+  }
+
+  /**
+   * Whether the field at {@code index} has a has-bit, in which case
+   * {@link #next} only returns it when it is set.
+   */
+  public boolean hasBit(int index) {
+    return bitOfField[index] >= 0;
+  }
+
+  private int word(Object message, int word) {
+    try {
+      return (int) words[word].invokeExact(message);
+    } catch (Throwable t) {
+      Throwables.throwIfUnchecked(t);
+      throw new RuntimeException(t);
+    }
+  }
+
+  private static HasBits build(Class<?> type) {
+    if (!GeneratedMessageV3.class.isAssignableFrom(type)) {
+      return NONE;
+    }
+
+    final Message defaultInstance;
+    final List<MethodHandle> words = new ArrayList<>();
+    try {
+      defaultInstance = (Message) type.getMethod("getDefaultInstance").invoke(null);
+      for (int i = 0;; i++) {
+        Field field = bitField(type, i);
+        if (field == null) {
+          break;
+        }
+        field.setAccessible(true);
+        words.add(MethodHandles.lookup().unreflectGetter(field)
+            .asType(MethodType.methodType(int.class, Object.class)));
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // unexpected generated code, or not accessible
+      return NONE;
+    }
+    if (words.isEmpty()) {
+      return NONE;
+    }
+
+    List<FieldDescriptor> fields = defaultInstance.getDescriptorForType().getFields();
+    HasBits probe = new HasBits(words.toArray(new MethodHandle[0]), new int[0], new int[0]);
+    int[] fieldOfBit = new int[32 * words.size()];
+    Arrays.fill(fieldOfBit, -1);
+    int[] bitOfField = new int[fields.size()];
+    int lastBit = -1;
+    for (FieldDescriptor field : fields) {
+      int bit = -1;
+      if (!field.isRepeated()) {
+        final Message single;
+        try {
+          single = defaultInstance.newBuilderForType().setField(field, defaultInstance.getField(field))
+              .buildPartial();
+        } catch (RuntimeException e) {
+          return NONE;
+        }
+        for (int i = 0; i < words.size(); i++) {
+          int bits = probe.word(single, i);
+          if (bits == 0) {
+            continue;
+          } else if (bit >= 0 || Integer.bitCount(bits) > 1) {
+            return NONE;
+          }
+          bit = (i << 5) + Integer.numberOfTrailingZeros(bits);
+        }
+      }
+
+      if (bit >= 0) {
+        // in declaration order, so that the set fields are found in order
+        if (bit <= lastBit) {
+          return NONE;
+        }
+        fieldOfBit[bit] = field.getIndex();
+        lastBit = bit;
+      }
+      bitOfField[field.getIndex()] = bit;
+    }
+    return lastBit < 0 ? NONE : new HasBits(probe.words, fieldOfBit, bitOfField);
+  }
+
+  private static Field bitField(Class<?> type, int word) {
+    try {
+      Field field = type.getDeclaredField("bitField" + word + "_");
+      return field.getType() == int.class ? field : null;
+    } catch (NoSuchFieldException e) {
+      return null;
+    }
+  }
+}
@@ -9,13 +9,17 @@ import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.deser.Deserializers;
+import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.Message;
 
+import org.group.jcommon.protobuf.jackson.buildin.deserializers.DynamicMessageDeserializer;
 import org.group.jcommon.protobuf.jackson.buildin.deserializers.MessageDeserializer;
 
 public class MessageDeserializerFactory extends Deserializers.Base {
   private final ProtobufJacksonConfig config;
   private final ConcurrentMap<Class<? extends Message>, ProtobufDeserializer<?, ?>> deserializerCache;
+  private final ConcurrentMap<Class<? extends Message>, ProtobufDeserializer<?, ?>> generatedDeserializerCache;
+  private final DynamicMessageDeserializer dynamicMessageDeserializer;
 
   /**
    * @deprecated use {@link #MessageDeserializerFactory(ProtobufJacksonConfig)}
@@ -29,21 +33,43 @@ public class MessageDeserializerFactory extends Deserializers.Base {
   public MessageDeserializerFactory(ProtobufJacksonConfig config) {
     this.config = config;
     this.deserializerCache = new ConcurrentHashMap<>();
+    this.generatedDeserializerCache = new ConcurrentHashMap<>();
+    this.dynamicMessageDeserializer = new DynamicMessageDeserializer(config);
   }
 
   @Override
   @SuppressWarnings("unchecked")
   public JsonDeserializer<?> findBeanDeserializer(JavaType type, DeserializationConfig config, BeanDescription beanDesc)
       throws JsonMappingException {
-    if (Message.class.isAssignableFrom(type.getRawClass())) {
-      return getDeserializer((Class<? extends Message>) type.getRawClass()).buildAtEnd();
+    if (type.getRawClass() == DynamicMessage.class) {
+      return dynamicMessageDeserializer;
+    } else if (Message.class.isAssignableFrom(type.getRawClass())) {
+      return getDeserializer((Class<? extends Message>) type.getRawClass(), config).buildAtEnd();
     } else if (Message.Builder.class.isAssignableFrom(type.getRawClass())) {
-      return getDeserializer((Class<? extends Message>) type.getRawClass().getDeclaringClass());
+      return getDeserializer((Class<? extends Message>) type.getRawClass().getDeclaringClass(), config);
     } else {
       return super.findBeanDeserializer(type, config, beanDesc);
     }
   }
 
+  private <T extends Message> ProtobufDeserializer<T, ?> getDeserializer(Class<T> messageType,
+      DeserializationConfig deserializationConfig) {
+    if (config.generatedCodecs() && deserializationConfig.getPropertyNamingStrategy() == null) {
+      GeneratedJacksonCodec<T> codec = GeneratedCodecs.find(messageType);
+      if (codec != null) {
+        return getGeneratedDeserializer(messageType, codec);
+      }
+    }
+    return getDeserializer(messageType);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends Message> ProtobufDeserializer<T, ?> getGeneratedDeserializer(Class<T> messageType,
+      GeneratedJacksonCodec<T> codec) {
+    return (ProtobufDeserializer<T, ?>) generatedDeserializerCache.computeIfAbsent(messageType,
+        key -> codec.newDeserializer(config));
+  }
+
   @SuppressWarnings("unchecked")
   private <T extends Message> ProtobufDeserializer<T, ?> getDeserializer(Class<T> messageType) {
     ProtobufDeserializer<?, ?> deserializer = deserializerCache.get(messageType);
@@ -1,6 +1,7 @@
 package org.group.jcommon.protobuf.jackson;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -10,9 +11,13 @@ import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonParser.NumberType;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.io.NumberInput;
+import com.fasterxml.jackson.core.json.ReaderBasedJsonParser;
+import com.fasterxml.jackson.core.json.UTF8DataInputJsonParser;
+import com.fasterxml.jackson.core.json.UTF8StreamJsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
@@ -22,14 +27,16 @@ import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
-import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.EnumDescriptor;
 import com.google.protobuf.Descriptors.EnumValueDescriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.Message;
 import com.google.protobuf.NullValue;
+import com.google.protobuf.UnsafeByteOperations;
 
+import org.group.jcommon.protobuf.jackson.buildin.deserializers.DynamicMessageDeserializer;
 import org.group.jcommon.protobuf.jackson.buildin.deserializers.MessageDeserializer;
 
 public abstract class ProtobufDeserializer<T extends Message, V extends Message.Builder> extends StdDeserializer<V> {
@@ -42,9 +49,15 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
 
   private final T defaultInstance;
   private final Map<FieldDescriptor, JsonDeserializer<Object>> deserializerCache;
+  private final ProtobufJacksonConfig config;
+  private final boolean fastFloatingPoint;
 
-  @SuppressWarnings("unchecked")
   public ProtobufDeserializer(final Class<T> messageType) {
+    this(messageType, ProtobufJacksonConfig.builder().build());
+  }
+
+  @SuppressWarnings("unchecked")
+  public ProtobufDeserializer(final Class<T> messageType, final ProtobufJacksonConfig config) {
     super(messageType);
 
     try {
@@ -54,6 +67,20 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
     }
 
     this.deserializerCache = new ConcurrentHashMap<>();
+    this.config = config;
+    this.fastFloatingPoint = config.fastFloatingPoint();
+  }
+
+  /**
+   * For messages without a generated class, such as {@link DynamicMessage}s.
+   */
+  protected ProtobufDeserializer(final T defaultInstance, final ProtobufJacksonConfig config) {
+    super(defaultInstance.getClass());
+
+    this.defaultInstance = defaultInstance;
+    this.deserializerCache = new ConcurrentHashMap<>();
+    this.config = config;
+    this.fastFloatingPoint = config.fastFloatingPoint();
   }
 
   protected abstract void populate(V builder, JsonParser parser, DeserializationContext context) throws IOException;
@@ -94,6 +121,28 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
     }
   }
 
+  /**
+   * Reads any field through the reflective API and sets or adds its value;
+   * map entries are put through the field's accessor when generated
+   * accessors are enabled.
+   */
+  protected void setField(final Message.Builder builder, final FieldDescriptor field, final Message defaultInstance,
+      final JsonParser parser, final DeserializationContext context) throws IOException {
+    if (field.isMapField()) {
+      final FieldAccessor[] accessors = config.generatedAccessors() ? FieldAccessor.accessorsFor(builder.getClass())
+          : null;
+      readMap(builder, field, accessors == null ? null : accessors[field.getIndex()], parser, context);
+    } else if (field.isRepeated()) {
+      readRepeated(builder, field, null, defaultInstance, parser, context);
+    } else {
+      final Object value = readValue(builder, field, defaultInstance, parser, context);
+
+      if (value != null) {
+        builder.setField(field, value);
+      }
+    }
+  }
+
   protected List<Message> readMap(final Message.Builder builder, final FieldDescriptor field, final JsonParser parser,
       final DeserializationContext context) throws IOException {
     if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
@@ -122,6 +171,46 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
     return entries;
   }
 
+  /**
+   * Reads a map field and puts each entry into the builder as soon as it is
+   * parsed. Entries go through {@code accessor}, when there is one, straight
+   * into the builder's map; otherwise a single entry builder is reused for
+   * all entries.
+   */
+  protected void readMap(final Message.Builder builder, final FieldDescriptor field, final FieldAccessor accessor,
+      final JsonParser parser, final DeserializationContext context) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+      // Seems like we should treat null as an empty map rather than fail?
+      return;
+    } else if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      throw reportWrongToken(JsonToken.START_OBJECT, context,
+          "Can't parse map field out of " + parser.currentToken() + " token");
+    }
+
+    final Descriptor entryDescriptor = field.getMessageType();
+    final FieldDescriptor keyDescriptor = entryDescriptor.findFieldByName("key");
+    final FieldDescriptor valueDescriptor = entryDescriptor.findFieldByName("value");
+
+    // also used to look up the deserializer of message values
+    final Message.Builder entryBuilder = builder.newBuilderForField(field);
+    while (parser.nextToken() != JsonToken.END_OBJECT) {
+      final Object key = readKey(keyDescriptor, parser, context);
+      parser.nextToken(); // move from key to value
+      final Object value = readValue(entryBuilder, valueDescriptor, null, parser, context);
+      if (value == null) {
+        continue;
+      }
+
+      if (accessor != null) {
+        accessor.put(builder, key, value);
+      } else {
+        entryBuilder.setField(keyDescriptor, key);
+        entryBuilder.setField(valueDescriptor, value);
+        builder.addRepeatedField(field, entryBuilder.build());
+      }
+    }
+  }
+
   /**
    * Specialized version of readValue just for reading map keys, because the
    * StdDeserializer methods like _parseIntPrimitive blow up when the current
@@ -138,7 +227,9 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
       case INT:
         // lifted from StdDeserializer since there's no method to call
         try {
-          return NumberInput.parseInt(fieldName.trim());
+          final String text = fieldName.trim();
+          return isUnsigned(field) && !text.startsWith("-") ? Integer.parseUnsignedInt(text)
+              : NumberInput.parseInt(text);
         } catch (final IllegalArgumentException iae) {
           final Number number = (Number) context.handleWeirdStringValue(_valueClass, fieldName.trim(),
               "not a valid int value");
@@ -147,7 +238,9 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
       case LONG:
         // lifted from StdDeserializer since there's no method to call
         try {
-          return NumberInput.parseLong(fieldName.trim());
+          final String text = fieldName.trim();
+          return isUnsigned(field) && !text.startsWith("-") ? Long.parseUnsignedLong(text)
+              : NumberInput.parseLong(text);
         } catch (final IllegalArgumentException iae) {
           final Number number = (Number) context.handleWeirdStringValue(_valueClass, fieldName.trim(),
               "not a valid long value");
@@ -222,13 +315,13 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
 
     switch (field.getJavaType()) {
       case INT:
-        return _parseIntPrimitive(parser, context);
+        return parseInt(field, parser, context);
       case LONG:
-        return _parseLongPrimitive(parser, context);
+        return parseLong(field, parser, context);
       case FLOAT:
-        return _parseFloatPrimitive(parser, context);
+        return parseFloat(parser, context);
       case DOUBLE:
-        return _parseDoublePrimitive(parser, context);
+        return parseDouble(parser, context);
       case BOOLEAN:
         return _parseBooleanPrimitive(parser, context);
       case STRING:
@@ -241,7 +334,8 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
       case BYTE_STRING:
         switch (parser.getCurrentToken()) {
           case VALUE_STRING:
-            return ByteString.copyFrom(context.getBase64Variant().decode(parser.getText()));
+            // the parser decodes into a new array, no need to copy it
+            return UnsafeByteOperations.unsafeWrap(parser.getBinaryValue(context.getBase64Variant()));
           default:
             throw reportWrongToken(field, JsonToken.VALUE_STRING, context);
         }
@@ -282,6 +376,45 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
     }
   }
 
+  /**
+   * Reads a singular field and sets it through its generated accessor, keeping
+   * primitive values unboxed.
+   */
+  protected void readValue(final Message.Builder builder, final FieldAccessor accessor, final JsonParser parser,
+      final DeserializationContext context) throws IOException {
+    final FieldDescriptor field = accessor.getField();
+    if (!isScalarToken(parser)) {
+      final Object value = readValue(builder, field, null, parser, context);
+      if (value != null) {
+        builder.setField(field, value);
+      }
+      return;
+    }
+
+    switch (field.getJavaType()) {
+      case INT:
+        accessor.setInt(builder, parseInt(field, parser, context));
+        return;
+      case LONG:
+        accessor.setLong(builder, parseLong(field, parser, context));
+        return;
+      case FLOAT:
+        accessor.setFloat(builder, parseFloat(parser, context));
+        return;
+      case DOUBLE:
+        accessor.setDouble(builder, parseDouble(parser, context));
+        return;
+      case BOOLEAN:
+        accessor.setBoolean(builder, _parseBooleanPrimitive(parser, context));
+        return;
+      default:
+        final Object value = readValue(builder, field, null, parser, context);
+        if (value != null) {
+          accessor.set(builder, value);
+        }
+    }
+  }
+
   protected List<Object> readArray(final Message.Builder builder, final FieldDescriptor field,
       final Message defaultInstance, final JsonParser parser, final DeserializationContext context) throws IOException {
     switch (parser.getCurrentToken()) {
@@ -308,20 +441,174 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
     }
   }
 
+  /**
+   * Reads a repeated field and adds each element to the builder as soon as it
+   * is parsed. Numeric and boolean elements are added through
+   * {@code accessor}, when there is one, without being boxed.
+   */
+  protected void readRepeated(final Message.Builder builder, final FieldDescriptor field,
+      final FieldAccessor accessor, final Message defaultInstance, final JsonParser parser,
+      final DeserializationContext context) throws IOException {
+    switch (parser.getCurrentToken()) {
+      case START_ARRAY:
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          addRepeatedValue(builder, field, accessor, defaultInstance, parser, context);
+        }
+        return;
+      case VALUE_NULL:
+        // Seems like we should treat null as an empty list rather than fail?
+        return;
+      default:
+        if (context.isEnabled(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY)) {
+          addRepeatedValue(builder, field, accessor, defaultInstance, parser, context);
+        } else {
+          throw reportInputMismatch(context, "Expected JSON array for repeated field " + field.getFullName());
+        }
+    }
+  }
+
+  private void addRepeatedValue(final Message.Builder builder, final FieldDescriptor field,
+      final FieldAccessor accessor, final Message defaultInstance, final JsonParser parser,
+      final DeserializationContext context) throws IOException {
+    if (accessor != null && isScalarToken(parser)) {
+      switch (field.getJavaType()) {
+        case INT:
+          accessor.addInt(builder, parseInt(field, parser, context));
+          return;
+        case LONG:
+          accessor.addLong(builder, parseLong(field, parser, context));
+          return;
+        case FLOAT:
+          accessor.addFloat(builder, parseFloat(parser, context));
+          return;
+        case DOUBLE:
+          accessor.addDouble(builder, parseDouble(parser, context));
+          return;
+        case BOOLEAN:
+          accessor.addBoolean(builder, _parseBooleanPrimitive(parser, context));
+          return;
+        default:
+          break;
+      }
+    }
+
+    final Object value = readValue(builder, field, defaultInstance, parser, context);
+    if (value != null) {
+      builder.addRepeatedField(field, value);
+    }
+  }
+
+  /**
+   * Whether the current token can be read with the {@code _parseXxxPrimitive}
+   * methods; nulls and arrays go through {@link #readValue} for its error
+   * handling.
+   */
+  protected static boolean isScalarToken(final JsonParser parser) {
+    final JsonToken token = parser.getCurrentToken();
+    return token != JsonToken.VALUE_NULL && token != JsonToken.START_ARRAY;
+  }
+
+  /**
+   * Same as {@code _parseIntPrimitive}, also accepting the values of unsigned
+   * fields above {@code Integer.MAX_VALUE}.
+   */
+  protected final int parseInt(final FieldDescriptor field, final JsonParser parser,
+      final DeserializationContext context) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == NumberType.LONG
+        && isUnsigned(field)) {
+      final long value = parser.getLongValue();
+      if (value >>> 32 == 0) {
+        return (int) value;
+      }
+    }
+    return _parseIntPrimitive(parser, context);
+  }
+
+  /**
+   * Same as {@code _parseLongPrimitive}, also accepting the values of unsigned
+   * fields above {@code Long.MAX_VALUE}, as numbers or strings.
+   */
+  protected final long parseLong(final FieldDescriptor field, final JsonParser parser,
+      final DeserializationContext context) throws IOException {
+    if (isUnsigned(field)) {
+      if (parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == NumberType.BIG_INTEGER) {
+        final BigInteger value = parser.getBigIntegerValue();
+        if (value.signum() >= 0 && value.bitLength() <= 64) {
+          return value.longValue();
+        }
+      } else if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+        final String text = parser.getText().trim();
+        if (!text.startsWith("-")) {
+          try {
+            return Long.parseUnsignedLong(text);
+          } catch (final NumberFormatException e) {
+            // reported below
+          }
+        }
+      }
+    }
+    return _parseLongPrimitive(parser, context);
+  }
+
+  /**
+   * Same as {@code _parseDoublePrimitive}, reading JSON text numbers straight
+   * from the parser's buffer when fast floating point is enabled.
+   */
+  protected final double parseDouble(final JsonParser parser, final DeserializationContext context)
+      throws IOException {
+    if (readFromTextBuffer(parser)) {
+      final double value = FastDoubleParser.parseDouble(parser.getTextCharacters(), parser.getTextOffset(),
+          parser.getTextLength());
+      if (!Double.isNaN(value)) {
+        return value;
+      }
+    }
+    return _parseDoublePrimitive(parser, context);
+  }
+
+  /**
+   * Same as {@code _parseFloatPrimitive}, reading JSON text numbers straight
+   * from the parser's buffer when fast floating point is enabled.
+   */
+  protected final float parseFloat(final JsonParser parser, final DeserializationContext context) throws IOException {
+    if (readFromTextBuffer(parser)) {
+      final float value = FastDoubleParser.parseFloat(parser.getTextCharacters(), parser.getTextOffset(),
+          parser.getTextLength());
+      if (!Float.isNaN(value)) {
+        return value;
+      }
+    }
+    return _parseFloatPrimitive(parser, context);
+  }
+
+  private boolean readFromTextBuffer(final JsonParser parser) {
+    // integers are already parsed cheaply, and binary formats have no text to read
+    return fastFloatingPoint && parser.getCurrentToken() == JsonToken.VALUE_NUMBER_FLOAT
+        && (parser instanceof UTF8StreamJsonParser || parser instanceof ReaderBasedJsonParser
+            || parser instanceof UTF8DataInputJsonParser);
+  }
+
+  @SuppressWarnings("unchecked")
   private JsonDeserializer<Object> getMessageDeserializer(final Message.Builder builder, final FieldDescriptor field,
       final Message defaultInstance, final DeserializationContext context) throws IOException {
     JsonDeserializer<Object> deserializer = deserializerCache.get(field);
     if (deserializer == null) {
-      final Class<?> subType;
+      final Message subDefaultInstance;
       if (defaultInstance == null) {
         final Message.Builder subBuilder = builder.newBuilderForField(field);
-        subType = subBuilder.getDefaultInstanceForType().getClass();
+        subDefaultInstance = subBuilder.getDefaultInstanceForType();
       } else {
-        subType = defaultInstance.getClass();
+        subDefaultInstance = defaultInstance;
       }
 
-      final JavaType type = context.constructType(subType);
-      deserializer = context.findContextualValueDeserializer(type, null);
+      if (subDefaultInstance instanceof DynamicMessage) {
+        // the class doesn't tell the type, cached here with the field instead
+        deserializer = (JsonDeserializer<Object>) (JsonDeserializer<?>) DynamicMessageDeserializer
+            .forDescriptor(subDefaultInstance.getDescriptorForType(), config, context);
+      } else {
+        final JavaType type = context.constructType(subDefaultInstance.getClass());
+        deserializer = context.findContextualValueDeserializer(type, null);
+      }
       deserializerCache.put(field, deserializer);
     }
 
@@ -354,7 +641,20 @@ public abstract class ProtobufDeserializer<T extends Message, V extends Message.
     } else {
       deserializerType = deserializer.getClass();
     }
-    return MessageDeserializer.class.equals(deserializerType);
+    return MessageDeserializer.class.equals(deserializerType)
+        || GeneratedMessageDeserializer.class.isAssignableFrom(deserializerType);
+  }
+
+  private static boolean isUnsigned(final FieldDescriptor field) {
+    switch (field.getType()) {
+      case UINT32:
+      case FIXED32:
+      case UINT64:
+      case FIXED64:
+        return true;
+      default:
+        return false;
+    }
   }
 
   private static boolean ignorableEnum(final String value, final DeserializationContext context) {
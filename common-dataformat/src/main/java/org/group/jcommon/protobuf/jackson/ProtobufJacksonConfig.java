@@ -5,10 +5,24 @@ import com.google.protobuf.ExtensionRegistry;
 public class ProtobufJacksonConfig {
   private final ExtensionRegistryWrapper extensionRegistry;
   private final boolean acceptLiteralFieldnames;
+  private final boolean generatedAccessors;
+  private final boolean generatedCodecs;
+  private final boolean fastFloatingPoint;
+  private final boolean shortestDecimalOutput;
+  private final boolean serializeLongsAsString;
+  private final boolean properUnsignedNumberSerialization;
+  private final long maxDynamicSchemas;
 
-  private ProtobufJacksonConfig(ExtensionRegistryWrapper extensionRegistry, boolean acceptLiteralFieldnames) {
-    this.extensionRegistry = extensionRegistry;
-    this.acceptLiteralFieldnames = acceptLiteralFieldnames;
+  private ProtobufJacksonConfig(Builder builder) {
+    this.extensionRegistry = builder.extensionRegistry;
+    this.acceptLiteralFieldnames = builder.acceptLiteralFieldnames;
+    this.generatedAccessors = builder.generatedAccessors;
+    this.generatedCodecs = builder.generatedCodecs;
+    this.fastFloatingPoint = builder.fastFloatingPoint;
+    this.shortestDecimalOutput = builder.shortestDecimalOutput;
+    this.serializeLongsAsString = builder.serializeLongsAsString;
+    this.properUnsignedNumberSerialization = builder.properUnsignedNumberSerialization;
+    this.maxDynamicSchemas = builder.maxDynamicSchemas;
   }
 
   public static Builder builder() {
@@ -23,9 +37,44 @@ public class ProtobufJacksonConfig {
     return acceptLiteralFieldnames;
   }
 
+  public boolean generatedAccessors() {
+    return generatedAccessors;
+  }
+
+  public boolean generatedCodecs() {
+    return generatedCodecs;
+  }
+
+  public boolean fastFloatingPoint() {
+    return fastFloatingPoint;
+  }
+
+  public boolean shortestDecimalOutput() {
+    return shortestDecimalOutput;
+  }
+
+  public boolean serializeLongsAsString() {
+    return serializeLongsAsString;
+  }
+
+  public boolean properUnsignedNumberSerialization() {
+    return properUnsignedNumberSerialization;
+  }
+
+  public long maxDynamicSchemas() {
+    return maxDynamicSchemas;
+  }
+
   public static class Builder {
     private ExtensionRegistryWrapper extensionRegistry = ExtensionRegistryWrapper.empty();
     private boolean acceptLiteralFieldnames = false;
+    private boolean generatedAccessors = false;
+    private boolean generatedCodecs = true;
+    private boolean fastFloatingPoint = false;
+    private boolean shortestDecimalOutput = false;
+    private boolean serializeLongsAsString = false;
+    private boolean properUnsignedNumberSerialization = false;
+    private long maxDynamicSchemas = 1000;
 
     private Builder() {
     }
@@ -44,8 +93,83 @@ public class ProtobufJacksonConfig {
       return this;
     }
 
+    /**
+     * Read and write the fields of generated messages, and the elements of
+     * their repeated and map fields, through their generated accessors
+     * instead of the reflective {@code getField}/{@code setField} API, see
+     * {@link FieldAccessor}. This avoids boxing and the reflective lookups;
+     * the calls themselves are not inlined.
+     */
+    public Builder generatedAccessors(boolean generatedAccessors) {
+      this.generatedAccessors = generatedAccessors;
+      return this;
+    }
+
+    /**
+     * Use the codecs generated by
+     * {@link org.group.jcommon.protobuf.jackson.codegen.JacksonCodecGenerator}
+     * for message types that have one on the classpath, see
+     * {@link GeneratedJacksonCodec}.
+     */
+    public Builder generatedCodecs(boolean generatedCodecs) {
+      this.generatedCodecs = generatedCodecs;
+      return this;
+    }
+
+    /**
+     * Read {@code float} and {@code double} fields straight from the parser's
+     * buffer instead of going through a {@code String}. The values read are
+     * the same as with {@link Double#parseDouble}.
+     */
+    public Builder fastFloatingPoint(boolean fastFloatingPoint) {
+      this.fastFloatingPoint = fastFloatingPoint;
+      return this;
+    }
+
+    /**
+     * Write {@code float} and {@code double} fields with the shortest decimal
+     * that round-trips. The text is that of {@link Double#toString} on JDK 19
+     * and later only: older JDKs sometimes print more digits, e.g.
+     * {@code 2.82879384806159008E17} for {@code 2.82879384806159E17}, or
+     * {@code 0.0020} for {@code 0.002}. The values written are the same.
+     */
+    public Builder shortestDecimalOutput(boolean shortestDecimalOutput) {
+      this.shortestDecimalOutput = shortestDecimalOutput;
+      return this;
+    }
+
+    /**
+     * Write 64-bit integer fields as JSON strings, like
+     * {@code JsonFormat} does, since JavaScript numbers can't hold them.
+     */
+    public Builder serializeLongsAsString(boolean serializeLongsAsString) {
+      this.serializeLongsAsString = serializeLongsAsString;
+      return this;
+    }
+
+    /**
+     * Write {@code uint32}, {@code fixed32}, {@code uint64} and
+     * {@code fixed64} fields as unsigned numbers, like {@code JsonFormat}
+     * does, rather than as the signed Java values. Unsigned values are read
+     * back either way.
+     */
+    public Builder properUnsignedNumberSerialization(boolean properUnsignedNumberSerialization) {
+      this.properUnsignedNumberSerialization = properUnsignedNumberSerialization;
+      return this;
+    }
+
+    /**
+     * Number of {@code DynamicMessage} descriptors whose serialization plans
+     * and deserializers are kept, the least recently used being evicted
+     * first, see {@link DynamicMessages}.
+     */
+    public Builder maxDynamicSchemas(long maxDynamicSchemas) {
+      this.maxDynamicSchemas = maxDynamicSchemas;
+      return this;
+    }
+
     public ProtobufJacksonConfig build() {
-      return new ProtobufJacksonConfig(extensionRegistry, acceptLiteralFieldnames);
+      return new ProtobufJacksonConfig(this);
     }
   }
 }
@@ -0,0 +1,164 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Descriptors.ServiceDescriptor;
+
+/**
+ * The Java names protoc gives to generated message classes and accessors,
+ * following the rules of the protobuf Java code generator.
+ */
+public final class ProtobufJavaNames {
+  private static final String CODEC_SUFFIX = "JacksonCodec";
+
+  // capitalized names that clash with methods of the protobuf base classes
+  private static final Set<String> RESERVED_NAMES = ImmutableSet.of("Class", "CachedSize", "SerializedSize",
+      "AllFields", "DescriptorForType", "DefaultInstanceForType", "InitializationErrorString", "ParserForType",
+      "UnknownFields", "Initialized", "Descriptor");
+
+  private static final String[] DERIVED_SUFFIXES = { "Count", "List", "Value", "Bytes", "Map", "OrBuilder",
+      "Builder", "OrBuilderList", "BuilderList", "Case" };
+
+  private ProtobufJavaNames() {
+  }
+
+  public static String javaPackage(FileDescriptor file) {
+    if (file.getOptions().hasJavaPackage()) {
+      return file.getOptions().getJavaPackage();
+    }
+    return file.getPackage();
+  }
+
+  public static String outerClassName(FileDescriptor file) {
+    if (file.getOptions().hasJavaOuterClassname()) {
+      return file.getOptions().getJavaOuterClassname();
+    }
+
+    String baseName = file.getName();
+    baseName = baseName.substring(baseName.lastIndexOf('/') + 1);
+    if (baseName.endsWith(".proto")) {
+      baseName = baseName.substring(0, baseName.length() - ".proto".length());
+    }
+    String name = capitalizedCamelName(baseName);
+    return hasConflictingClassName(file, name) ? name + "OuterClass" : name;
+  }
+
+  /**
+   * Returns the binary name of the class generated for {@code descriptor}, e.g.
+   * {@code com.example.Outer$Message$Nested}.
+   */
+  public static String className(Descriptor descriptor) {
+    StringBuilder name = new StringBuilder(descriptor.getName());
+    for (Descriptor parent = descriptor.getContainingType(); parent != null; parent = parent.getContainingType()) {
+      name.insert(0, parent.getName() + "$");
+    }
+
+    FileDescriptor file = descriptor.getFile();
+    if (!file.getOptions().getJavaMultipleFiles()) {
+      name.insert(0, outerClassName(file) + "$");
+    }
+
+    String javaPackage = javaPackage(file);
+    return javaPackage.isEmpty() ? name.toString() : javaPackage + "." + name;
+  }
+
+  /**
+   * Returns the binary name of the generated Jackson codec for the message
+   * class {@code messageClassName}: the codec lives in the same package and
+   * flattens nested class names with underscores.
+   */
+  public static String codecClassName(String messageClassName) {
+    int packageEnd = messageClassName.lastIndexOf('.');
+    String simpleName = messageClassName.substring(packageEnd + 1).replace('$', '_');
+    return messageClassName.substring(0, packageEnd + 1) + simpleName + CODEC_SUFFIX;
+  }
+
+  /**
+   * Returns the capitalized name used in the generated accessors of
+   * {@code field} ({@code getFoo()}, {@code setFoo(..)}), or {@code null} if
+   * protoc may have renamed them to avoid a clash.
+   */
+  public static String accessorName(FieldDescriptor field) {
+    String name = capitalizedCamelName(field.getName());
+    if (RESERVED_NAMES.contains(name)) {
+      return null;
+    }
+
+    List<FieldDescriptor> siblings = field.getContainingType().getFields();
+    Set<String> derivedNames = new HashSet<>();
+    for (FieldDescriptor sibling : siblings) {
+      String siblingName = capitalizedCamelName(sibling.getName());
+      for (String suffix : DERIVED_SUFFIXES) {
+        derivedNames.add(siblingName + suffix);
+      }
+    }
+    return derivedNames.contains(name) ? null : name;
+  }
+
+  /**
+   * Mirrors protoc's {@code UnderscoresToCamelCase(name, true)}.
+   */
+  public static String capitalizedCamelName(String name) {
+    StringBuilder result = new StringBuilder(name.length());
+    boolean capitalizeNext = true;
+    for (int i = 0; i < name.length(); i++) {
+      char ch = name.charAt(i);
+      if (ch >= 'a' && ch <= 'z') {
+        result.append(capitalizeNext ? (char) (ch - 'a' + 'A') : ch);
+        capitalizeNext = false;
+      } else if (ch >= 'A' && ch <= 'Z') {
+        result.append(ch);
+        capitalizeNext = false;
+      } else if (ch >= '0' && ch <= '9') {
+        result.append(ch);
+        capitalizeNext = true;
+      } else {
+        capitalizeNext = true;
+      }
+    }
+    return result.toString();
+  }
+
+  private static boolean hasConflictingClassName(FileDescriptor file, String name) {
+    for (EnumDescriptor enumType : file.getEnumTypes()) {
+      if (enumType.getName().equals(name)) {
+        return true;
+      }
+    }
+    for (ServiceDescriptor service : file.getServices()) {
+      if (service.getName().equals(name)) {
+        return true;
+      }
+    }
+    for (Descriptor messageType : file.getMessageTypes()) {
+      if (hasConflictingClassName(messageType, name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasConflictingClassName(Descriptor descriptor, String name) {
+    if (descriptor.getName().equals(name)) {
+      return true;
+    }
+    for (EnumDescriptor enumType : descriptor.getEnumTypes()) {
+      if (enumType.getName().equals(name)) {
+        return true;
+      }
+    }
+    for (Descriptor nested : descriptor.getNestedTypes()) {
+      if (hasConflictingClassName(nested, name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -91,18 +91,22 @@ public class ProtobufModule extends Module {
         serializers.addSerializer(new NullValueSerializer());
         serializers.addSerializer(new StructSerializer());
         serializers.addSerializer(new TimestampSerializer());
-        serializers.addSerializer(new ValueSerializer());
-        serializers.addSerializer(new WrappedPrimitiveSerializer<>(DoubleValue.class));
-        serializers.addSerializer(new WrappedPrimitiveSerializer<>(FloatValue.class));
-        serializers.addSerializer(new WrappedPrimitiveSerializer<>(Int64Value.class));
-        serializers.addSerializer(new WrappedPrimitiveSerializer<>(UInt64Value.class));
-        serializers.addSerializer(new WrappedPrimitiveSerializer<>(Int32Value.class));
-        serializers.addSerializer(new WrappedPrimitiveSerializer<>(UInt32Value.class));
-        serializers.addSerializer(new WrappedPrimitiveSerializer<>(BoolValue.class));
-        serializers.addSerializer(new WrappedPrimitiveSerializer<>(StringValue.class));
-        serializers.addSerializer(new WrappedPrimitiveSerializer<>(BytesValue.class));
+        serializers.addSerializer(new ValueSerializer(config));
+        serializers.addSerializer(new WrappedPrimitiveSerializer<>(DoubleValue.class, config));
+        serializers.addSerializer(new WrappedPrimitiveSerializer<>(FloatValue.class, config));
+        serializers.addSerializer(new WrappedPrimitiveSerializer<>(Int64Value.class, config));
+        serializers.addSerializer(new WrappedPrimitiveSerializer<>(UInt64Value.class, config));
+        serializers.addSerializer(new WrappedPrimitiveSerializer<>(Int32Value.class, config));
+        serializers.addSerializer(new WrappedPrimitiveSerializer<>(UInt32Value.class, config));
+        serializers.addSerializer(new WrappedPrimitiveSerializer<>(BoolValue.class, config));
+        serializers.addSerializer(new WrappedPrimitiveSerializer<>(StringValue.class, config));
+        serializers.addSerializer(new WrappedPrimitiveSerializer<>(BytesValue.class, config));
 
         context.addSerializers(serializers);
+        if (config.generatedCodecs()) {
+            // added last so it takes precedence over MessageSerializer
+            context.addSerializers(new GeneratedCodecs.CodecSerializers(config));
+        }
 
         context.addDeserializers(new MessageDeserializerFactory(config));
         final SimpleDeserializers deserializers = new SimpleDeserializers();
@@ -110,9 +114,9 @@ public class ProtobufModule extends Module {
         deserializers.addDeserializer(FieldMask.class, new FieldMaskDeserializer());
         deserializers.addDeserializer(ListValue.class, new ListValueDeserializer().buildAtEnd());
         deserializers.addDeserializer(NullValue.class, new NullValueDeserializer());
-        deserializers.addDeserializer(Struct.class, new StructDeserializer().buildAtEnd());
+        deserializers.addDeserializer(Struct.class, new StructDeserializer(config).buildAtEnd());
         deserializers.addDeserializer(Timestamp.class, new TimestampDeserializer());
-        deserializers.addDeserializer(Value.class, new ValueDeserializer().buildAtEnd());
+        deserializers.addDeserializer(Value.class, new ValueDeserializer(config).buildAtEnd());
         deserializers.addDeserializer(DoubleValue.class, wrappedPrimitiveDeserializer(DoubleValue.class));
         deserializers.addDeserializer(FloatValue.class, wrappedPrimitiveDeserializer(FloatValue.class));
         deserializers.addDeserializer(Int64Value.class, wrappedPrimitiveDeserializer(Int64Value.class));
@@ -126,8 +130,8 @@ public class ProtobufModule extends Module {
         context.setMixInAnnotations(MessageOrBuilder.class, MessageOrBuilderMixin.class);
     }
 
-    private static <T extends Message> JsonDeserializer<T> wrappedPrimitiveDeserializer(final Class<T> type) {
-        return new WrappedPrimitiveDeserializer<>(type).buildAtEnd();
+    private <T extends Message> JsonDeserializer<T> wrappedPrimitiveDeserializer(final Class<T> type) {
+        return new WrappedPrimitiveDeserializer<>(type, config).buildAtEnd();
     }
 
     @JsonAutoDetect(getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE, creatorVisibility = Visibility.NONE, fieldVisibility = Visibility.NONE)
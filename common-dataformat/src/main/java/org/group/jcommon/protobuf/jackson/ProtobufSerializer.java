@@ -3,12 +3,19 @@ package org.group.jcommon.protobuf.jackson;
 import static java.lang.String.format;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.fasterxml.jackson.core.Base64Variant;
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
@@ -28,46 +35,144 @@ public abstract class ProtobufSerializer<T extends MessageOrBuilder> extends Std
   private static final long serialVersionUID = 1L;
 
   private static final String NULL_VALUE_FULL_NAME = NullValue.getDescriptor().getFullName();
+  private static final SerializedString TRUE_KEY = new SerializedString("true");
+  private static final SerializedString FALSE_KEY = new SerializedString("false");
+  private static final SerializedString[] INT_KEYS = new SerializedString[256];
+
+  static {
+    for (int i = 0; i < INT_KEYS.length; i++) {
+      INT_KEYS[i] = new SerializedString(Integer.toString(i));
+    }
+  }
 
   private final Map<Class<?>, JsonSerializer<Object>> serializerCache;
+  private final boolean shortestDecimalOutput;
+  private final boolean serializeLongsAsString;
+  private final boolean properUnsignedNumberSerialization;
 
   public ProtobufSerializer(Class<T> protobufType) {
+    this(protobufType, ProtobufJacksonConfig.builder().build());
+  }
+
+  public ProtobufSerializer(Class<T> protobufType, ProtobufJacksonConfig config) {
     super(protobufType);
 
     this.serializerCache = new ConcurrentHashMap<>();
+    this.shortestDecimalOutput = config.shortestDecimalOutput();
+    this.serializeLongsAsString = config.serializeLongsAsString();
+    this.properUnsignedNumberSerialization = config.properUnsignedNumberSerialization();
   }
 
+  /**
+   * Writes a map field from its list of entry messages, as returned by the
+   * reflective API.
+   */
   @SuppressWarnings("unchecked")
   protected void writeMap(FieldDescriptor field, Object entries, JsonGenerator generator,
       SerializerProvider serializerProvider) throws IOException {
     Descriptor entryDescriptor = field.getMessageType();
     FieldDescriptor keyDescriptor = entryDescriptor.findFieldByName("key");
     FieldDescriptor valueDescriptor = entryDescriptor.findFieldByName("value");
+    boolean unsignedKeys = isUnsigned(keyDescriptor);
+    if (orderMapEntriesByKeys(serializerProvider)) {
+      Map<Object, Object> map = new TreeMap<>();
+      for (Message entry : (List<? extends Message>) entries) {
+        map.put(entry.getField(keyDescriptor), entry.getField(valueDescriptor));
+      }
+      writeMap(field, map, generator, serializerProvider);
+      return;
+    }
+
     generator.writeStartObject();
     for (Message entry : (List<? extends Message>) entries) {
-      // map keys can only be integers or strings so this should be fine
-      generator.writeFieldName(entry.getField(keyDescriptor).toString());
-      Object value = entry.getField(valueDescriptor);
+      writeMapKey(entry.getField(keyDescriptor), unsignedKeys, generator);
       // map values can't be maps or repeated so this should be fine
-      writeValue(valueDescriptor, value, generator, serializerProvider);
+      writeValue(valueDescriptor, entry.getField(valueDescriptor), generator, serializerProvider);
     }
     generator.writeEndObject();
   }
 
+  /**
+   * Writes a map field straight from its map storage, e.g. the result of a
+   * generated {@code getFooMap()}; values are those of the reflective API.
+   */
+  protected void writeMap(FieldDescriptor field, Map<?, ?> map, JsonGenerator generator,
+      SerializerProvider serializerProvider) throws IOException {
+    FieldDescriptor valueDescriptor = field.getMessageType().findFieldByName("value");
+    boolean unsignedKeys = isUnsigned(field.getMessageType().findFieldByName("key"));
+    generator.writeStartObject();
+    for (Map.Entry<?, ?> entry : orderedMap(map, serializerProvider).entrySet()) {
+      writeMapKey(entry.getKey(), unsignedKeys, generator);
+      // map values can't be maps or repeated so this should be fine
+      writeValue(valueDescriptor, entry.getValue(), generator, serializerProvider);
+    }
+    generator.writeEndObject();
+  }
+
+  /**
+   * Writes a map key as a field name; small integer and boolean keys use
+   * pre-built names.
+   */
+  protected static void writeMapKey(Object key, JsonGenerator generator) throws IOException {
+    // map keys can only be integers, booleans or strings
+    if (key instanceof String) {
+      generator.writeFieldName((String) key);
+    } else if (key instanceof Integer) {
+      int value = (Integer) key;
+      if (value >= 0 && value < INT_KEYS.length) {
+        generator.writeFieldName(INT_KEYS[value]);
+      } else {
+        generator.writeFieldName(Integer.toString(value));
+      }
+    } else if (key instanceof Boolean) {
+      generator.writeFieldName((Boolean) key ? TRUE_KEY : FALSE_KEY);
+    } else {
+      generator.writeFieldName(key.toString());
+    }
+  }
+
+  /**
+   * Same as {@link #writeMapKey(Object, JsonGenerator)}, writing the keys of
+   * unsigned fields as unsigned when configured to.
+   */
+  protected void writeMapKey(Object key, boolean unsigned, JsonGenerator generator) throws IOException {
+    if (unsigned && properUnsignedNumberSerialization) {
+      if (key instanceof Integer && (Integer) key < 0) {
+        generator.writeFieldName(Integer.toUnsignedString((Integer) key));
+        return;
+      } else if (key instanceof Long && (Long) key < 0) {
+        generator.writeFieldName(Long.toUnsignedString((Long) key));
+        return;
+      }
+    }
+    writeMapKey(key, generator);
+  }
+
+  /**
+   * Returns {@code map} sorted by key if
+   * {@link SerializationFeature#ORDER_MAP_ENTRIES_BY_KEYS} is enabled.
+   */
+  protected static Map<?, ?> orderedMap(Map<?, ?> map, SerializerProvider serializerProvider) {
+    if (map.size() > 1 && orderMapEntriesByKeys(serializerProvider)) {
+      return new TreeMap<Object, Object>(map);
+    }
+    return map;
+  }
+
   protected void writeValue(FieldDescriptor field, Object value, JsonGenerator generator,
       SerializerProvider serializerProvider) throws IOException {
     switch (field.getJavaType()) {
       case INT:
-        generator.writeNumber((Integer) value);
+        writeInt(field, (Integer) value, generator, serializerProvider);
         break;
       case LONG:
-        generator.writeNumber((Long) value);
+        writeLong(field, (Long) value, generator, serializerProvider);
         break;
       case FLOAT:
-        generator.writeNumber((Float) value);
+        writeFloat(field, (Float) value, generator, serializerProvider);
         break;
       case DOUBLE:
-        generator.writeNumber((Double) value);
+        writeDouble(field, (Double) value, generator, serializerProvider);
         break;
       case BOOLEAN:
         generator.writeBoolean((Boolean) value);
@@ -88,8 +193,7 @@ public abstract class ProtobufSerializer<T extends MessageOrBuilder> extends Std
         }
         break;
       case BYTE_STRING:
-        generator
-            .writeString(serializerProvider.getConfig().getBase64Variant().encode(((ByteString) value).toByteArray()));
+        writeBinary((ByteString) value, generator, serializerProvider);
         break;
       case MESSAGE:
         Class<?> subType = value.getClass();
@@ -107,6 +211,119 @@ public abstract class ProtobufSerializer<T extends MessageOrBuilder> extends Std
     }
   }
 
+  /**
+   * Writes a string field from its UTF-8 bytes, e.g. the result of a generated
+   * {@code getFooBytes()}. Generators writing UTF-8 get the bytes as they are,
+   * without decoding them to a {@code String}; invalid UTF-8 is replaced the
+   * same way as by {@link ByteString#toStringUtf8()}.
+   *
+   * Strings with supplementary characters are decoded first: {@code writeString}
+   * escapes their surrogate pairs, while {@code writeUTF8String} would copy the
+   * 4-byte sequences as they are.
+   */
+  protected static void writeString(ByteString utf8, JsonGenerator generator) throws IOException {
+    if (generator instanceof UTF8JsonGenerator && generator.getCharacterEscapes() == null
+        && !generator.isEnabled(JsonWriteFeature.ESCAPE_NON_ASCII.mappedFeature()) && utf8.isValidUtf8()) {
+      ByteStringContent content = ByteStringContent.of(utf8);
+      if (content != null && !hasFourByteSequence(content.array, content.offset, content.length)) {
+        generator.writeUTF8String(content.array, content.offset, content.length);
+        return;
+      }
+    }
+    generator.writeString(utf8.toStringUtf8());
+  }
+
+  private static boolean hasFourByteSequence(byte[] utf8, int offset, int length) {
+    for (int i = offset, end = offset + length; i < end; i++) {
+      // lead bytes 0xF0 to 0xF4, the bytes are valid UTF-8
+      if ((utf8[i] & 0xF8) == 0xF0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes a bytes field as a base64 string, encoded straight from the
+   * {@code ByteString}'s buffers.
+   */
+  protected static void writeBinary(ByteString value, JsonGenerator generator, SerializerProvider serializerProvider)
+      throws IOException {
+    Base64Variant base64Variant = serializerProvider.getConfig().getBase64Variant();
+    if (generator.canWriteBinaryNatively()) {
+      // binary formats and token buffers would not write a string, which is all the deserializer accepts
+      generator.writeString(base64Variant.encode(value.toByteArray()));
+      return;
+    }
+
+    ByteStringContent content = ByteStringContent.of(value);
+    if (content != null) {
+      generator.writeBinary(base64Variant, content.array, content.offset, content.length);
+    } else {
+      generator.writeBinary(base64Variant, value.newInput(), value.size());
+    }
+  }
+
+  protected void writeInt(FieldDescriptor field, int value, JsonGenerator generator,
+      SerializerProvider serializerProvider) throws IOException {
+    if (value < 0 && properUnsignedNumberSerialization && isUnsigned(field)) {
+      generator.writeNumber(Integer.toUnsignedLong(value));
+    } else {
+      generator.writeNumber(value);
+    }
+  }
+
+  protected void writeLong(FieldDescriptor field, long value, JsonGenerator generator,
+      SerializerProvider serializerProvider) throws IOException {
+    boolean unsigned = value < 0 && properUnsignedNumberSerialization && isUnsigned(field);
+    if (serializeLongsAsString) {
+      generator.writeString(unsigned ? Long.toUnsignedString(value) : Long.toString(value));
+    } else if (unsigned) {
+      generator.writeNumber(new BigInteger(Long.toUnsignedString(value)));
+    } else {
+      generator.writeNumber(value);
+    }
+  }
+
+  protected void writeFloat(FieldDescriptor field, float value, JsonGenerator generator,
+      SerializerProvider serializerProvider) throws IOException {
+    if (writeShortestDecimal(generator) && Float.isFinite(value)) {
+      generator.writeNumber(ShortestDecimal.toString(value));
+    } else {
+      generator.writeNumber(value);
+    }
+  }
+
+  protected void writeDouble(FieldDescriptor field, double value, JsonGenerator generator,
+      SerializerProvider serializerProvider) throws IOException {
+    if (writeShortestDecimal(generator) && Double.isFinite(value)) {
+      generator.writeNumber(ShortestDecimal.toString(value));
+    } else {
+      generator.writeNumber(value);
+    }
+  }
+
+  private boolean writeShortestDecimal(JsonGenerator generator) {
+    // other generators, e.g. token buffers, keep the number itself rather than its text
+    return shortestDecimalOutput && generator instanceof JsonGeneratorImpl;
+  }
+
+  private static boolean isUnsigned(FieldDescriptor field) {
+    switch (field.getType()) {
+      case UINT32:
+      case FIXED32:
+      case UINT64:
+      case FIXED64:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean orderMapEntriesByKeys(SerializerProvider config) {
+    return config.isEnabled(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+  }
+
   private static boolean writeEnumsUsingIndex(SerializerProvider config) {
     return config.isEnabled(SerializationFeature.WRITE_ENUMS_USING_INDEX);
   }
@@ -0,0 +1,296 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.Timestamps;
+
+/**
+ * RFC 3339 timestamps and protobuf durations, written and read without
+ * intermediate Strings, with the same output as {@link Timestamps#toString}
+ * and {@link Durations#toString}.
+ *
+ * Parsing handles the canonical forms, {@code 1972-01-01T10:00:20.021-05:00}
+ * and {@code -1.5s}, directly; anything else is passed to
+ * {@link Timestamps#parse} and {@link Durations#parse}, so that the accepted
+ * inputs, results and errors stay the same.
+ */
+public final class ProtobufTimeFormat {
+  /**
+   * Longest timestamp, {@code 9999-12-31T23:59:59.999999999Z}.
+   */
+  public static final int MAX_TIMESTAMP_LENGTH = 30;
+
+  /**
+   * Longest duration, {@code -315576000000.999999999s}.
+   */
+  public static final int MAX_DURATION_LENGTH = 24;
+
+  // long, Math.floorDiv(long, int) and floorMod(long, int) are Java 9+
+  private static final long SECONDS_PER_DAY = 86400L;
+
+  private static final ThreadLocal<char[]> buffers = ThreadLocal.withInitial(() -> new char[MAX_TIMESTAMP_LENGTH]);
+
+  private ProtobufTimeFormat() {
+  }
+
+  /**
+   * Writes {@code timestamp} as a string; invalid timestamps fail as they
+   * do in {@link Timestamps#toString}.
+   */
+  public static void writeTimestamp(Timestamp timestamp, JsonGenerator generator) throws IOException {
+    long seconds = timestamp.getSeconds();
+    int nanos = timestamp.getNanos();
+    if (!Timestamps.isValid(seconds, nanos)) {
+      generator.writeString(Timestamps.toString(timestamp));
+      return;
+    }
+    char[] buffer = buffers.get();
+    generator.writeString(buffer, 0, formatTimestamp(seconds, nanos, buffer, 0));
+  }
+
+  /**
+   * Writes {@code duration} as a string; invalid durations fail as they do
+   * in {@link Durations#toString}.
+   */
+  public static void writeDuration(Duration duration, JsonGenerator generator) throws IOException {
+    long seconds = duration.getSeconds();
+    int nanos = duration.getNanos();
+    if (!Durations.isValid(seconds, nanos)) {
+      generator.writeString(Durations.toString(duration));
+      return;
+    }
+    char[] buffer = buffers.get();
+    generator.writeString(buffer, 0, formatDuration(seconds, nanos, buffer, 0));
+  }
+
+  /**
+   * Formats a valid timestamp into {@code buffer}, which must have
+   * {@link #MAX_TIMESTAMP_LENGTH} chars from {@code offset}.
+   *
+   * @return the end of the timestamp in {@code buffer}
+   */
+  public static int formatTimestamp(long seconds, int nanos, char[] buffer, int offset) {
+    long days = Math.floorDiv(seconds, SECONDS_PER_DAY);
+    int secondOfDay = (int) Math.floorMod(seconds, SECONDS_PER_DAY);
+
+    // civil from days, proleptic Gregorian like Timestamps
+    long shifted = days + 719468;
+    long era = Math.floorDiv(shifted, 146097L);
+    int dayOfEra = (int) (shifted - era * 146097);
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int shiftedMonth = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+    int i = offset;
+    i = writeDigits(year, 4, buffer, i);
+    buffer[i++] = '-';
+    i = writeDigits(month, 2, buffer, i);
+    buffer[i++] = '-';
+    i = writeDigits(day, 2, buffer, i);
+    buffer[i++] = 'T';
+    i = writeDigits(secondOfDay / 3600, 2, buffer, i);
+    buffer[i++] = ':';
+    i = writeDigits(secondOfDay / 60 % 60, 2, buffer, i);
+    buffer[i++] = ':';
+    i = writeDigits(secondOfDay % 60, 2, buffer, i);
+    i = writeNanos(nanos, buffer, i);
+    buffer[i++] = 'Z';
+    return i;
+  }
+
+  /**
+   * Formats a valid duration into {@code buffer}, which must have
+   * {@link #MAX_DURATION_LENGTH} chars from {@code offset}.
+   *
+   * @return the end of the duration in {@code buffer}
+   */
+  public static int formatDuration(long seconds, int nanos, char[] buffer, int offset) {
+    int i = offset;
+    if (seconds < 0 || nanos < 0) {
+      buffer[i++] = '-';
+      seconds = -seconds;
+      nanos = -nanos;
+    }
+    int digits = 1;
+    for (long rest = seconds / 10; rest != 0; rest /= 10) {
+      digits++;
+    }
+    for (int j = i + digits - 1; j >= i; j--) {
+      buffer[j] = (char) ('0' + seconds % 10);
+      seconds /= 10;
+    }
+    i += digits;
+    i = writeNanos(nanos, buffer, i);
+    buffer[i++] = 's';
+    return i;
+  }
+
+  /**
+   * Like {@code Timestamps.formatNanos}: 3, 6 or 9 digits.
+   */
+  private static int writeNanos(int nanos, char[] buffer, int i) {
+    if (nanos == 0) {
+      return i;
+    }
+    buffer[i++] = '.';
+    if (nanos % 1000000 == 0) {
+      return writeDigits(nanos / 1000000, 3, buffer, i);
+    } else if (nanos % 1000 == 0) {
+      return writeDigits(nanos / 1000, 6, buffer, i);
+    }
+    return writeDigits(nanos, 9, buffer, i);
+  }
+
+  private static int writeDigits(int value, int count, char[] buffer, int i) {
+    for (int j = i + count - 1; j >= i; j--) {
+      buffer[j] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    return i + count;
+  }
+
+  /**
+   * Parses the timestamp in {@code text} from {@code offset}, such as the
+   * text buffer of a parser.
+   */
+  public static Timestamp parseTimestamp(char[] text, int offset, int length) throws ParseException {
+    int end = offset + length;
+    // yyyy-MM-ddTHH:mm:ss, at least
+    if (length < 20 || text[offset + 4] != '-' || text[offset + 7] != '-' || text[offset + 10] != 'T'
+        || text[offset + 13] != ':' || text[offset + 16] != ':') {
+      return Timestamps.parse(new String(text, offset, length));
+    }
+    int year = readDigits(text, offset, 4);
+    int month = readDigits(text, offset + 5, 2);
+    int day = readDigits(text, offset + 8, 2);
+    int hour = readDigits(text, offset + 11, 2);
+    int minute = readDigits(text, offset + 14, 2);
+    int second = readDigits(text, offset + 17, 2);
+    if (year < 1 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour < 0 || hour > 23
+        || minute < 0 || minute > 59 || second < 0 || second > 59) {
+      return Timestamps.parse(new String(text, offset, length));
+    }
+
+    int i = offset + 19;
+    int nanos = 0;
+    if (text[i] == '.') {
+      int digits = 0;
+      for (i++; i < end && digits < 10 && isDigit(text[i]); i++, digits++) {
+        nanos = nanos * 10 + (text[i] - '0');
+      }
+      if (digits == 0 || digits > 9) {
+        return Timestamps.parse(new String(text, offset, length));
+      }
+      for (; digits < 9; digits++) {
+        nanos *= 10;
+      }
+    }
+
+    long seconds = daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+    if (i == end - 6 && (text[i] == '+' || text[i] == '-') && text[i + 3] == ':') {
+      int offsetHours = readDigits(text, i + 1, 2);
+      int offsetMinutes = readDigits(text, i + 4, 2);
+      if (offsetHours < 0 || offsetMinutes < 0) {
+        return Timestamps.parse(new String(text, offset, length));
+      }
+      int offsetSeconds = (offsetHours * 60 + offsetMinutes) * 60;
+      seconds += text[i] == '+' ? -offsetSeconds : offsetSeconds;
+    } else if (i != end - 1 || text[i] != 'Z') {
+      return Timestamps.parse(new String(text, offset, length));
+    }
+
+    if (!Timestamps.isValid(seconds, nanos)) {
+      return Timestamps.parse(new String(text, offset, length));
+    }
+    return Timestamp.newBuilder().setSeconds(seconds).setNanos(nanos).build();
+  }
+
+  /**
+   * Parses the duration in {@code text} from {@code offset}, such as the
+   * text buffer of a parser.
+   */
+  public static Duration parseDuration(char[] text, int offset, int length) throws ParseException {
+    int end = offset + length;
+    int i = offset;
+    boolean negative = i < end && text[i] == '-';
+    if (negative) {
+      i++;
+    }
+    long seconds = 0;
+    int digits = 0;
+    for (; i < end && digits < 13 && isDigit(text[i]); i++, digits++) {
+      seconds = seconds * 10 + (text[i] - '0');
+    }
+    int nanos = 0;
+    int nanoDigits = -1;
+    if (i < end && text[i] == '.') {
+      nanoDigits = 0;
+      for (i++; i < end && nanoDigits < 10 && isDigit(text[i]); i++, nanoDigits++) {
+        nanos = nanos * 10 + (text[i] - '0');
+      }
+    }
+    if (digits == 0 || digits > 12 || nanoDigits == 0 || nanoDigits > 9 || i != end - 1 || text[i] != 's') {
+      return Durations.parse(new String(text, offset, length));
+    }
+    for (; nanoDigits > 0 && nanoDigits < 9; nanoDigits++) {
+      nanos *= 10;
+    }
+    if (negative) {
+      seconds = -seconds;
+      nanos = -nanos;
+    }
+    if (!Durations.isValid(seconds, nanos)) {
+      return Durations.parse(new String(text, offset, length));
+    }
+    return Duration.newBuilder().setSeconds(seconds).setNanos(nanos).build();
+  }
+
+  /**
+   * The value of {@code count} digits, or -1 if any isn't a digit.
+   */
+  private static int readDigits(char[] text, int offset, int count) {
+    int value = 0;
+    for (int i = offset; i < offset + count; i++) {
+      if (!isDigit(text[i])) {
+        return -1;
+      }
+      value = value * 10 + (text[i] - '0');
+    }
+    return value;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  private static long daysFromCivil(int year, int month, int day) {
+    int y = month <= 2 ? year - 1 : year;
+    int era = Math.floorDiv(y, 400);
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468;
+  }
+}
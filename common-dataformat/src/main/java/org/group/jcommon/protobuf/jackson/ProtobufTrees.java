@@ -0,0 +1,176 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.ListValueOrBuilder;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.NullValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.StructOrBuilder;
+import com.google.protobuf.Value;
+import com.google.protobuf.ValueOrBuilder;
+
+/**
+ * Conversions between messages and Jackson trees or token buffers that skip
+ * the JSON text. {@link Struct}, {@link ListValue} and {@link Value} map node
+ * by node to the same trees their serializers would write; other messages
+ * go through a {@link TokenBuffer} with the serializers of the mapper.
+ */
+public final class ProtobufTrees {
+
+  private ProtobufTrees() {
+  }
+
+  public static ObjectNode toObjectNode(StructOrBuilder struct, JsonNodeFactory factory) {
+    ObjectNode node = factory.objectNode();
+    for (Entry<String, Value> entry : struct.getFieldsMap().entrySet()) {
+      node.set(entry.getKey(), toJsonNode(entry.getValue(), factory));
+    }
+    return node;
+  }
+
+  public static ArrayNode toArrayNode(ListValueOrBuilder listValue, JsonNodeFactory factory) {
+    ArrayNode node = factory.arrayNode(listValue.getValuesCount());
+    for (Value value : listValue.getValuesList()) {
+      node.add(toJsonNode(value, factory));
+    }
+    return node;
+  }
+
+  /**
+   * An unset value is a null node, as {@code ValueSerializer} writes it.
+   */
+  public static JsonNode toJsonNode(ValueOrBuilder value, JsonNodeFactory factory) {
+    switch (value.getKindCase()) {
+      case NUMBER_VALUE:
+        return factory.numberNode(value.getNumberValue());
+      case STRING_VALUE:
+        return factory.textNode(value.getStringValue());
+      case BOOL_VALUE:
+        return factory.booleanNode(value.getBoolValue());
+      case STRUCT_VALUE:
+        return toObjectNode(value.getStructValue(), factory);
+      case LIST_VALUE:
+        return toArrayNode(value.getListValue(), factory);
+      default:
+        return factory.nullNode();
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException if {@code node} isn't an object
+   */
+  public static Struct toStruct(JsonNode node) {
+    if (!node.isObject()) {
+      throw new IllegalArgumentException("Can not convert " + node.getNodeType() + " node to Struct");
+    }
+    Struct.Builder builder = Struct.newBuilder();
+    for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext();) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      builder.putFields(field.getKey(), toValue(field.getValue()));
+    }
+    return builder.build();
+  }
+
+  /**
+   * @throws IllegalArgumentException if {@code node} isn't an array
+   */
+  public static ListValue toListValue(JsonNode node) {
+    if (!node.isArray()) {
+      throw new IllegalArgumentException("Can not convert " + node.getNodeType() + " node to ListValue");
+    }
+    ListValue.Builder builder = ListValue.newBuilder();
+    for (JsonNode element : node) {
+      builder.addValues(toValue(element));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Numbers become doubles and binary nodes base64 strings, as when the
+   * tree is written and read back.
+   *
+   * @throws IllegalArgumentException if {@code node} holds a POJO
+   */
+  public static Value toValue(JsonNode node) {
+    switch (node.getNodeType()) {
+      case OBJECT:
+        return Value.newBuilder().setStructValue(toStruct(node)).build();
+      case ARRAY:
+        return Value.newBuilder().setListValue(toListValue(node)).build();
+      case NUMBER:
+        return Value.newBuilder().setNumberValue(node.doubleValue()).build();
+      case STRING:
+      case BINARY:
+        return Value.newBuilder().setStringValue(node.asText()).build();
+      case BOOLEAN:
+        return Value.newBuilder().setBoolValue(node.booleanValue()).build();
+      case NULL:
+      case MISSING:
+        return Value.newBuilder().setNullValue(NullValue.NULL_VALUE).build();
+      default:
+        throw new IllegalArgumentException("Can not convert " + node.getNodeType() + " node to Value");
+    }
+  }
+
+  /**
+   * The tokens {@code mapper} writes for {@code message}; builders are
+   * written as their messages.
+   */
+  public static TokenBuffer toTokenBuffer(MessageOrBuilder message, ObjectMapper mapper) throws IOException {
+    Object value = message instanceof Message.Builder ? ((Message.Builder) message).buildPartial() : message;
+    TokenBuffer buffer = new TokenBuffer(mapper, false);
+    mapper.writeValue(buffer, value);
+    return buffer;
+  }
+
+  public static <T extends Message> T fromTokenBuffer(TokenBuffer buffer, Class<T> type, ObjectMapper mapper)
+      throws IOException {
+    try (JsonParser parser = buffer.asParser(mapper)) {
+      return mapper.readValue(parser, type);
+    }
+  }
+
+  /**
+   * The tree {@code mapper} would read back from the JSON of
+   * {@code message}.
+   */
+  public static JsonNode toTree(MessageOrBuilder message, ObjectMapper mapper) throws IOException {
+    JsonNodeFactory factory = mapper.getNodeFactory();
+    if (message instanceof StructOrBuilder) {
+      return toObjectNode((StructOrBuilder) message, factory);
+    } else if (message instanceof ListValueOrBuilder) {
+      return toArrayNode((ListValueOrBuilder) message, factory);
+    } else if (message instanceof ValueOrBuilder) {
+      return toJsonNode((ValueOrBuilder) message, factory);
+    }
+    try (JsonParser parser = toTokenBuffer(message, mapper).asParser(mapper)) {
+      return mapper.readTree(parser);
+    }
+  }
+
+  public static <T extends Message> T fromTree(JsonNode tree, Class<T> type, ObjectMapper mapper) throws IOException {
+    if (type == Struct.class) {
+      return type.cast(toStruct(tree));
+    } else if (type == ListValue.class) {
+      return type.cast(toListValue(tree));
+    } else if (type == Value.class) {
+      return type.cast(toValue(tree));
+    }
+    try (JsonParser parser = mapper.treeAsTokens(tree)) {
+      return mapper.readValue(parser, type);
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Descriptors.OneofDescriptor;
+import com.google.protobuf.Internal;
+import com.google.protobuf.Message;
+
+/**
+ * Resolves the serializers and deserializers of message types, and builds
+ * their per-type caches, before the first real message is read or written.
+ *
+ * Jackson resolves serializers per mapper, and the plans of the message
+ * serializers depend on its naming strategy and inclusion, so warm-up runs on
+ * the mappers that will be used. Every message type reachable through fields
+ * is covered: each is written and read back once, filled with a synthetic
+ * value in every field, and {@link Builder#iterations} more times to let the
+ * JIT compile the paths.
+ */
+public final class ProtobufWarmup {
+  // nested types are also warmed up on their own, samples needn't go deeper
+  private static final int MAX_SAMPLE_DEPTH = 2;
+
+  private final Set<Class<? extends Message>> messageTypes;
+  private final Map<String, String> unresolved;
+  private final int iterations;
+
+  private ProtobufWarmup(Builder builder) {
+    this.messageTypes = new LinkedHashSet<>();
+    this.unresolved = new LinkedHashMap<>();
+    this.iterations = builder.iterations;
+
+    Deque<Message> pending = new ArrayDeque<>();
+    for (Class<? extends Message> type : builder.messageTypes) {
+      pending.add(Internal.getDefaultInstance(type));
+    }
+    for (Descriptor descriptor : builder.descriptors) {
+      String className = ProtobufJavaNames.className(descriptor);
+      try {
+        Class<?> type = Class.forName(className, true, builder.classLoader);
+        pending.add(Internal.getDefaultInstance(type.asSubclass(Message.class)));
+      } catch (ClassNotFoundException | ClassCastException e) {
+        unresolved.put(descriptor.getFullName(), "no generated class " + className);
+      }
+    }
+    // nested field types, found through the builders since descriptors don't name classes
+    Message message;
+    while ((message = pending.poll()) != null) {
+      if (!messageTypes.add(message.getClass())) {
+        continue;
+      }
+      Message.Builder messageBuilder = message.newBuilderForType();
+      for (FieldDescriptor field : message.getDescriptorForType().getFields()) {
+        if (field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+          continue;
+        }
+        Message.Builder fieldBuilder = messageBuilder.newBuilderForField(field);
+        if (field.isMapField()) {
+          FieldDescriptor valueField = field.getMessageType().findFieldByName("value");
+          if (valueField.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+            continue;
+          }
+          fieldBuilder = fieldBuilder.newBuilderForField(valueField);
+        }
+        pending.add(fieldBuilder.getDefaultInstanceForType());
+      }
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * The message types to warm up, including those of nested fields.
+   */
+  public Set<Class<? extends Message>> messageTypes() {
+    return Collections.unmodifiableSet(messageTypes);
+  }
+
+  /**
+   * Warms up every message type on each of {@code mappers}. Failures are
+   * reported rather than thrown, so that warm-up never prevents startup.
+   */
+  public Report warmUp(ObjectMapper... mappers) {
+    long start = System.nanoTime();
+    Map<String, String> failures = new LinkedHashMap<>(unresolved);
+    for (ObjectMapper mapper : mappers) {
+      for (Class<? extends Message> type : messageTypes) {
+        try {
+          warmUp(mapper, type);
+        } catch (IOException | RuntimeException e) {
+          failures.putIfAbsent(type.getName(), e.toString());
+        }
+      }
+    }
+    return new Report(messageTypes.size(), failures, System.nanoTime() - start);
+  }
+
+  private void warmUp(ObjectMapper mapper, Class<? extends Message> type) throws IOException {
+    ObjectReader reader = mapper.readerFor(type);
+    ObjectWriter writer = mapper.writerFor(type);
+    Message sample = fill(Internal.getDefaultInstance(type).newBuilderForType(), 0).buildPartial();
+    for (int i = 0; i <= iterations; i++) {
+      reader.readValue(writer.writeValueAsBytes(sample));
+    }
+  }
+
+  /**
+   * Sets every field to a value that is written, one field per oneof.
+   */
+  private static Message.Builder fill(Message.Builder builder, int depth) {
+    for (FieldDescriptor field : builder.getDescriptorForType().getFields()) {
+      OneofDescriptor oneof = field.getContainingOneof();
+      if (oneof != null && builder.hasOneof(oneof)) {
+        continue;
+      }
+      Object value = sampleValue(builder, field, depth);
+      if (value == null) {
+        continue;
+      } else if (field.isRepeated()) {
+        builder.addRepeatedField(field, value);
+      } else {
+        builder.setField(field, value);
+      }
+    }
+    return builder;
+  }
+
+  private static Object sampleValue(Message.Builder builder, FieldDescriptor field, int depth) {
+    switch (field.getJavaType()) {
+      case INT:
+        return 1;
+      case LONG:
+        return 1L;
+      case FLOAT:
+        return 1.0f;
+      case DOUBLE:
+        return 1.0d;
+      case BOOLEAN:
+        return true;
+      case STRING:
+        return "x";
+      case BYTE_STRING:
+        return ByteString.copyFromUtf8("x");
+      case ENUM:
+        // the second value, as proto3 doesn't write the first
+        List<EnumValueDescriptor> values = field.getEnumType().getValues();
+        return values.get(values.size() > 1 ? 1 : 0);
+      case MESSAGE:
+        return depth < MAX_SAMPLE_DEPTH ? fill(builder.newBuilderForField(field), depth + 1).buildPartial() : null;
+      default:
+        return null;
+    }
+  }
+
+  public static class Builder {
+    private final Set<Class<? extends Message>> messageTypes = new LinkedHashSet<>();
+    private final Set<Descriptor> descriptors = new LinkedHashSet<>();
+    private ClassLoader classLoader = ProtobufWarmup.class.getClassLoader();
+    private int iterations = 0;
+
+    private Builder() {
+    }
+
+    @SafeVarargs
+    public final Builder messageTypes(Class<? extends Message>... messageTypes) {
+      for (Class<? extends Message> messageType : messageTypes) {
+        this.messageTypes.add(messageType);
+      }
+      return this;
+    }
+
+    public Builder messageTypes(Iterable<Class<? extends Message>> messageTypes) {
+      for (Class<? extends Message> messageType : messageTypes) {
+        this.messageTypes.add(messageType);
+      }
+      return this;
+    }
+
+    /**
+     * Adds the messages declared in {@code files}, nested ones included,
+     * whose generated classes are loaded with {@link #classLoader}.
+     */
+    public Builder fileDescriptors(FileDescriptor... files) {
+      for (FileDescriptor file : files) {
+        addDescriptors(file.getMessageTypes());
+      }
+      return this;
+    }
+
+    private void addDescriptors(List<Descriptor> messageDescriptors) {
+      for (Descriptor descriptor : messageDescriptors) {
+        if (!descriptor.getOptions().getMapEntry()) {
+          descriptors.add(descriptor);
+          addDescriptors(descriptor.getNestedTypes());
+        }
+      }
+    }
+
+    public Builder classLoader(ClassLoader classLoader) {
+      this.classLoader = classLoader;
+      return this;
+    }
+
+    /**
+     * Extra rounds of writing and reading each type, for the JIT; none by
+     * default, the single round needed to build the caches being always
+     * run.
+     */
+    public Builder iterations(int iterations) {
+      this.iterations = iterations;
+      return this;
+    }
+
+    public ProtobufWarmup build() {
+      return new ProtobufWarmup(this);
+    }
+  }
+
+  /**
+   * Outcome of {@link ProtobufWarmup#warmUp}.
+   */
+  public static final class Report {
+    private final int messageTypes;
+    private final Map<String, String> failures;
+    private final long elapsedNanos;
+
+    private Report(int messageTypes, Map<String, String> failures, long elapsedNanos) {
+      this.messageTypes = messageTypes;
+      this.failures = Collections.unmodifiableMap(failures);
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    public int messageTypes() {
+      return messageTypes;
+    }
+
+    /**
+     * The types that could not be resolved or warmed up, with the reason.
+     */
+    public Map<String, String> failures() {
+      return failures;
+    }
+
+    public long elapsed(TimeUnit unit) {
+      return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+      return "warmed up " + messageTypes + " message types in " + elapsed(TimeUnit.MILLISECONDS) + " ms"
+          + (failures.isEmpty() ? "" : ", failed: " + failures);
+    }
+  }
+}
@@ -34,4 +34,30 @@ public class ProtocolBufferMediaType extends MediaType {
          * "application/x-protobuf-json"
          */
         public final static MediaType APPLICATION_PROTOBUF_TYPE_JSON = new MediaType("application", "x-protobuf-json");
+
+        /**
+         * "application/x-protobuf-delimited", a stream of binary messages each
+         * preceded by its varint size
+         */
+        public final static String APPLICATION_PROTOBUF_DELIMITED = "application/x-protobuf-delimited";
+
+        /**
+         * "application/x-protobuf-delimited", a stream of binary messages each
+         * preceded by its varint size
+         */
+        public final static MediaType APPLICATION_PROTOBUF_DELIMITED_TYPE = new MediaType("application",
+                        "x-protobuf-delimited");
+
+        /**
+         * "application/x-protobuf-ndjson", a stream of JSON messages each on
+         * its own line
+         */
+        public final static String APPLICATION_PROTOBUF_NDJSON = "application/x-protobuf-ndjson";
+
+        /**
+         * "application/x-protobuf-ndjson", a stream of JSON messages each on
+         * its own line
+         */
+        public final static MediaType APPLICATION_PROTOBUF_NDJSON_TYPE = new MediaType("application",
+                        "x-protobuf-ndjson");
 }
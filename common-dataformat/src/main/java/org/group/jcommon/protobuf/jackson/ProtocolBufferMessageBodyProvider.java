@@ -2,35 +2,58 @@ package org.group.jcommon.protobuf.jackson;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.TextFormat;
-import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.UnsafeByteOperations;
 
+import org.group.jcommon.jackson.util.BufferRecyclingStrategy;
+import org.group.jcommon.jackson.util.RecyclingJsonFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A Jersey provider which enables using Protocol Buffers to parse request
  * entities into objects and generate response entities from objects.
+ *
+ * JSON entities are read and written by an {@link ObjectMapper} with the
+ * {@link ProtobufModule}, streaming from and to the entity streams. The
+ * default mapper produces the same JSON as protobuf-java-util's
+ * {@code JsonFormat}, see {@link #defaultObjectMapper()}.
  */
 @Provider
 @Consumes({ ProtocolBufferMediaType.APPLICATION_PROTOBUF, ProtocolBufferMediaType.APPLICATION_PROTOBUF_TEXT,
@@ -40,7 +63,88 @@ import org.slf4j.LoggerFactory;
 public class ProtocolBufferMessageBodyProvider implements MessageBodyReader<Message>, MessageBodyWriter<Message> {
     private static final Logger logger = LoggerFactory.getLogger(ProtocolBufferMessageBodyProvider.class);
 
-    private final Map<Class<Message>, Method> methodCache = new ConcurrentHashMap<>();
+    /**
+     * Default limit on the size of JSON and text-format entities buffered to
+     * compute their length.
+     */
+    public static final int DEFAULT_MAX_BUFFERED_SIZE = 64 * 1024;
+
+    /**
+     * Default limit on the nesting depth of binary entities, the same as
+     * {@link CodedInputStream}'s.
+     */
+    public static final int DEFAULT_RECURSION_LIMIT = 100;
+
+    private static final int INITIAL_ENTITY_SIZE = 8192;
+    // the declared length is only trusted up to this, larger entities grow the array as they arrive
+    private static final int MAX_INITIAL_ENTITY_SIZE = 64 * 1024;
+
+    private final Map<Class<Message>, Message> defaultInstanceCache = new ConcurrentHashMap<>();
+    private final Map<Class<Message>, ObjectReader> readerCache = new ConcurrentHashMap<>();
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final JsonFactory factory;
+    private final int maxBufferedSize;
+    private final boolean aliasing;
+    private final int sizeLimit;
+    private final int recursionLimit;
+    private final ThreadLocal<EntityBuffer> buffers;
+
+    public ProtocolBufferMessageBodyProvider() {
+        this(builder());
+    }
+
+    public ProtocolBufferMessageBodyProvider(final int maxBufferedSize) {
+        this(builder().maxBufferedSize(maxBufferedSize));
+    }
+
+    public ProtocolBufferMessageBodyProvider(final ObjectMapper mapper, final int maxBufferedSize) {
+        this(builder().objectMapper(mapper).maxBufferedSize(maxBufferedSize));
+    }
+
+    private ProtocolBufferMessageBodyProvider(final Builder builder) {
+        final ObjectMapper mapper = builder.objectMapper != null ? builder.objectMapper
+                : defaultObjectMapper(new RecyclingJsonFactory(builder.bufferRecycling));
+        // the container owns the entity streams
+        this.reader = mapper.reader().without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        this.writer = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // entity and text buffers are recycled with the mapper's
+        this.factory = mapper.getFactory();
+        this.maxBufferedSize = builder.maxBufferedSize;
+        this.aliasing = builder.aliasing;
+        this.sizeLimit = builder.sizeLimit;
+        this.recursionLimit = builder.recursionLimit;
+        this.buffers = ThreadLocal.withInitial(() -> new EntityBuffer(maxBufferedSize));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A mapper that reads and writes the same JSON as {@code JsonFormat}:
+     * default values are omitted, 64-bit integers are written as strings and
+     * unsigned integers as unsigned, and proto field names are accepted as well
+     * as JSON names.
+     */
+    public static ObjectMapper defaultObjectMapper() {
+        return defaultObjectMapper(new JsonFactory());
+    }
+
+    /**
+     * The {@link #defaultObjectMapper()} on top of {@code factory}, for
+     * example a {@link RecyclingJsonFactory}.
+     */
+    public static ObjectMapper defaultObjectMapper(final JsonFactory factory) {
+        final ProtobufJacksonConfig config = ProtobufJacksonConfig.builder()
+                .acceptLiteralFieldnames(true)
+                .serializeLongsAsString(true)
+                .properUnsignedNumberSerialization(true)
+                .build();
+        return new ObjectMapper(factory)
+                .registerModule(new ProtobufModule(config))
+                .setSerializationInclusion(Include.NON_DEFAULT);
+    }
 
     @Override
     public boolean isReadable(final Class<?> type, final Type genericType, final Annotation[] annotations,
@@ -54,49 +158,136 @@ public class ProtocolBufferMessageBodyProvider implements MessageBodyReader<Mess
             throws IOException {
 
         try {
-            final Method newBuilder = methodCache.computeIfAbsent(type, t -> {
-                try {
-                    return t.getMethod("newBuilder");
-                } catch (Exception e) {
-                    logger.error("failed to get builder for " + type.getCanonicalName(), e);
-                    return null;
-                }
-            });
+            if (mediaType.getSubtype().contains("json")) {
+                return readerCache.computeIfAbsent(type, reader::forType).readValue(entityStream);
+            }
 
-            final Message.Builder builder = (Message.Builder) newBuilder.invoke(type);
+            final Message defaultInstance = defaultInstanceCache.computeIfAbsent(type,
+                    ProtocolBufferMessageBodyProvider::defaultInstance);
             if (mediaType.getSubtype().contains("text-format")) {
-                TextFormat.merge(new InputStreamReader(entityStream, StandardCharsets.UTF_8), builder);
-                return builder.build();
-            } else if (mediaType.getSubtype().contains("json")) {
-                JsonFormat.parser().merge(new InputStreamReader(entityStream, StandardCharsets.UTF_8), builder);
+                final Message.Builder builder = defaultInstance.newBuilderForType();
+                final TextBuffers text = new TextBuffers(factory._getBufferRecycler());
+                try {
+                    TextFormat.merge(text.read(entityStream), builder);
+                } finally {
+                    text.release();
+                }
                 return builder.build();
+            }
+
+            final CodedInputStream input;
+            if (aliasing) {
+                // the message keeps slices of the array, so it can't be pooled; only
+                // immutable ByteStrings give out inputs that alias their bytes
+                input = readEntity(entityStream, httpHeaders).newCodedInput();
+                input.enableAliasing(true);
             } else {
-                return builder.mergeFrom(entityStream).build();
+                input = CodedInputStream.newInstance(entityStream);
             }
+            input.setSizeLimit(sizeLimit);
+            input.setRecursionLimit(recursionLimit);
+            return defaultInstance.getParserForType().parseFrom(input);
+        } catch (InvalidProtocolBufferException e) {
+            // malformed or too large, see InvalidProtocolBufferExceptionMapper
+            throw e;
         } catch (Exception e) {
             throw new WebApplicationException(e);
         }
     }
 
+    static Message defaultInstance(final Class<?> type) {
+        try {
+            return (Message) type.getMethod("getDefaultInstance").invoke(null);
+        } catch (Exception e) {
+            logger.error("failed to get default instance for " + type.getCanonicalName(), e);
+            throw new IllegalArgumentException("Unable to get default instance for type " + type, e);
+        }
+    }
+
+    /**
+     * Reads the whole entity into an array of its declared length, or one
+     * grown as needed, failing as soon as it is larger than the size limit.
+     * The declared length is a client's claim, so the first array is never
+     * larger than {@link #MAX_INITIAL_ENTITY_SIZE}.
+     */
+    private ByteString readEntity(final InputStream entityStream, final MultivaluedMap<String, String> httpHeaders)
+            throws IOException {
+        final long contentLength = contentLength(httpHeaders);
+        final long initialSize = Math.min(Math.min(sizeLimit, MAX_INITIAL_ENTITY_SIZE),
+                contentLength >= 0 ? contentLength : INITIAL_ENTITY_SIZE);
+        byte[] bytes = new byte[(int) initialSize];
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                // either the end, or the declared length was wrong or missing
+                final int next = entityStream.read();
+                if (next < 0) {
+                    break;
+                }
+                if (length == sizeLimit) {
+                    throw new InvalidProtocolBufferException("Entity is larger than the size limit of " + sizeLimit
+                            + " bytes");
+                }
+                bytes = Arrays.copyOf(bytes, (int) Math.min(sizeLimit, Math.max(2L * length, INITIAL_ENTITY_SIZE)));
+                bytes[length++] = (byte) next;
+            }
+            final int read = entityStream.read(bytes, length, bytes.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return UnsafeByteOperations.unsafeWrap(bytes, 0, length);
+    }
+
+    private static long contentLength(final MultivaluedMap<String, String> httpHeaders) {
+        final String value = httpHeaders == null ? null : httpHeaders.getFirst(HttpHeaders.CONTENT_LENGTH);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                // read until the end instead
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * JSON and text-format entities are encoded here, once, into a buffer
+     * taken from the mapper's buffer recycling and held by the thread until
+     * {@link #writeTo} writes the same bytes and gives it back. Entities
+     * larger than {@code maxBufferedSize} are not buffered and get no length,
+     * they are encoded straight to the entity stream instead.
+     */
     @Override
     public long getSize(final Message m, final Class<?> type, final Type genericType, final Annotation[] annotations,
             final MediaType mediaType) {
 
-        if (mediaType.getSubtype().contains("text-format")) {
-            final String formatted = TextFormat.printer().escapingNonAscii(false).printToString(m);
-            return formatted.getBytes(StandardCharsets.UTF_8).length;
-        } else if (mediaType.getSubtype().contains("json")) {
-            final String formatted;
-            try {
-                formatted = JsonFormat.printer().print(m);
-            } catch (InvalidProtocolBufferException e) {
-                logger.error("cannot calculate size of protobuf message", e);
-                throw new RuntimeException("cannot calculate size of protobuf message", e);
-            }
-            return formatted.getBytes(StandardCharsets.UTF_8).length;
+        if (!isTextual(mediaType)) {
+            return m.getSerializedSize();
+        }
+        // the text encodings are rarely smaller than the binary one
+        if (m.getSerializedSize() > maxBufferedSize) {
+            return -1;
         }
 
-        return m.getSerializedSize();
+        final EntityBuffer buffer = buffers.get();
+        buffer.reset();
+        buffer.acquire(factory._getBufferRecycler());
+        try {
+            encode(m, mediaType, buffer);
+        } catch (IOException e) {
+            // serializers may have wrapped the overflow
+            final boolean overflowed = buffer.overflowed();
+            buffer.reset();
+            if (overflowed) {
+                return -1;
+            }
+            logger.error("cannot calculate size of protobuf message", e);
+            throw new RuntimeException("cannot calculate size of protobuf message", e);
+        }
+        buffer.hold(m, mediaType);
+        return buffer.size();
     }
 
     @Override
@@ -110,12 +301,401 @@ public class ProtocolBufferMessageBodyProvider implements MessageBodyReader<Mess
             final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
             final OutputStream entityStream) throws IOException {
 
-        if (mediaType.getSubtype().contains("text-format")) {
-            entityStream.write(m.toString().getBytes(StandardCharsets.UTF_8));
-        } else if (mediaType.getSubtype().contains("json")) {
-            entityStream.write(JsonFormat.printer().print(m).getBytes(StandardCharsets.UTF_8));
-        } else {
+        if (!isTextual(mediaType)) {
             m.writeTo(entityStream);
+            return;
+        }
+
+        final EntityBuffer buffer = buffers.get();
+        if (buffer.holds(m, mediaType)) {
+            try {
+                buffer.writeTo(entityStream);
+            } finally {
+                buffer.reset();
+            }
+        } else {
+            encode(m, mediaType, entityStream);
+        }
+    }
+
+    private static boolean isTextual(final MediaType mediaType) {
+        final String subtype = mediaType.getSubtype();
+        return subtype.contains("text-format") || subtype.contains("json");
+    }
+
+    private void encode(final Message m, final MediaType mediaType, final OutputStream out) throws IOException {
+        if (mediaType.getSubtype().contains("json")) {
+            writer.writeValue(out, m);
+            return;
+        }
+
+        final Utf8Writer textWriter = new Utf8Writer(factory._getBufferRecycler(), out);
+        try {
+            TextFormat.printer().escapingNonAscii(false).print(m, textWriter);
+            textWriter.flush();
+        } finally {
+            textWriter.release();
+        }
+    }
+
+    /**
+     * Buffers for the text of a text-format request entity, taken from a
+     * {@link BufferRecycler} and given back by {@link #release()}. The text
+     * is decoded straight into its array, which grows as needed.
+     */
+    private static final class TextBuffers {
+        private static final int BUFFER_SIZE = 8192;
+        // larger texts are not given back
+        private static final int MAX_POOLED_TEXT_LENGTH = 256 * 1024;
+
+        private final BufferRecycler recycler;
+        private byte[] bytes;
+        private char[] text;
+
+        TextBuffers(final BufferRecycler recycler) {
+            this.recycler = recycler;
+        }
+
+        /**
+         * Decodes the whole entity; the text is only valid until
+         * {@link #release()}.
+         */
+        CharSequence read(final InputStream in) throws IOException {
+            final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            bytes = recycler.allocByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER, BUFFER_SIZE);
+            text = recycler.allocCharBuffer(BufferRecycler.CHAR_TEXT_BUFFER, BUFFER_SIZE);
+            final ByteBuffer input = ByteBuffer.wrap(bytes);
+            CharBuffer output = CharBuffer.wrap(text);
+            boolean end = false;
+            while (!end) {
+                final int read = in.read(bytes, input.position(), input.remaining());
+                end = read < 0;
+                if (!end) {
+                    // through Buffer, the ByteBuffer and CharBuffer overrides are Java 9+
+                    ((Buffer) input).position(input.position() + read);
+                }
+                ((Buffer) input).flip();
+                while (decoder.decode(input, output, end).isOverflow()) {
+                    output = grow(output);
+                }
+                input.compact();
+            }
+            while (decoder.flush(output).isOverflow()) {
+                output = grow(output);
+            }
+            ((Buffer) output).flip();
+            return output;
+        }
+
+        private CharBuffer grow(final CharBuffer output) {
+            text = Arrays.copyOf(text, 2 * text.length);
+            final CharBuffer grown = CharBuffer.wrap(text);
+            ((Buffer) grown).position(output.position());
+            return grown;
+        }
+
+        void release() {
+            if (bytes != null) {
+                recycler.releaseByteBuffer(BufferRecycler.BYTE_READ_IO_BUFFER, bytes);
+                bytes = null;
+            }
+            if (text != null) {
+                if (text.length <= MAX_POOLED_TEXT_LENGTH) {
+                    recycler.releaseCharBuffer(BufferRecycler.CHAR_TEXT_BUFFER, text);
+                }
+                text = null;
+            }
+        }
+    }
+
+    /**
+     * Writer encoding UTF-8 into its own buffer, so that the printer's many
+     * small appends don't each go through a {@code CharsetEncoder}; unpaired
+     * surrogates are written as {@code '?'}, like {@code OutputStreamWriter}
+     * does. The buffer is taken from a {@link BufferRecycler} and given back
+     * by {@link #release()}.
+     */
+    private static final class Utf8Writer extends Writer {
+        private final BufferRecycler recycler;
+        private final OutputStream out;
+        private byte[] buffer;
+        private int position;
+        private char highSurrogate;
+
+        Utf8Writer(final BufferRecycler recycler, final OutputStream out) {
+            this.recycler = recycler;
+            this.out = out;
+            this.buffer = recycler.allocByteBuffer(BufferRecycler.BYTE_WRITE_ENCODING_BUFFER);
+        }
+
+        void release() {
+            if (buffer != null) {
+                recycler.releaseByteBuffer(BufferRecycler.BYTE_WRITE_ENCODING_BUFFER, buffer);
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void write(final int c) throws IOException {
+            writeChar((char) c);
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                writeChar(cbuf[i]);
+            }
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                writeChar(str.charAt(i));
+            }
+        }
+
+        @Override
+        public Writer append(final CharSequence csq) throws IOException {
+            final CharSequence chars = csq == null ? "null" : csq;
+            for (int i = 0; i < chars.length(); i++) {
+                writeChar(chars.charAt(i));
+            }
+            return this;
+        }
+
+        private void writeChar(final char c) throws IOException {
+            if (position + 4 > buffer.length) {
+                flushBuffer();
+            }
+            if (highSurrogate != 0) {
+                final char high = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    final int codePoint = Character.toCodePoint(high, c);
+                    buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+                    return;
+                }
+                buffer[position++] = '?';
+                if (position + 3 > buffer.length) {
+                    flushBuffer();
+                }
+            }
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xe0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                if (position == buffer.length) {
+                    flushBuffer();
+                }
+                buffer[position++] = '?';
+            }
+            flushBuffer();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the container owns the entity stream
+            flush();
+        }
+    }
+
+    /**
+     * Growable byte buffer that refuses to grow past a limit, and remembers
+     * which entity it holds between {@link #getSize} and {@link #writeTo}.
+     * The array is taken from a {@link BufferRecycler} by
+     * {@link #acquire(BufferRecycler)} and given back by {@link #reset()}.
+     */
+    private static final class EntityBuffer extends OutputStream {
+        private static final int INITIAL_CAPACITY = 4096;
+
+        /**
+         * Thrown when the limit is reached, to stop encoding early.
+         */
+        private static final class Overflow extends IOException {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public synchronized Throwable fillInStackTrace() {
+                return this;
+            }
+        }
+
+        private final int limit;
+        private BufferRecycler recycler;
+        private byte[] bytes;
+        private int size;
+        private boolean overflowed;
+        private Message message;
+        private MediaType mediaType;
+
+        EntityBuffer(final int limit) {
+            this.limit = limit;
+        }
+
+        void acquire(final BufferRecycler recycler) {
+            this.recycler = recycler;
+            this.bytes = recycler.allocByteBuffer(BufferRecycler.BYTE_WRITE_CONCAT_BUFFER,
+                    Math.min(INITIAL_CAPACITY, limit));
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            ensureCapacity(size + len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+
+        private void ensureCapacity(final int capacity) throws Overflow {
+            // a recycled array may be larger than the limit
+            if (capacity > limit) {
+                overflowed = true;
+                throw new Overflow();
+            }
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(limit, Math.max(capacity, 2L * bytes.length)));
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean overflowed() {
+            return overflowed;
+        }
+
+        void hold(final Message message, final MediaType mediaType) {
+            this.message = message;
+            this.mediaType = mediaType;
+        }
+
+        boolean holds(final Message message, final MediaType mediaType) {
+            return this.message == message && mediaType.equals(this.mediaType);
+        }
+
+        void writeTo(final OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+
+        void reset() {
+            if (bytes != null) {
+                recycler.releaseByteBuffer(BufferRecycler.BYTE_WRITE_CONCAT_BUFFER, bytes);
+                recycler = null;
+                bytes = null;
+            }
+            size = 0;
+            overflowed = false;
+            message = null;
+            mediaType = null;
+        }
+    }
+
+    public static class Builder {
+        private ObjectMapper objectMapper = null;
+        private int maxBufferedSize = DEFAULT_MAX_BUFFERED_SIZE;
+        private boolean aliasing = false;
+        private int sizeLimit = Integer.MAX_VALUE;
+        private int recursionLimit = DEFAULT_RECURSION_LIMIT;
+        private BufferRecyclingStrategy bufferRecycling = BufferRecyclingStrategy.threadLocal();
+
+        private Builder() {
+        }
+
+        /**
+         * Mapper reading and writing JSON entities, which must have the
+         * {@link ProtobufModule} registered; defaults to
+         * {@link ProtocolBufferMessageBodyProvider#defaultObjectMapper()}.
+         */
+        public Builder objectMapper(final ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+            return this;
+        }
+
+        /**
+         * Largest JSON or text-format entity, in bytes, that is buffered to
+         * send its length; larger ones are streamed without one.
+         */
+        public Builder maxBufferedSize(final int maxBufferedSize) {
+            this.maxBufferedSize = maxBufferedSize;
+            return this;
+        }
+
+        /**
+         * Read binary entities into memory first and parse them with
+         * aliasing, so that {@code bytes} fields share the entity's array
+         * instead of being copied out of it. The array lives as long as any
+         * of those fields.
+         */
+        public Builder aliasing(final boolean aliasing) {
+            this.aliasing = aliasing;
+            return this;
+        }
+
+        /**
+         * Largest binary entity, in bytes, that is accepted.
+         */
+        public Builder sizeLimit(final int sizeLimit) {
+            this.sizeLimit = sizeLimit;
+            return this;
+        }
+
+        /**
+         * Deepest nesting of messages accepted in binary entities.
+         */
+        public Builder recursionLimit(final int recursionLimit) {
+            this.recursionLimit = recursionLimit;
+            return this;
+        }
+
+        /**
+         * Where the default mapper gets its parser and generator buffers,
+         * and the provider its entity and text buffers; defaults to Jackson's
+         * per-thread recycling. A
+         * {@link org.group.jcommon.jackson.util.StripedBufferPool} suits
+         * virtual threads better. Ignored with an {@link #objectMapper}, whose
+         * factory's recycling is used, a {@link RecyclingJsonFactory} for
+         * example.
+         */
+        public Builder bufferRecycling(final BufferRecyclingStrategy bufferRecycling) {
+            this.bufferRecycling = bufferRecycling;
+            return this;
+        }
+
+        public ProtocolBufferMessageBodyProvider build() {
+            return new ProtocolBufferMessageBodyProvider(this);
         }
     }
-}
\ No newline at end of file
+}
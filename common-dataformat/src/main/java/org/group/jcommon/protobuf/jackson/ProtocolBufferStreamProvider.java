@@ -0,0 +1,329 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+import org.group.jcommon.jackson.util.BufferRecyclingStrategy;
+import org.group.jcommon.jackson.util.RecyclingJsonFactory;
+
+/**
+ * A Jersey provider which streams sequences of Protocol Buffers messages, so
+ * that bulk endpoints never hold the whole sequence in memory.
+ *
+ * Entities of type {@link Iterator}, {@link Stream} or, for responses only,
+ * {@link Iterable} of a message type are read and written as
+ * {@link ProtocolBufferMediaType#APPLICATION_PROTOBUF_DELIMITED}, the framing
+ * of {@link Message#writeDelimitedTo}, or as
+ * {@link ProtocolBufferMediaType#APPLICATION_PROTOBUF_NDJSON}, one JSON
+ * message per line. Request entities are parsed one message at a time as the
+ * resource consumes them.
+ */
+@Provider
+@Consumes({ ProtocolBufferMediaType.APPLICATION_PROTOBUF_DELIMITED,
+        ProtocolBufferMediaType.APPLICATION_PROTOBUF_NDJSON })
+@Produces({ ProtocolBufferMediaType.APPLICATION_PROTOBUF_DELIMITED,
+        ProtocolBufferMediaType.APPLICATION_PROTOBUF_NDJSON })
+public class ProtocolBufferStreamProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    private final Map<Class<?>, Message> defaultInstanceCache = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectReader> readerCache = new ConcurrentHashMap<>();
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final int sizeLimit;
+    private final int recursionLimit;
+    private final int flushEvery;
+
+    public ProtocolBufferStreamProvider() {
+        this(builder());
+    }
+
+    private ProtocolBufferStreamProvider(final Builder builder) {
+        final ObjectMapper mapper = builder.objectMapper != null ? builder.objectMapper
+                : ProtocolBufferMessageBodyProvider.defaultObjectMapper(
+                        new RecyclingJsonFactory(builder.bufferRecycling));
+        this.reader = mapper.reader().without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        // flushes are up to the flush policy
+        this.writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.sizeLimit = builder.sizeLimit;
+        this.recursionLimit = builder.recursionLimit;
+        this.flushEvery = builder.flushEvery;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public boolean isReadable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType) {
+        final Class<?> messageType = messageType(genericType);
+        return (type == Iterator.class || type == Stream.class) && messageType != null
+                && !Modifier.isAbstract(messageType.getModifiers());
+    }
+
+    @Override
+    public Object readFrom(final Class<Object> type, final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType, final MultivaluedMap<String, String> httpHeaders, final InputStream entityStream)
+            throws IOException {
+        final Class<?> messageType = messageType(genericType);
+        final Iterator<Message> messages;
+        try {
+            if (isDelimited(mediaType)) {
+                final Message defaultInstance = defaultInstanceCache.computeIfAbsent(messageType,
+                        ProtocolBufferMessageBodyProvider::defaultInstance);
+                messages = new DelimitedIterator(defaultInstance.getParserForType(), entityStream);
+            } else {
+                messages = readerCache.computeIfAbsent(messageType, reader::forType).readValues(entityStream);
+            }
+        } catch (Exception e) {
+            throw new WebApplicationException(e);
+        }
+
+        if (Stream.class.isAssignableFrom(type)) {
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(messages, Spliterator.ORDERED), false);
+        }
+        return messages;
+    }
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType) {
+        if (!Iterator.class.isAssignableFrom(type) && !Stream.class.isAssignableFrom(type)
+                && !Iterable.class.isAssignableFrom(type)) {
+            return false;
+        }
+        // raw types are checked as they are written
+        return !(genericType instanceof ParameterizedType) || messageType(genericType) != null;
+    }
+
+    @Override
+    public long getSize(final Object t, final Class<?> type, final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(final Object t, final Class<?> type, final Type genericType, final Annotation[] annotations,
+            final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
+            final OutputStream entityStream) throws IOException {
+        if (t instanceof Stream) {
+            try (Stream<?> stream = (Stream<?>) t) {
+                write(stream.iterator(), mediaType, entityStream);
+            }
+        } else if (t instanceof Iterator) {
+            write((Iterator<?>) t, mediaType, entityStream);
+        } else {
+            write(((Iterable<?>) t).iterator(), mediaType, entityStream);
+        }
+    }
+
+    private void write(final Iterator<?> messages, final MediaType mediaType, final OutputStream entityStream)
+            throws IOException {
+        if (isDelimited(mediaType)) {
+            final CodedOutputStream output = CodedOutputStream.newInstance(entityStream, OUTPUT_BUFFER_SIZE);
+            for (int count = 1; messages.hasNext(); count++) {
+                final Message message = (Message) messages.next();
+                output.writeUInt32NoTag(message.getSerializedSize());
+                message.writeTo(output);
+                if (count == flushEvery) {
+                    output.flush();
+                    entityStream.flush();
+                    count = 0;
+                }
+            }
+            output.flush();
+        } else {
+            try (JsonGenerator generator = writer.getFactory().createGenerator(entityStream)) {
+                // the container owns the entity stream, and lines are separated below
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                for (int count = 1; messages.hasNext(); count++) {
+                    writer.writeValue(generator, (Message) messages.next());
+                    generator.writeRaw('\n');
+                    if (count == flushEvery) {
+                        generator.flush();
+                        count = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isDelimited(final MediaType mediaType) {
+        return mediaType.getSubtype().contains("delimited");
+    }
+
+    /**
+     * The message type of {@code Iterator<T>}, {@code Stream<T>} and the
+     * like, or {@code null} if it is not a message type.
+     */
+    private static Class<?> messageType(final Type genericType) {
+        if (!(genericType instanceof ParameterizedType)) {
+            return null;
+        }
+        final Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+        if (arguments.length != 1) {
+            return null;
+        }
+        Type argument = arguments[0];
+        if (argument instanceof WildcardType) {
+            argument = ((WildcardType) argument).getUpperBounds()[0];
+        }
+        if (argument instanceof Class && Message.class.isAssignableFrom((Class<?>) argument)) {
+            return (Class<?>) argument;
+        }
+        return null;
+    }
+
+    /**
+     * Parses one size-prefixed message at a time from a single
+     * {@link CodedInputStream}, applying the limits to each message.
+     */
+    private final class DelimitedIterator implements Iterator<Message> {
+        private final Parser<? extends Message> parser;
+        private final CodedInputStream input;
+        private Message next;
+
+        DelimitedIterator(final Parser<? extends Message> parser, final InputStream entityStream) {
+            this.parser = parser;
+            this.input = CodedInputStream.newInstance(entityStream);
+            input.setSizeLimit(sizeLimit);
+            input.setRecursionLimit(recursionLimit);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = readNext();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Message next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Message message = next;
+            next = null;
+            return message;
+        }
+
+        private Message readNext() throws IOException {
+            if (input.isAtEnd()) {
+                return null;
+            }
+            input.resetSizeCounter();
+            final int size = input.readRawVarint32();
+            if (size < 0 || size > sizeLimit) {
+                throw new InvalidProtocolBufferException("Message of " + size
+                        + " bytes is larger than the size limit of " + sizeLimit + " bytes");
+            }
+            final int limit = input.pushLimit(size);
+            final Message message = parser.parseFrom(input);
+            input.popLimit(limit);
+            return message;
+        }
+    }
+
+    public static class Builder {
+        private ObjectMapper objectMapper = null;
+        private int sizeLimit = Integer.MAX_VALUE;
+        private int recursionLimit = ProtocolBufferMessageBodyProvider.DEFAULT_RECURSION_LIMIT;
+        private int flushEvery = 0;
+        private BufferRecyclingStrategy bufferRecycling = BufferRecyclingStrategy.threadLocal();
+
+        private Builder() {
+        }
+
+        /**
+         * Mapper reading and writing JSON messages, which must have the
+         * {@link ProtobufModule} registered; defaults to
+         * {@link ProtocolBufferMessageBodyProvider#defaultObjectMapper()}.
+         */
+        public Builder objectMapper(final ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+            return this;
+        }
+
+        /**
+         * Largest message, in bytes, accepted in delimited entities.
+         */
+        public Builder sizeLimit(final int sizeLimit) {
+            this.sizeLimit = sizeLimit;
+            return this;
+        }
+
+        /**
+         * Deepest nesting of messages accepted in delimited entities.
+         */
+        public Builder recursionLimit(final int recursionLimit) {
+            this.recursionLimit = recursionLimit;
+            return this;
+        }
+
+        /**
+         * Flush the entity stream after every {@code flushEvery} messages, so
+         * that clients can consume them as they are produced; by default only
+         * full buffers are sent.
+         */
+        public Builder flushEvery(final int flushEvery) {
+            this.flushEvery = flushEvery;
+            return this;
+        }
+
+        /**
+         * Where the default mapper gets its parser and generator buffers, see
+         * {@link ProtocolBufferMessageBodyProvider.Builder#bufferRecycling}.
+         */
+        public Builder bufferRecycling(final BufferRecyclingStrategy bufferRecycling) {
+            this.bufferRecycling = bufferRecycling;
+            return this;
+        }
+
+        public ProtocolBufferStreamProvider build() {
+            return new ProtocolBufferStreamProvider(this);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.group.jcommon.protobuf.jackson;
+
+import java.math.BigInteger;
+
+/**
+ * Shortest decimal representation of {@code double} and {@code float} values
+ * that round-trips, in the same format as {@link Double#toString(double)} and
+ * {@link Float#toString(float)}.
+ *
+ * This is Raffaello Giulietti's Schubfach algorithm, used by
+ * {@code Double.toString} itself since JDK 19, so the output is identical to
+ * that of recent JDKs only. Older JDKs occasionally print more digits than
+ * needed, e.g. {@code 2.82879384806159008E17} for {@code 2.82879384806159E17};
+ * both parse back to the same value.
+ */
+final class ShortestDecimal {
+  private static final int DOUBLE_P = 53;
+  private static final int DOUBLE_Q_MIN = -1074;
+  private static final long DOUBLE_C_MIN = 1L << (DOUBLE_P - 1);
+  private static final int DOUBLE_C_TINY = 3;
+  private static final int DOUBLE_BQ_MASK = 0x7FF;
+  private static final long DOUBLE_T_MASK = (1L << (DOUBLE_P - 1)) - 1;
+
+  private static final int FLOAT_P = 24;
+  private static final int FLOAT_Q_MIN = -149;
+  private static final int FLOAT_C_MIN = 1 << (FLOAT_P - 1);
+  private static final int FLOAT_C_TINY = 8;
+  private static final int FLOAT_BQ_MASK = 0xFF;
+  private static final int FLOAT_T_MASK = (1 << (FLOAT_P - 1)) - 1;
+
+  private static final long MASK_63 = (1L << 63) - 1;
+  private static final long MASK_32 = (1L << 32) - 1;
+
+  // g = floor(10^e / 2^r) + 1 with 2^125 <= g < 2^126, split into g1 2^63 + g0
+  private static final int G_MIN = -292;
+  private static final int G_MAX = 324;
+  private static final long[] G1 = new long[G_MAX - G_MIN + 1];
+  private static final long[] G0 = new long[G_MAX - G_MIN + 1];
+
+  static {
+    for (int e = G_MIN; e <= G_MAX; e++) {
+      int r = flog2pow10(e) - 125;
+      BigInteger numerator = e >= 0 ? BigInteger.TEN.pow(e) : BigInteger.ONE;
+      BigInteger denominator = e >= 0 ? BigInteger.ONE : BigInteger.TEN.pow(-e);
+      if (r >= 0) {
+        denominator = denominator.shiftLeft(r);
+      } else {
+        numerator = numerator.shiftLeft(-r);
+      }
+      BigInteger g = numerator.divide(denominator).add(BigInteger.ONE);
+      G1[e - G_MIN] = g.shiftRight(63).longValue();
+      G0[e - G_MIN] = g.longValue() & MASK_63;
+    }
+  }
+
+  private ShortestDecimal() {
+  }
+
+  /**
+   * Same as {@link Double#toString(double)} on JDK 19 and later, for finite
+   * values only.
+   */
+  static String toString(double value) {
+    long bits = Double.doubleToRawLongBits(value);
+    StringBuilder out = new StringBuilder(24);
+    if (bits < 0) {
+      out.append('-');
+    }
+
+    long t = bits & DOUBLE_T_MASK;
+    int bq = (int) (bits >>> (DOUBLE_P - 1)) & DOUBLE_BQ_MASK;
+    if (bq != 0) {
+      int mq = -DOUBLE_Q_MIN + 1 - bq;
+      long c = DOUBLE_C_MIN | t;
+      // integers are their own shortest representation
+      if (0 < mq && mq < DOUBLE_P) {
+        long f = c >> mq;
+        if (f << mq == c) {
+          return format(out, f, 0);
+        }
+      }
+      return toDecimal(out, -mq, c, 0);
+    } else if (t != 0) {
+      // subnormal
+      return t < DOUBLE_C_TINY ? toDecimal(out, DOUBLE_Q_MIN, 10 * t, -1) : toDecimal(out, DOUBLE_Q_MIN, t, 0);
+    }
+    return out.append("0.0").toString();
+  }
+
+  /**
+   * Same as {@link Float#toString(float)} on JDK 19 and later, for finite
+   * values only.
+   */
+  static String toString(float value) {
+    int bits = Float.floatToRawIntBits(value);
+    StringBuilder out = new StringBuilder(16);
+    if (bits < 0) {
+      out.append('-');
+    }
+
+    int t = bits & FLOAT_T_MASK;
+    int bq = (bits >>> (FLOAT_P - 1)) & FLOAT_BQ_MASK;
+    if (bq != 0) {
+      int mq = -FLOAT_Q_MIN + 1 - bq;
+      int c = FLOAT_C_MIN | t;
+      if (0 < mq && mq < FLOAT_P) {
+        int f = c >> mq;
+        if (f << mq == c) {
+          return format(out, f, 0);
+        }
+      }
+      return toDecimal(out, -mq, c, 0);
+    } else if (t != 0) {
+      return t < FLOAT_C_TINY ? toDecimal(out, FLOAT_Q_MIN, 10 * t, -1) : toDecimal(out, FLOAT_Q_MIN, t, 0);
+    }
+    return out.append("0.0").toString();
+  }
+
+  /**
+   * Finds the shortest decimal in the rounding interval of c 2^q.
+   */
+  private static String toDecimal(StringBuilder out, int q, long c, int dk) {
+    int parity = (int) c & 0x1;
+    long cb = c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    // the interval is asymmetric at the powers of two, except the smallest
+    if (c != DOUBLE_C_MIN || q == DOUBLE_Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    int h = q + flog2pow10(-k) + 2;
+
+    long g1 = G1[-k - G_MIN];
+    long g0 = G0[-k - G_MIN];
+    long vb = roundOdd(g1, g0, cb << h);
+    long vbl = roundOdd(g1, g0, cbl << h);
+    long vbr = roundOdd(g1, g0, cbr << h);
+
+    long s = vb >> 2;
+    if (s >= 100) {
+      // s' = floor(s / 10)
+      long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+      long tp10 = sp10 + 10;
+      boolean upin = vbl + parity <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + parity <= vbr;
+      if (upin != wpin) {
+        return format(out, upin ? sp10 : tp10, k);
+      }
+    }
+
+    long t = s + 1;
+    boolean uin = vbl + parity <= s << 2;
+    boolean win = (t << 2) + parity <= vbr;
+    if (uin != win) {
+      return format(out, uin ? s : t, k + dk);
+    }
+    // both are in the interval, pick the closest one, or the even one
+    long cmp = vb - (s + t << 1);
+    return format(out, cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk);
+  }
+
+  private static String toDecimal(StringBuilder out, int q, int c, int dk) {
+    int parity = c & 0x1;
+    long cb = (long) c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != FLOAT_C_MIN || q == FLOAT_Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    int h = q + flog2pow10(-k) + 33;
+
+    long g = G1[-k - G_MIN] + 1;
+    int vb = roundOdd(g, cb << h);
+    int vbl = roundOdd(g, cbl << h);
+    int vbr = roundOdd(g, cbr << h);
+
+    int s = vb >> 2;
+    if (s >= 100) {
+      // s' = floor(s / 10)
+      int sp10 = 10 * (int) (s * 1_717_986_919L >>> 34);
+      int tp10 = sp10 + 10;
+      boolean upin = vbl + parity <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + parity <= vbr;
+      if (upin != wpin) {
+        return format(out, upin ? sp10 : tp10, k);
+      }
+    }
+
+    int t = s + 1;
+    boolean uin = vbl + parity <= s << 2;
+    boolean win = (t << 2) + parity <= vbr;
+    if (uin != win) {
+      return format(out, uin ? s : t, k + dk);
+    }
+    int cmp = vb - (s + t << 1);
+    return format(out, cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk);
+  }
+
+  private static long roundOdd(long g1, long g0, long cp) {
+    long x1 = multiplyHigh(g0, cp);
+    long y0 = g1 * cp;
+    long y1 = multiplyHigh(g1, cp);
+    long z = (y0 >>> 1) + x1;
+    long vbp = y1 + (z >>> 63);
+    return vbp | (z & MASK_63) + MASK_63 >>> 63;
+  }
+
+  private static int roundOdd(long g, long cp) {
+    long x1 = multiplyHigh(g, cp);
+    long vbp = x1 >>> 31;
+    return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+  }
+
+  /**
+   * Appends f 10^e in the format of {@code Double.toString}: plain notation
+   * between 10^-3 and 10^7, computerized scientific notation otherwise, and
+   * at least one digit after the decimal point.
+   */
+  private static String format(StringBuilder out, long f, int e) {
+    while (f % 10 == 0) {
+      f /= 10;
+      e++;
+    }
+    String digits = Long.toString(f);
+    int length = digits.length();
+    // f 10^e = 0.digits 10^exponent
+    int exponent = e + length;
+
+    if (0 < exponent && exponent <= 7) {
+      if (length <= exponent) {
+        out.append(digits);
+        for (int i = length; i < exponent; i++) {
+          out.append('0');
+        }
+        out.append(".0");
+      } else {
+        out.append(digits, 0, exponent).append('.').append(digits, exponent, length);
+      }
+    } else if (-3 < exponent && exponent <= 0) {
+      out.append("0.");
+      for (int i = exponent; i < 0; i++) {
+        out.append('0');
+      }
+      out.append(digits);
+    } else {
+      out.append(digits.charAt(0)).append('.');
+      if (length > 1) {
+        out.append(digits, 1, length);
+      } else {
+        out.append('0');
+      }
+      out.append('E').append(exponent - 1);
+    }
+    return out.toString();
+  }
+
+  // floor(e log10(2))
+  private static int flog10pow2(int e) {
+    return (int) (e * 661_971_961_083L >> 41);
+  }
+
+  // floor(e log10(2) + log10(3/4))
+  private static int flog10threeQuartersPow2(int e) {
+    return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+  }
+
+  // floor(e log2(10))
+  private static int flog2pow10(int e) {
+    return (int) (e * 913_124_641_741L >> 38);
+  }
+
+  /**
+   * {@code Math.multiplyHigh}, which is not available on Java 8.
+   */
+  static long multiplyHigh(long x, long y) {
+    long x1 = x >> 32;
+    long x2 = x & 0xFFFFFFFFL;
+    long y1 = y >> 32;
+    long y2 = y & 0xFFFFFFFFL;
+    long z2 = x2 * y2;
+    long t = x1 * y2 + (z2 >>> 32);
+    long z1 = t & 0xFFFFFFFFL;
+    long z0 = t >> 32;
+    z1 += x2 * y1;
+    return x1 * y1 + z0 + (z1 >> 32);
+  }
+}
@@ -8,7 +8,8 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.google.protobuf.Duration;
-import com.google.protobuf.util.Durations;
+
+import org.group.jcommon.protobuf.jackson.ProtobufTimeFormat;
 
 public class DurationDeserializer extends StdDeserializer<Duration> {
 
@@ -26,7 +27,8 @@ public class DurationDeserializer extends StdDeserializer<Duration> {
     switch (parser.getCurrentToken()) {
       case VALUE_STRING:
         try {
-          return Durations.parse(parser.getText());
+          return ProtobufTimeFormat.parseDuration(parser.getTextCharacters(), parser.getTextOffset(),
+              parser.getTextLength());
         } catch (final ParseException e) {
           throw context.weirdStringException(parser.getText(), Duration.class, e.getMessage());
         }
@@ -0,0 +1,106 @@
+package org.group.jcommon.protobuf.jackson.buildin.deserializers;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+
+import org.group.jcommon.protobuf.jackson.DynamicMessages;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+
+/**
+ * Reads {@link DynamicMessage}s of the descriptor given as the
+ * {@link DynamicMessages#DESCRIPTOR_ATTRIBUTE} attribute, with a deserializer
+ * per descriptor. At most {@link ProtobufJacksonConfig#maxDynamicSchemas()}
+ * are kept, so that replaced schema versions are eventually dropped.
+ */
+public class DynamicMessageDeserializer extends StdDeserializer<DynamicMessage> {
+  /**
+   *
+   */
+  private static final long serialVersionUID = 1L;
+
+  private final ProtobufJacksonConfig config;
+  private final ConcurrentMap<Descriptor, JsonDeserializer<DynamicMessage>> deserializers;
+
+  public DynamicMessageDeserializer(ProtobufJacksonConfig config) {
+    super(DynamicMessage.class);
+
+    this.config = config;
+    this.deserializers = CacheBuilder.newBuilder().maximumSize(config.maxDynamicSchemas())
+        .<Descriptor, JsonDeserializer<DynamicMessage>>build().asMap();
+  }
+
+  @Override
+  public DynamicMessage deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+    Object descriptor = context.getAttribute(DynamicMessages.DESCRIPTOR_ATTRIBUTE);
+    if (!(descriptor instanceof Descriptor)) {
+      context.reportInputMismatch(this, "Can not deserialize DynamicMessage without a descriptor, "
+          + "see DynamicMessages.reader");
+      // the previous method should have thrown
+      throw new AssertionError();
+    }
+
+    JsonDeserializer<DynamicMessage> deserializer = deserializers.get(descriptor);
+    if (deserializer == null) {
+      deserializer = forDescriptor((Descriptor) descriptor, config, context);
+      deserializers.putIfAbsent((Descriptor) descriptor, deserializer);
+    }
+    return deserializer.deserialize(parser, context);
+  }
+
+  /**
+   * Deserializer of dynamic messages of type {@code descriptor}; well-known
+   * types are read with the deserializers of their generated classes.
+   */
+  public static JsonDeserializer<DynamicMessage> forDescriptor(Descriptor descriptor, ProtobufJacksonConfig config,
+      DeserializationContext context) throws JsonMappingException {
+    Message wellKnownType = DynamicMessages.wellKnownType(descriptor);
+    if (wellKnownType != null) {
+      JsonDeserializer<Object> deserializer = context
+          .findRootValueDeserializer(context.constructType(wellKnownType.getClass()));
+      return new WellKnownTypeDeserializer(descriptor, deserializer);
+    }
+    return new MessageDeserializer<DynamicMessage, DynamicMessage.Builder>(DynamicMessage.getDefaultInstance(descriptor),
+        config).buildAtEnd();
+  }
+
+  private static final class WellKnownTypeDeserializer extends StdDeserializer<DynamicMessage> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Descriptor descriptor;
+    private final JsonDeserializer<Object> deserializer;
+
+    WellKnownTypeDeserializer(Descriptor descriptor, JsonDeserializer<Object> deserializer) {
+      super(DynamicMessage.class);
+      this.descriptor = descriptor;
+      this.deserializer = deserializer;
+    }
+
+    @Override
+    public DynamicMessage deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+      return DynamicMessages.toDynamic((Message) deserializer.deserialize(parser, context), descriptor);
+    }
+
+    @Override
+    public DynamicMessage getNullValue(DeserializationContext context) throws JsonMappingException {
+      Object value = deserializer.getNullValue(context);
+      if (value == null) {
+        return null;
+      }
+      try {
+        return DynamicMessages.toDynamic((Message) value, descriptor);
+      } catch (IOException e) {
+        throw JsonMappingException.from(context, e.getMessage(), e);
+      }
+    }
+  }
+}
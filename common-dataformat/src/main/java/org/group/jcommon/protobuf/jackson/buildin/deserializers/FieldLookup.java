@@ -0,0 +1,120 @@
+package org.group.jcommon.protobuf.jackson.buildin.deserializers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy.PropertyNamingStrategyBase;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+import org.group.jcommon.protobuf.jackson.ExtensionTable;
+import org.group.jcommon.protobuf.jackson.PropertyNamingStrategyWrapper;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+
+/**
+ * Immutable JSON name to field index of one message type, built once per
+ * naming strategy and shared by every parse of that type.
+ *
+ * Keys are interned, and Jackson interns the field names it canonicalizes by
+ * default, so lookups normally match on identity and only fall back to
+ * {@link String#equals} for names that did not come through the symbol table.
+ * Lookups for the same descriptor under other settings are chained through
+ * {@link #next}.
+ */
+final class FieldLookup {
+  final PropertyNamingStrategy namingStrategy;
+  final boolean extendable;
+  final FieldLookup next;
+
+  private final Entry[] table;
+  private final int mask;
+
+  private FieldLookup(PropertyNamingStrategy namingStrategy, boolean extendable, Map<String, Entry> entries,
+      FieldLookup next) {
+    this.namingStrategy = namingStrategy;
+    this.extendable = extendable;
+    this.next = next;
+
+    int size = Integer.highestOneBit(Math.max(entries.size(), 1) * 2 - 1) << 1;
+    this.table = new Entry[size];
+    this.mask = size - 1;
+    for (Entry entry : entries.values()) {
+      int i = spread(entry.name.hashCode()) & mask;
+      while (table[i] != null) {
+        i = (i + 1) & mask;
+      }
+      table[i] = entry;
+    }
+  }
+
+  static FieldLookup build(Descriptor descriptor, PropertyNamingStrategy namingStrategy, boolean extendable,
+      ProtobufJacksonConfig config, FieldLookup next) {
+    PropertyNamingStrategyBase translator = new PropertyNamingStrategyWrapper(namingStrategy);
+
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    for (FieldDescriptor field : descriptor.getFields()) {
+      String name = translator.translate(field.getName()).intern();
+      entries.put(name, new Entry(name, field, null));
+    }
+
+    if (config.acceptLiteralFieldnames()) {
+      for (FieldDescriptor field : descriptor.getFields()) {
+        String name = field.getName().intern();
+        if (!entries.containsKey(name)) {
+          entries.put(name, new Entry(name, field, null));
+        }
+      }
+    }
+
+    if (extendable) {
+      ExtensionTable extensions = config.extensionRegistry().getExtensionTable(descriptor, namingStrategy);
+      for (int i = 0; i < extensions.size(); i++) {
+        String name = extensions.name(i);
+        if (!entries.containsKey(name)) {
+          entries.put(name, new Entry(name, extensions.descriptor(i), extensions.defaultInstance(i)));
+        }
+      }
+    }
+
+    return new FieldLookup(namingStrategy, extendable, entries, next);
+  }
+
+  static FieldLookup find(FieldLookup head, PropertyNamingStrategy namingStrategy, boolean extendable) {
+    for (FieldLookup lookup = head; lookup != null; lookup = lookup.next) {
+      if (lookup.namingStrategy == namingStrategy && lookup.extendable == extendable) {
+        return lookup;
+      }
+    }
+    return null;
+  }
+
+  Entry get(String name) {
+    int i = spread(name.hashCode()) & mask;
+    Entry entry;
+    while ((entry = table[i]) != null) {
+      if (entry.name == name || entry.name.equals(name)) {
+        return entry;
+      }
+      i = (i + 1) & mask;
+    }
+    return null;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  static final class Entry {
+    final String name;
+    final FieldDescriptor field;
+    final Message defaultInstance;
+
+    private Entry(String name, FieldDescriptor field, Message defaultInstance) {
+      this.name = name;
+      this.field = field;
+      this.defaultInstance = defaultInstance;
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package org.group.jcommon.protobuf.jackson.buildin.deserializers;
 
 import java.io.IOException;
-import java.util.List;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
@@ -24,9 +23,6 @@ public class ListValueDeserializer extends ProtobufDeserializer<ListValue, ListV
   @Override
   protected void populate(ListValue.Builder builder, JsonParser parser, DeserializationContext context)
       throws IOException {
-    List<Object> values = readArray(builder, VALUES_FIELD, null, parser, context);
-    for (Object value : values) {
-      builder.addRepeatedField(VALUES_FIELD, value);
-    }
+    readRepeated(builder, VALUES_FIELD, null, null, parser, context);
   }
 }
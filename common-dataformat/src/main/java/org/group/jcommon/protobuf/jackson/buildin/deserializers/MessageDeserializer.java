@@ -1,25 +1,21 @@
 package org.group.jcommon.protobuf.jackson.buildin.deserializers;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.PropertyNamingStrategy.PropertyNamingStrategyBase;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor;
-import com.google.protobuf.ExtensionRegistry.ExtensionInfo;
 import com.google.protobuf.GeneratedMessageV3.ExtendableMessageOrBuilder;
 import com.google.protobuf.Message;
 import com.google.protobuf.Message.Builder;
 
 import org.group.jcommon.protobuf.jackson.ExtensionRegistryWrapper;
-import org.group.jcommon.protobuf.jackson.PropertyNamingStrategyWrapper;
+import org.group.jcommon.protobuf.jackson.FieldAccessor;
 import org.group.jcommon.protobuf.jackson.ProtobufDeserializer;
 import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
 
@@ -31,6 +27,7 @@ public class MessageDeserializer<T extends Message, V extends Builder> extends P
   private static final long serialVersionUID = 1L;
 
   private final ProtobufJacksonConfig config;
+  private final ConcurrentMap<Descriptor, FieldLookup> lookups;
 
   /**
    * @deprecated use {@link #MessageDeserializer(Class, ProtobufJacksonConfig)}
@@ -42,9 +39,20 @@ public class MessageDeserializer<T extends Message, V extends Builder> extends P
   }
 
   public MessageDeserializer(Class<T> messageType, ProtobufJacksonConfig config) {
-    super(messageType);
+    super(messageType, config);
 
     this.config = config;
+    this.lookups = config.extensionRegistry().newDescriptorCache();
+  }
+
+  /**
+   * For messages without a generated class, such as {@code DynamicMessage}s.
+   */
+  public MessageDeserializer(T defaultInstance, ProtobufJacksonConfig config) {
+    super(defaultInstance, config);
+
+    this.config = config;
+    this.lookups = config.extensionRegistry().newDescriptorCache();
   }
 
   @Override
@@ -67,14 +75,9 @@ public class MessageDeserializer<T extends Message, V extends Builder> extends P
         break; // make findbugs happy
     }
 
-    final Descriptor descriptor = builder.getDescriptorForType();
-    final Map<String, FieldDescriptor> fieldLookup = buildFieldLookup(descriptor, context);
-    final Map<String, ExtensionInfo> extensionLookup;
-    if (builder instanceof ExtendableMessageOrBuilder<?>) {
-      extensionLookup = buildExtensionLookup(descriptor, context);
-    } else {
-      extensionLookup = Collections.emptyMap();
-    }
+    final FieldLookup fieldLookup = lookupFor(builder, context);
+    final FieldAccessor[] accessors = config.generatedAccessors() ? FieldAccessor.accessorsFor(builder.getClass())
+        : null;
 
     do {
       if (!token.equals(JsonToken.FIELD_NAME)) {
@@ -82,17 +85,8 @@ public class MessageDeserializer<T extends Message, V extends Builder> extends P
       }
 
       String name = parser.getCurrentName();
-      FieldDescriptor field = fieldLookup.get(name);
-      Message defaultInstance = null;
-      if (field == null) {
-        ExtensionInfo extensionInfo = extensionLookup.get(name);
-        if (extensionInfo != null) {
-          field = extensionInfo.descriptor;
-          defaultInstance = extensionInfo.defaultInstance;
-        }
-      }
-
-      if (field == null) {
+      FieldLookup.Entry entry = fieldLookup.get(name);
+      if (entry == null) {
         context.handleUnknownProperty(parser, this, builder, name);
         parser.nextToken();
         parser.skipChildren();
@@ -100,62 +94,36 @@ public class MessageDeserializer<T extends Message, V extends Builder> extends P
       }
 
       parser.nextToken();
-      setField(builder, field, defaultInstance, parser, context);
+      FieldAccessor accessor = accessors == null || entry.field.isExtension() ? null
+          : accessors[entry.field.getIndex()];
+      if (accessor != null && accessor.isMap()) {
+        readMap(builder, entry.field, accessor, parser, context);
+      } else if (accessor != null && accessor.isRepeated()) {
+        readRepeated(builder, entry.field, accessor, entry.defaultInstance, parser, context);
+      } else if (accessor != null && accessor.canSet()) {
+        readValue(builder, accessor, parser, context);
+      } else {
+        setField(builder, entry.field, entry.defaultInstance, parser, context);
+      }
     } while ((token = parser.nextToken()) != JsonToken.END_OBJECT);
   }
 
-  private Map<String, FieldDescriptor> buildFieldLookup(Descriptor descriptor, DeserializationContext context) {
-    PropertyNamingStrategyBase namingStrategy = new PropertyNamingStrategyWrapper(
-        context.getConfig().getPropertyNamingStrategy());
-
-    Map<String, FieldDescriptor> fieldLookup = new HashMap<>();
-    for (FieldDescriptor field : descriptor.getFields()) {
-      fieldLookup.put(namingStrategy.translate(field.getName()), field);
-    }
-
-    if (config.acceptLiteralFieldnames()) {
-      for (FieldDescriptor field : descriptor.getFields()) {
-        if (!fieldLookup.containsKey(field.getName())) {
-          fieldLookup.put(field.getName(), field);
+  private FieldLookup lookupFor(V builder, DeserializationContext context) {
+    final Descriptor descriptor = builder.getDescriptorForType();
+    final PropertyNamingStrategy namingStrategy = context.getConfig().getPropertyNamingStrategy();
+    final boolean extendable = builder instanceof ExtendableMessageOrBuilder<?>;
+
+    FieldLookup lookup = FieldLookup.find(lookups.get(descriptor), namingStrategy, extendable);
+    if (lookup == null) {
+      FieldLookup head = lookups.compute(descriptor, (key, previous) -> {
+        if (FieldLookup.find(previous, namingStrategy, extendable) != null) {
+          return previous;
         }
-      }
-    }
-
-    return fieldLookup;
-  }
-
-  private Map<String, ExtensionInfo> buildExtensionLookup(Descriptor descriptor, DeserializationContext context) {
-    PropertyNamingStrategyBase namingStrategy = new PropertyNamingStrategyWrapper(
-        context.getConfig().getPropertyNamingStrategy());
-
-    Map<String, ExtensionInfo> extensionLookup = new HashMap<>();
-    for (ExtensionInfo extensionInfo : config.extensionRegistry().getExtensionsByDescriptor(descriptor)) {
-      extensionLookup.put(namingStrategy.translate(extensionInfo.descriptor.getName()), extensionInfo);
-    }
-
-    return extensionLookup;
-  }
-
-  private void setField(V builder, FieldDescriptor field, Message defaultInstance, JsonParser parser,
-      DeserializationContext context) throws IOException {
-    if (field.isMapField()) {
-      List<Message> entries = readMap(builder, field, parser, context);
-      for (Message entry : entries) {
-        builder.addRepeatedField(field, entry);
-      }
-    } else if (field.isRepeated()) {
-      List<Object> values = readArray(builder, field, defaultInstance, parser, context);
-
-      for (Object value : values) {
-        builder.addRepeatedField(field, value);
-      }
-    } else {
-      Object value = readValue(builder, field, defaultInstance, parser, context);
-
-      if (value != null) {
-        builder.setField(field, value);
-      }
+        return FieldLookup.build(key, namingStrategy, extendable, config, previous);
+      });
+      lookup = FieldLookup.find(head, namingStrategy, extendable);
     }
+    return lookup;
   }
 
   private AssertionError reportWrongToken(JsonToken expected, DeserializationContext context, String message)
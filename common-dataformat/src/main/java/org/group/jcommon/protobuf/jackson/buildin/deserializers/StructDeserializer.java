@@ -1,15 +1,15 @@
 package org.group.jcommon.protobuf.jackson.buildin.deserializers;
 
 import java.io.IOException;
-import java.util.List;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.google.protobuf.Descriptors.FieldDescriptor;
-import com.google.protobuf.Message;
 import com.google.protobuf.Struct;
 
+import org.group.jcommon.protobuf.jackson.FieldAccessor;
 import org.group.jcommon.protobuf.jackson.ProtobufDeserializer;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
 
 public class StructDeserializer extends ProtobufDeserializer<Struct, Struct.Builder> {
   /**
@@ -17,17 +17,24 @@ public class StructDeserializer extends ProtobufDeserializer<Struct, Struct.Buil
    */
   private static final long serialVersionUID = 1L;
   private static final FieldDescriptor FIELDS_FIELD = Struct.getDescriptor().findFieldByName("fields");
+  private static final FieldAccessor FIELDS_ACCESSOR =
+      FieldAccessor.accessorsFor(Struct.Builder.class)[FIELDS_FIELD.getIndex()];
+
+  private final boolean generatedAccessors;
 
   public StructDeserializer() {
-    super(Struct.class);
+    this(ProtobufJacksonConfig.builder().build());
+  }
+
+  public StructDeserializer(ProtobufJacksonConfig config) {
+    super(Struct.class, config);
+
+    this.generatedAccessors = config.generatedAccessors();
   }
 
   @Override
   protected void populate(Struct.Builder builder, JsonParser parser, DeserializationContext context)
       throws IOException {
-    List<Message> entries = readMap(builder, FIELDS_FIELD, parser, context);
-    for (Message entry : entries) {
-      builder.addRepeatedField(FIELDS_FIELD, entry);
-    }
+    readMap(builder, FIELDS_FIELD, generatedAccessors ? FIELDS_ACCESSOR : null, parser, context);
   }
 }
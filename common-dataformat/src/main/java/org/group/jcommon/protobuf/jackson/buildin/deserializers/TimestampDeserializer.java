@@ -8,7 +8,8 @@ import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.google.protobuf.Timestamp;
-import com.google.protobuf.util.Timestamps;
+
+import org.group.jcommon.protobuf.jackson.ProtobufTimeFormat;
 
 public class TimestampDeserializer extends StdDeserializer<Timestamp> {
 
@@ -26,7 +27,8 @@ public class TimestampDeserializer extends StdDeserializer<Timestamp> {
     switch (parser.getCurrentToken()) {
       case VALUE_STRING:
         try {
-          return Timestamps.parse(parser.getText());
+          return ProtobufTimeFormat.parseTimestamp(parser.getTextCharacters(), parser.getTextOffset(),
+              parser.getTextLength());
         } catch (ParseException e) {
           throw context.weirdStringException(parser.getText(), Timestamp.class, e.getMessage());
         }
@@ -8,6 +8,7 @@ import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.NullValue;
 import com.google.protobuf.Value;
 
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
 import org.group.jcommon.protobuf.jackson.ProtobufDeserializer;
 
 public class ValueDeserializer extends ProtobufDeserializer<Value, Value.Builder> {
@@ -22,6 +23,10 @@ public class ValueDeserializer extends ProtobufDeserializer<Value, Value.Builder
     super(Value.class);
   }
 
+  public ValueDeserializer(ProtobufJacksonConfig config) {
+    super(Value.class, config);
+  }
+
   @Override
   protected void populate(Value.Builder builder, JsonParser parser, DeserializationContext context) throws IOException {
     switch (parser.getCurrentToken()) {
@@ -37,9 +42,11 @@ public class ValueDeserializer extends ProtobufDeserializer<Value, Value.Builder
         builder.setStringValue(parser.getText());
         return;
       case VALUE_NUMBER_INT:
-      case VALUE_NUMBER_FLOAT:
         builder.setNumberValue(parser.getValueAsDouble());
         return;
+      case VALUE_NUMBER_FLOAT:
+        builder.setNumberValue(parseDouble(parser, context));
+        return;
       case VALUE_TRUE:
         builder.setBoolValue(true);
         return;
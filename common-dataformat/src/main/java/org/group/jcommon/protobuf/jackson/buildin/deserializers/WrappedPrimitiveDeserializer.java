@@ -8,6 +8,7 @@ import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Message;
 import com.google.protobuf.Message.Builder;
 
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
 import org.group.jcommon.protobuf.jackson.ProtobufDeserializer;
 
 public class WrappedPrimitiveDeserializer<T extends Message, V extends Builder> extends ProtobufDeserializer<T, V> {
@@ -21,6 +22,10 @@ public class WrappedPrimitiveDeserializer<T extends Message, V extends Builder>
     super(wrapperType);
   }
 
+  public WrappedPrimitiveDeserializer(Class<T> wrapperType, ProtobufJacksonConfig config) {
+    super(wrapperType, config);
+  }
+
   @Override
   protected void populate(V builder, JsonParser parser, DeserializationContext context) throws IOException {
     FieldDescriptor field = builder.getDescriptorForType().findFieldByName("value");
@@ -5,9 +5,9 @@ import java.io.IOException;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.google.protobuf.Duration;
-import com.google.protobuf.util.Durations;
 
 import org.group.jcommon.protobuf.jackson.ProtobufSerializer;
+import org.group.jcommon.protobuf.jackson.ProtobufTimeFormat;
 
 public class DurationSerializer extends ProtobufSerializer<Duration> {
 
@@ -23,6 +23,6 @@ public class DurationSerializer extends ProtobufSerializer<Duration> {
   @Override
   public void serialize(final Duration duration, final JsonGenerator generator,
       final SerializerProvider serializerProvider) throws IOException {
-    generator.writeString(Durations.toString(duration));
+    ProtobufTimeFormat.writeDuration(duration, generator);
   }
 }
@@ -1,26 +1,33 @@
 package org.group.jcommon.protobuf.jackson.buildin.serializers;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.PropertyNamingStrategy.PropertyNamingStrategyBase;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
+import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor;
-import com.google.protobuf.Descriptors.FieldDescriptor.JavaType;
-import com.google.protobuf.Descriptors.FileDescriptor.Syntax;
-import com.google.protobuf.ExtensionRegistry.ExtensionInfo;
 import com.google.protobuf.GeneratedMessageV3.ExtendableMessageOrBuilder;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
 import com.google.protobuf.MessageOrBuilder;
 
+import org.group.jcommon.protobuf.jackson.DynamicMessages;
 import org.group.jcommon.protobuf.jackson.ExtensionRegistryWrapper;
-import org.group.jcommon.protobuf.jackson.PropertyNamingStrategyWrapper;
+import org.group.jcommon.protobuf.jackson.ExtensionTable;
+import org.group.jcommon.protobuf.jackson.FieldAccessor;
+import org.group.jcommon.protobuf.jackson.FieldMaskProjection;
+import org.group.jcommon.protobuf.jackson.HasBits;
 import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
 import org.group.jcommon.protobuf.jackson.ProtobufSerializer;
+import org.group.jcommon.protobuf.jackson.buildin.serializers.SerializationPlan.PlannedField;
 
 public class MessageSerializer extends ProtobufSerializer<MessageOrBuilder> {
   /**
@@ -29,6 +36,8 @@ public class MessageSerializer extends ProtobufSerializer<MessageOrBuilder> {
   private static final long serialVersionUID = 1L;
 
   private final ProtobufJacksonConfig config;
+  private final ConcurrentMap<Descriptor, SerializationPlan> plans;
+  private final ConcurrentMap<Descriptor, SerializationPlan> dynamicPlans;
 
   /**
    * @deprecated use {@link #MessageSerializer(ProtobufJacksonConfig)} instead
@@ -39,56 +48,99 @@ public class MessageSerializer extends ProtobufSerializer<MessageOrBuilder> {
   }
 
   public MessageSerializer(ProtobufJacksonConfig config) {
-    super(MessageOrBuilder.class);
+    super(MessageOrBuilder.class, config);
 
     this.config = config;
+    this.plans = config.extensionRegistry().newDescriptorCache();
+    // dynamic schemas come and go, their plans are bounded separately
+    this.dynamicPlans = CacheBuilder.newBuilder().maximumSize(config.maxDynamicSchemas())
+        .<Descriptor, SerializationPlan>build().asMap();
   }
 
   @Override
   public void serialize(MessageOrBuilder message, JsonGenerator generator, SerializerProvider serializerProvider)
       throws IOException {
+    if (message instanceof DynamicMessage) {
+      Message wellKnownType = DynamicMessages.wellKnownType(message.getDescriptorForType());
+      if (wellKnownType != null) {
+        Message generated = DynamicMessages.toGenerated((Message) message, wellKnownType);
+        serializerProvider.findValueSerializer(generated.getClass()).serialize(generated, generator,
+            serializerProvider);
+        return;
+      }
+    }
+
+    Object projectionAttribute = serializerProvider.getAttribute(FieldMaskProjection.ATTRIBUTE);
+    if (projectionAttribute != null) {
+      FieldMaskProjection projection = fromAttribute(projectionAttribute, serializerProvider);
+      // the serializers of nested values write them whole
+      serializerProvider.setAttribute(FieldMaskProjection.ATTRIBUTE, null);
+      try {
+        serializeProjected(message, projection, generator, serializerProvider);
+      } finally {
+        serializerProvider.setAttribute(FieldMaskProjection.ATTRIBUTE, projectionAttribute);
+      }
+      return;
+    }
+
+    writeMessage(message, planFor(message, serializerProvider), generator, serializerProvider);
+  }
+
+  private void writeMessage(MessageOrBuilder message, SerializationPlan plan, JsonGenerator generator,
+      SerializerProvider serializerProvider) throws IOException {
     generator.writeStartObject();
 
-    boolean proto3 = message.getDescriptorForType().getFile().getSyntax() == Syntax.PROTO3;
-    Include include = serializerProvider.getConfig().getDefaultPropertyInclusion().getValueInclusion();
-    boolean writeDefaultValues = !proto3 && include != Include.NON_DEFAULT;
-    boolean writeEmptyCollections = include != Include.NON_DEFAULT && include != Include.NON_EMPTY;
-    PropertyNamingStrategyBase namingStrategy = new PropertyNamingStrategyWrapper(
-        serializerProvider.getConfig().getPropertyNamingStrategy());
+    boolean unwrapSingleElementArrays = writeSingleElementArraysUnwrapped(serializerProvider);
 
-    Descriptor descriptor = message.getDescriptorForType();
-    List<FieldDescriptor> fields = new ArrayList<>(descriptor.getFields());
+    FieldAccessor[] accessors = config.generatedAccessors() ? FieldAccessor.accessorsFor(message.getClass()) : null;
+    HasBits hasBits = plan.sparse ? HasBits.forClass(message.getClass()) : null;
+
+    if (accessors == null && plan.sparse && hasPopulatedFieldSet(message)) {
+      writePopulatedFields(plan.fields, message, generator, serializerProvider, unwrapSingleElementArrays);
+    } else if (hasBits != null) {
+      writeSetFields(plan.fields, hasBits, accessors, message, generator, serializerProvider,
+          unwrapSingleElementArrays);
+    } else {
+      writeFields(plan.fields, accessors, message, generator, serializerProvider, unwrapSingleElementArrays);
+    }
     if (message instanceof ExtendableMessageOrBuilder<?>) {
-      for (ExtensionInfo extensionInfo : config.extensionRegistry().getExtensionsByDescriptor(descriptor)) {
-        fields.add(extensionInfo.descriptor);
-      }
+      writeFields(plan.extensionFields, null, message, generator, serializerProvider, unwrapSingleElementArrays);
     }
 
-    for (FieldDescriptor field : fields) {
-      if (field.isRepeated()) {
-        List<?> valueList = (List<?>) message.getField(field);
-
-        if (!valueList.isEmpty() || writeEmptyCollections) {
-          if (field.isMapField()) {
-            generator.writeFieldName(namingStrategy.translate(field.getName()));
-            writeMap(field, valueList, generator, serializerProvider);
-          } else if (valueList.size() == 1 && writeSingleElementArraysUnwrapped(serializerProvider)) {
-            generator.writeFieldName(namingStrategy.translate(field.getName()));
-            writeValue(field, valueList.get(0), generator, serializerProvider);
-          } else {
-            generator.writeArrayFieldStart(namingStrategy.translate(field.getName()));
-            for (Object subValue : valueList) {
-              writeValue(field, subValue, generator, serializerProvider);
-            }
-            generator.writeEndArray();
-          }
-        }
-      } else if (message.hasField(field)
-          || (writeDefaultValues && !supportsFieldPresence(field) && field.getContainingOneof() == null)) {
-        generator.writeFieldName(namingStrategy.translate(field.getName()));
-        writeValue(field, message.getField(field), generator, serializerProvider);
-      } else if (include == Include.ALWAYS && field.getContainingOneof() == null) {
-        generator.writeFieldName(namingStrategy.translate(field.getName()));
+    generator.writeEndObject();
+  }
+
+  /**
+   * Writes the fields selected by {@code projection}, going down the singular
+   * message fields selected in part.
+   */
+  private void serializeProjected(MessageOrBuilder message, FieldMaskProjection projection,
+      JsonGenerator generator, SerializerProvider serializerProvider) throws IOException {
+    SerializationPlan plan = planFor(message, serializerProvider);
+    if (projection.isAll()) {
+      writeMessage(message, plan, generator, serializerProvider);
+      return;
+    }
+
+    generator.writeStartObject();
+
+    boolean unwrapSingleElementArrays = writeSingleElementArraysUnwrapped(serializerProvider);
+    FieldAccessor[] accessors = config.generatedAccessors() ? FieldAccessor.accessorsFor(message.getClass()) : null;
+    FieldMaskProjection[] selected = projection.resolve(message.getDescriptorForType());
+    for (int i = 0; i < selected.length; i++) {
+      FieldMaskProjection fieldProjection = selected[i];
+      PlannedField plannedField = plan.fields[i];
+      if (fieldProjection == null) {
+        continue;
+      } else if (fieldProjection.isAll()) {
+        writeField(plannedField, accessors == null ? null : accessors[i], message, generator, serializerProvider,
+            unwrapSingleElementArrays);
+      } else if (message.hasField(plannedField.descriptor)) {
+        generator.writeFieldName(plannedField.name);
+        serializeProjected((MessageOrBuilder) message.getField(plannedField.descriptor), fieldProjection, generator,
+            serializerProvider);
+      } else if (plannedField.absentMode == SerializationPlan.ABSENT_WRITE_NULL) {
+        generator.writeFieldName(plannedField.name);
         generator.writeNull();
       }
     }
@@ -96,9 +148,193 @@ public class MessageSerializer extends ProtobufSerializer<MessageOrBuilder> {
     generator.writeEndObject();
   }
 
-  private static boolean supportsFieldPresence(FieldDescriptor field) {
-    // messages still support field presence in proto3
-    return field.getJavaType() == JavaType.MESSAGE;
+  private void writeFields(PlannedField[] fields, FieldAccessor[] accessors, MessageOrBuilder message,
+      JsonGenerator generator, SerializerProvider serializerProvider, boolean unwrapSingleElementArrays)
+      throws IOException {
+    for (int i = 0; i < fields.length; i++) {
+      writeField(fields[i], accessors == null ? null : accessors[i], message, generator, serializerProvider,
+          unwrapSingleElementArrays);
+    }
+  }
+
+  private void writeField(PlannedField plannedField, FieldAccessor accessor, MessageOrBuilder message,
+      JsonGenerator generator, SerializerProvider serializerProvider, boolean unwrapSingleElementArrays)
+      throws IOException {
+    FieldDescriptor field = plannedField.descriptor;
+    if (accessor != null && accessor.isMap()) {
+      Map<?, ?> map = accessor.getMap(message);
+      if (!map.isEmpty() || plannedField.writeEmpty) {
+        generator.writeFieldName(plannedField.name);
+        writeMap(field, map, generator, serializerProvider);
+      }
+    } else if (accessor != null && accessor.canGet() && !accessor.isRepeated()) {
+      if (plannedField.absentMode == SerializationPlan.ABSENT_WRITE_DEFAULT || accessor.has(message)) {
+        generator.writeFieldName(plannedField.name);
+        writeAccessedValue(accessor, message, generator, serializerProvider);
+      } else if (plannedField.absentMode == SerializationPlan.ABSENT_WRITE_NULL) {
+        generator.writeFieldName(plannedField.name);
+        generator.writeNull();
+      }
+    } else if (accessor != null && plannedField.skipWhenAbsent && !accessor.isPresent(message)) {
+      // absent, found out from the has-bits or element count
+      return;
+    } else if (plannedField.repeated) {
+      List<?> valueList = (List<?>) message.getField(field);
+
+      if (!valueList.isEmpty() || plannedField.writeEmpty) {
+        generator.writeFieldName(plannedField.name);
+        writeRepeated(plannedField, valueList, generator, serializerProvider, unwrapSingleElementArrays);
+      }
+    } else if (plannedField.absentMode == SerializationPlan.ABSENT_WRITE_DEFAULT || message.hasField(field)) {
+      generator.writeFieldName(plannedField.name);
+      writeValue(field, message.getField(field), generator, serializerProvider);
+    } else if (plannedField.absentMode == SerializationPlan.ABSENT_WRITE_NULL) {
+      generator.writeFieldName(plannedField.name);
+      generator.writeNull();
+    }
+  }
+
+  /**
+   * Writes the fields whose has-bit is set, and checks the fields without
+   * one, in field number order, for sparse plans of generated messages, see
+   * {@link HasBits}.
+   */
+  private void writeSetFields(PlannedField[] fields, HasBits hasBits, FieldAccessor[] accessors,
+      MessageOrBuilder message, JsonGenerator generator, SerializerProvider serializerProvider,
+      boolean unwrapSingleElementArrays) throws IOException {
+    for (int i = hasBits.next(message, 0); i >= 0; i = hasBits.next(message, i + 1)) {
+      PlannedField plannedField = fields[i];
+      FieldAccessor accessor = accessors == null ? null : accessors[i];
+      if (!hasBits.hasBit(i)) {
+        writeField(plannedField, accessor, message, generator, serializerProvider, unwrapSingleElementArrays);
+      } else if (accessor != null && accessor.canGet()) {
+        generator.writeFieldName(plannedField.name);
+        writeAccessedValue(accessor, message, generator, serializerProvider);
+      } else {
+        generator.writeFieldName(plannedField.name);
+        writeValue(plannedField.descriptor, message.getField(plannedField.descriptor), generator,
+            serializerProvider);
+      }
+    }
+  }
+
+  /**
+   * Writes only the populated fields, in field number order, for sparse plans
+   * of messages that keep them in a field set, see
+   * {@link #hasPopulatedFieldSet}.
+   */
+  private void writePopulatedFields(PlannedField[] fields, MessageOrBuilder message, JsonGenerator generator,
+      SerializerProvider serializerProvider, boolean unwrapSingleElementArrays) throws IOException {
+    for (Map.Entry<FieldDescriptor, Object> entry : message.getAllFields().entrySet()) {
+      FieldDescriptor field = entry.getKey();
+      if (field.isExtension()) {
+        // written from the registered extensions
+        continue;
+      }
+
+      PlannedField plannedField = fields[field.getIndex()];
+      generator.writeFieldName(plannedField.name);
+      if (plannedField.repeated) {
+        writeRepeated(plannedField, (List<?>) entry.getValue(), generator, serializerProvider,
+            unwrapSingleElementArrays);
+      } else {
+        writeValue(field, entry.getValue(), generator, serializerProvider);
+      }
+    }
+  }
+
+  private void writeRepeated(PlannedField plannedField, List<?> valueList, JsonGenerator generator,
+      SerializerProvider serializerProvider, boolean unwrapSingleElementArrays) throws IOException {
+    FieldDescriptor field = plannedField.descriptor;
+    if (plannedField.map) {
+      writeMap(field, valueList, generator, serializerProvider);
+    } else if (valueList.size() == 1 && unwrapSingleElementArrays) {
+      writeValue(field, valueList.get(0), generator, serializerProvider);
+    } else {
+      generator.writeStartArray();
+      for (Object subValue : valueList) {
+        writeValue(field, subValue, generator, serializerProvider);
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  private void writeAccessedValue(FieldAccessor accessor, MessageOrBuilder message, JsonGenerator generator,
+      SerializerProvider serializerProvider) throws IOException {
+    FieldDescriptor field = accessor.getField();
+    switch (field.getJavaType()) {
+      case INT:
+        writeInt(field, accessor.getInt(message), generator, serializerProvider);
+        break;
+      case LONG:
+        writeLong(field, accessor.getLong(message), generator, serializerProvider);
+        break;
+      case FLOAT:
+        writeFloat(field, accessor.getFloat(message), generator, serializerProvider);
+        break;
+      case DOUBLE:
+        writeDouble(field, accessor.getDouble(message), generator, serializerProvider);
+        break;
+      case BOOLEAN:
+        generator.writeBoolean(accessor.getBoolean(message));
+        break;
+      case STRING:
+        if (accessor.canGetUtf8()) {
+          writeString(accessor.getUtf8(message), generator);
+        } else {
+          generator.writeString((String) accessor.get(message));
+        }
+        break;
+      default:
+        writeValue(field, accessor.get(message), generator, serializerProvider);
+        break;
+    }
+  }
+
+  /**
+   * The plan for the type of {@code message} under the inclusion and naming
+   * strategy of {@code serializerProvider}, built once per combination.
+   */
+  SerializationPlan planFor(MessageOrBuilder message, SerializerProvider serializerProvider) {
+    return planFor(message.getDescriptorForType(), message instanceof DynamicMessage ? dynamicPlans : plans,
+        serializerProvider);
+  }
+
+  private SerializationPlan planFor(Descriptor descriptor, ConcurrentMap<Descriptor, SerializationPlan> plans,
+      SerializerProvider serializerProvider) {
+    Include include = serializerProvider.getConfig().getDefaultPropertyInclusion().getValueInclusion();
+    PropertyNamingStrategy namingStrategy = serializerProvider.getConfig().getPropertyNamingStrategy();
+
+    SerializationPlan plan = SerializationPlan.find(plans.get(descriptor), include, namingStrategy);
+    if (plan == null) {
+      ExtensionTable extensions = config.extensionRegistry().getExtensionTable(descriptor, namingStrategy);
+      SerializationPlan head = plans.compute(descriptor, (key, previous) -> {
+        if (SerializationPlan.find(previous, include, namingStrategy) != null) {
+          return previous;
+        }
+        return SerializationPlan.build(key, include, namingStrategy, extensions, previous);
+      });
+      plan = SerializationPlan.find(head, include, namingStrategy);
+    }
+    return plan;
+  }
+
+  private static FieldMaskProjection fromAttribute(Object attribute, SerializerProvider serializerProvider)
+      throws JsonMappingException {
+    try {
+      return FieldMaskProjection.fromAttribute(attribute);
+    } catch (IllegalArgumentException e) {
+      throw JsonMappingException.from(serializerProvider, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Whether {@code getAllFields()} only visits the populated fields. Generated
+   * messages build it by calling has on every field, into a new map; their
+   * has-bits are scanned instead, see {@link HasBits}.
+   */
+  private static boolean hasPopulatedFieldSet(MessageOrBuilder message) {
+    return message instanceof DynamicMessage || message instanceof DynamicMessage.Builder;
   }
 
   private static boolean writeSingleElementArraysUnwrapped(SerializerProvider config) {
@@ -0,0 +1,120 @@
+package org.group.jcommon.protobuf.jackson.buildin.serializers;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy.PropertyNamingStrategyBase;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor.JavaType;
+import com.google.protobuf.Descriptors.FileDescriptor.Syntax;
+
+import org.group.jcommon.protobuf.jackson.ExtensionTable;
+import org.group.jcommon.protobuf.jackson.PropertyNamingStrategyWrapper;
+
+/**
+ * Immutable description of how to write one message type for a given naming
+ * strategy and inclusion setting. Field names are translated and pre-encoded
+ * and the presence rules are resolved up front, so serializing a message only
+ * reads values and writes tokens.
+ *
+ * A plan is {@link #sparse} when no absent field is written, in which case
+ * only the populated fields need to be visited.
+ *
+ * Plans for the same descriptor but different settings are chained through
+ * {@link #next}.
+ */
+final class SerializationPlan {
+  static final int ABSENT_SKIP = 0;
+  static final int ABSENT_WRITE_DEFAULT = 1;
+  static final int ABSENT_WRITE_NULL = 2;
+
+  final Include include;
+  final PropertyNamingStrategy namingStrategy;
+  final PlannedField[] fields;
+  final PlannedField[] extensionFields;
+  final boolean sparse;
+  final SerializationPlan next;
+
+  private SerializationPlan(Include include, PropertyNamingStrategy namingStrategy, PlannedField[] fields,
+      PlannedField[] extensionFields, boolean sparse, SerializationPlan next) {
+    this.include = include;
+    this.namingStrategy = namingStrategy;
+    this.fields = fields;
+    this.extensionFields = extensionFields;
+    this.sparse = sparse;
+    this.next = next;
+  }
+
+  static SerializationPlan build(Descriptor descriptor, Include include, PropertyNamingStrategy namingStrategy,
+      ExtensionTable extensions, SerializationPlan next) {
+    boolean proto3 = descriptor.getFile().getSyntax() == Syntax.PROTO3;
+    boolean writeDefaultValues = !proto3 && include != Include.NON_DEFAULT;
+    boolean writeEmptyCollections = include != Include.NON_DEFAULT && include != Include.NON_EMPTY;
+    PropertyNamingStrategyBase translator = new PropertyNamingStrategyWrapper(namingStrategy);
+
+    List<FieldDescriptor> fields = descriptor.getFields();
+    PlannedField[] plannedFields = new PlannedField[fields.size()];
+    // populated fields are listed in field number order, which must match the declaration order
+    boolean sparse = true;
+    for (int i = 0; i < plannedFields.length; i++) {
+      plannedFields[i] = new PlannedField(fields.get(i), translator.translate(fields.get(i).getName()), include,
+          writeDefaultValues, writeEmptyCollections);
+      boolean ordered = i == 0 || fields.get(i - 1).getNumber() < fields.get(i).getNumber();
+      sparse &= plannedFields[i].skipWhenAbsent && ordered;
+    }
+
+    PlannedField[] plannedExtensions = new PlannedField[extensions.size()];
+    for (int i = 0; i < plannedExtensions.length; i++) {
+      plannedExtensions[i] = new PlannedField(extensions.descriptor(i), extensions.name(i), include,
+          writeDefaultValues, writeEmptyCollections);
+    }
+
+    return new SerializationPlan(include, namingStrategy, plannedFields, plannedExtensions, sparse, next);
+  }
+
+  static SerializationPlan find(SerializationPlan head, Include include, PropertyNamingStrategy namingStrategy) {
+    for (SerializationPlan plan = head; plan != null; plan = plan.next) {
+      if (plan.include == include && plan.namingStrategy == namingStrategy) {
+        return plan;
+      }
+    }
+    return null;
+  }
+
+  static final class PlannedField {
+    final FieldDescriptor descriptor;
+    final SerializedString name;
+    final boolean repeated;
+    final boolean map;
+    final boolean writeEmpty;
+    final int absentMode;
+    final boolean skipWhenAbsent;
+
+    private PlannedField(FieldDescriptor descriptor, String name, Include include, boolean writeDefaultValues,
+        boolean writeEmptyCollections) {
+      this.descriptor = descriptor;
+      this.name = new SerializedString(name);
+      this.repeated = descriptor.isRepeated();
+      this.map = descriptor.isMapField();
+      this.writeEmpty = writeEmptyCollections;
+
+      boolean inOneof = descriptor.getContainingOneof() != null;
+      if (writeDefaultValues && !supportsFieldPresence(descriptor) && !inOneof) {
+        this.absentMode = ABSENT_WRITE_DEFAULT;
+      } else if (include == Include.ALWAYS && !inOneof) {
+        this.absentMode = ABSENT_WRITE_NULL;
+      } else {
+        this.absentMode = ABSENT_SKIP;
+      }
+      this.skipWhenAbsent = repeated ? !writeEmpty : absentMode == ABSENT_SKIP;
+    }
+
+    private static boolean supportsFieldPresence(FieldDescriptor field) {
+      // messages still support field presence in proto3
+      return field.getJavaType() == JavaType.MESSAGE;
+    }
+  }
+}
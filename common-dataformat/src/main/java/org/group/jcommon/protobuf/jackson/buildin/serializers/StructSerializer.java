@@ -24,6 +24,6 @@ public class StructSerializer extends ProtobufSerializer<Struct> {
   @Override
   public void serialize(Struct struct, JsonGenerator generator, SerializerProvider serializerProvider)
       throws IOException {
-    writeMap(FIELDS_FIELD, struct.getField(FIELDS_FIELD), generator, serializerProvider);
+    writeMap(FIELDS_FIELD, struct.getFieldsMap(), generator, serializerProvider);
   }
 }
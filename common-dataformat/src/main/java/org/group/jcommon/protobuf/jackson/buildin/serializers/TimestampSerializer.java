@@ -5,9 +5,9 @@ import java.io.IOException;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.google.protobuf.Timestamp;
-import com.google.protobuf.util.Timestamps;
 
 import org.group.jcommon.protobuf.jackson.ProtobufSerializer;
+import org.group.jcommon.protobuf.jackson.ProtobufTimeFormat;
 
 public class TimestampSerializer extends ProtobufSerializer<Timestamp> {
 
@@ -23,6 +23,6 @@ public class TimestampSerializer extends ProtobufSerializer<Timestamp> {
   @Override
   public void serialize(Timestamp timestamp, JsonGenerator generator, SerializerProvider serializerProvider)
       throws IOException {
-    generator.writeString(Timestamps.toString(timestamp));
+    ProtobufTimeFormat.writeTimestamp(timestamp, generator);
   }
 }
@@ -9,6 +9,7 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Value;
 
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
 import org.group.jcommon.protobuf.jackson.ProtobufSerializer;
 
 public class ValueSerializer extends ProtobufSerializer<Value> {
@@ -22,6 +23,10 @@ public class ValueSerializer extends ProtobufSerializer<Value> {
     super(Value.class);
   }
 
+  public ValueSerializer(ProtobufJacksonConfig config) {
+    super(Value.class, config);
+  }
+
   @Override
   public void serialize(Value value, JsonGenerator generator, SerializerProvider serializerProvider)
       throws IOException {
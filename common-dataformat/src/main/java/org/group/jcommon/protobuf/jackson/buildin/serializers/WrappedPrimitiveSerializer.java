@@ -7,6 +7,7 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.MessageOrBuilder;
 
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
 import org.group.jcommon.protobuf.jackson.ProtobufSerializer;
 
 public class WrappedPrimitiveSerializer<T extends MessageOrBuilder> extends ProtobufSerializer<T> {
@@ -20,6 +21,10 @@ public class WrappedPrimitiveSerializer<T extends MessageOrBuilder> extends Prot
     super(wrapperType);
   }
 
+  public WrappedPrimitiveSerializer(Class<T> wrapperType, ProtobufJacksonConfig config) {
+    super(wrapperType, config);
+  }
+
   @Override
   public void serialize(MessageOrBuilder message, JsonGenerator generator, SerializerProvider serializerProvider)
       throws IOException {
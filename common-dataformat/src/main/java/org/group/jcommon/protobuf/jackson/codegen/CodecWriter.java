@@ -0,0 +1,459 @@
+package org.group.jcommon.protobuf.jackson.codegen;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy.PropertyNamingStrategyBase;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor.JavaType;
+import com.google.protobuf.Descriptors.FileDescriptor.Syntax;
+
+import org.group.jcommon.protobuf.jackson.PropertyNamingStrategyWrapper;
+import org.group.jcommon.protobuf.jackson.ProtobufJavaNames;
+
+/**
+ * Writes the source of the {@code GeneratedJacksonCodec} of one message type.
+ */
+final class CodecWriter {
+  private static final PropertyNamingStrategyBase JSON_NAMES = new PropertyNamingStrategyWrapper(null);
+
+  private final Descriptor descriptor;
+  private final boolean proto3;
+  private final String messageType;
+  private final String builderType;
+  private final String javaPackage;
+  private final String codecName;
+  private final StringBuilder source;
+  private int indent;
+
+  CodecWriter(Descriptor descriptor) {
+    this.descriptor = descriptor;
+    this.proto3 = descriptor.getFile().getSyntax() == Syntax.PROTO3;
+
+    String className = ProtobufJavaNames.className(descriptor);
+    String codecClassName = ProtobufJavaNames.codecClassName(className);
+    this.messageType = className.replace('$', '.');
+    this.builderType = messageType + ".Builder";
+    this.javaPackage = ProtobufJavaNames.javaPackage(descriptor.getFile());
+    this.codecName = codecClassName.substring(codecClassName.lastIndexOf('.') + 1);
+    this.source = new StringBuilder();
+  }
+
+  /**
+   * Path of the generated file relative to the output directory.
+   */
+  String fileName() {
+    String directory = javaPackage.isEmpty() ? "" : javaPackage.replace('.', '/') + "/";
+    return directory + codecName + ".java";
+  }
+
+  String write() {
+    line("// Generated by " + JacksonCodecGenerator.class.getName() + ". DO NOT EDIT!");
+    line("// source: " + descriptor.getFile().getName());
+    line("");
+    if (!javaPackage.isEmpty()) {
+      line("package " + javaPackage + ";");
+      line("");
+    }
+    line("import java.io.IOException;");
+    line("");
+    line("import com.fasterxml.jackson.annotation.JsonInclude.Include;");
+    line("import com.fasterxml.jackson.core.JsonGenerator;");
+    line("import com.fasterxml.jackson.core.JsonParser;");
+    line("import com.fasterxml.jackson.core.JsonToken;");
+    line("import com.fasterxml.jackson.core.io.SerializedString;");
+    line("import com.fasterxml.jackson.databind.DeserializationContext;");
+    line("import com.fasterxml.jackson.databind.SerializerProvider;");
+    line("import com.google.protobuf.Descriptors.FieldDescriptor;");
+    line("");
+    line("import org.group.jcommon.protobuf.jackson.GeneratedJacksonCodec;");
+    line("import org.group.jcommon.protobuf.jackson.GeneratedMessageDeserializer;");
+    line("import org.group.jcommon.protobuf.jackson.GeneratedMessageSerializer;");
+    line("import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;");
+    line("");
+    open("public final class " + codecName + " implements GeneratedJacksonCodec<" + messageType + ">");
+    writeConstants();
+    line("");
+    line("@Override");
+    open("public Serializer newSerializer(ProtobufJacksonConfig config)");
+    line("return new Serializer(config);");
+    close();
+    line("");
+    line("@Override");
+    open("public Deserializer newDeserializer(ProtobufJacksonConfig config)");
+    line("return new Deserializer(config);");
+    close();
+    line("");
+    writeSerializer();
+    line("");
+    writeDeserializer();
+    close();
+    return source.toString();
+  }
+
+  private void writeConstants() {
+    // named after the field numbers: names may clash once upper-cased or suffixed
+    for (FieldDescriptor field : descriptor.getFields()) {
+      line("// " + field.getName());
+      line("private static final FieldDescriptor " + fieldConstant(field) + " = " + messageType
+          + ".getDescriptor().getFields().get(" + field.getIndex() + ");");
+      if (field.isMapField()) {
+        line("private static final FieldDescriptor " + mapValueConstant(field) + " = " + fieldConstant(field)
+            + ".getMessageType().findFieldByName(\"value\");");
+      }
+      line("private static final SerializedString " + nameConstant(field) + " = new SerializedString(\""
+          + jsonName(field) + "\");");
+    }
+  }
+
+  private void writeSerializer() {
+    open("public static final class Serializer extends GeneratedMessageSerializer<" + messageType + ">");
+    line("private static final long serialVersionUID = 1L;");
+    line("");
+    open("Serializer(ProtobufJacksonConfig config)");
+    line("super(" + messageType + ".class, config);");
+    close();
+    line("");
+    line("@Override");
+    line("protected void writeFields(" + messageType + " message, JsonGenerator generator,");
+    open("    SerializerProvider serializerProvider, Include include) throws IOException");
+    writeSerializerLocals();
+    for (FieldDescriptor field : descriptor.getFields()) {
+      if (field.isMapField()) {
+        writeMapField(field);
+      } else if (field.isRepeated()) {
+        writeRepeatedField(field);
+      } else {
+        writeSingularField(field);
+      }
+    }
+    close();
+    close();
+  }
+
+  private void writeSerializerLocals() {
+    boolean defaultValues = false;
+    boolean nulls = false;
+    boolean emptyCollections = false;
+    boolean unwrap = false;
+    for (FieldDescriptor field : descriptor.getFields()) {
+      if (field.isRepeated()) {
+        emptyCollections = true;
+        unwrap |= !field.isMapField();
+      } else if (field.getContainingOneof() == null) {
+        if (writesDefaultValue(field)) {
+          defaultValues = true;
+        } else {
+          nulls = true;
+        }
+      }
+    }
+
+    if (defaultValues) {
+      line("final boolean writeDefaultValues = writeDefaultValues(include);");
+    }
+    if (nulls) {
+      line("final boolean writeNulls = writeNulls(include);");
+    }
+    if (emptyCollections) {
+      line("final boolean writeEmptyCollections = writeEmptyCollections(include);");
+    }
+    if (unwrap) {
+      line("final boolean unwrapSingleElementArrays = writeSingleElementArraysUnwrapped(serializerProvider);");
+    }
+  }
+
+  private void writeSingularField(FieldDescriptor field) {
+    String accessor = ProtobufJavaNames.accessorName(field);
+    if (field.getContainingOneof() == null && writesDefaultValue(field)) {
+      // a null would never be written: ALWAYS also writes default values
+      open("if (message.has" + accessor + "() || writeDefaultValues)");
+    } else {
+      open("if (" + hasExpression(field, accessor) + ")");
+    }
+    line("generator.writeFieldName(" + nameConstant(field) + ");");
+    line(writeStatement(field, "message.get" + accessor + "()", "message.get" + accessor + "Value()",
+        "message.get" + accessor + "Bytes()"));
+    if (field.getContainingOneof() == null && !writesDefaultValue(field)) {
+      elseIf("writeNulls");
+      line("generator.writeFieldName(" + nameConstant(field) + ");");
+      line("generator.writeNull();");
+    }
+    close();
+  }
+
+  private void writeRepeatedField(FieldDescriptor field) {
+    String accessor = ProtobufJavaNames.accessorName(field);
+    open("if (message.get" + accessor + "Count() > 0 || writeEmptyCollections)");
+    line("generator.writeFieldName(" + nameConstant(field) + ");");
+    open("if (message.get" + accessor + "Count() == 1 && unwrapSingleElementArrays)");
+    line(writeStatement(field, "message.get" + accessor + "(0)", "message.get" + accessor + "Value(0)",
+        "message.get" + accessor + "Bytes(0)"));
+    elseIf(null);
+    line("generator.writeStartArray();");
+    open("for (int i = 0, n = message.get" + accessor + "Count(); i < n; i++)");
+    line(writeStatement(field, "message.get" + accessor + "(i)", "message.get" + accessor + "Value(i)",
+        "message.get" + accessor + "Bytes(i)"));
+    close();
+    line("generator.writeEndArray();");
+    close();
+    close();
+  }
+
+  private void writeMapField(FieldDescriptor field) {
+    String accessor = ProtobufJavaNames.accessorName(field);
+    FieldDescriptor valueField = field.getMessageType().findFieldByName("value");
+    boolean openEnum = valueField.getJavaType() == JavaType.ENUM && proto3;
+
+    open("if (message.get" + accessor + "Count() > 0 || writeEmptyCollections)");
+    line("generator.writeFieldName(" + nameConstant(field) + ");");
+    if (valueField.getJavaType() != JavaType.ENUM) {
+      line("writeMap(" + fieldConstant(field) + ", message.get" + accessor + "Map(), generator, serializerProvider);");
+      close();
+      return;
+    }
+
+    line("generator.writeStartObject();");
+    open("for (java.util.Map.Entry<?, ?> entry : orderedMap(message.get" + accessor
+        + (openEnum ? "ValueMap" : "Map") + "(), serializerProvider).entrySet())");
+    FieldDescriptor keyField = field.getMessageType().findFieldByName("key");
+    line("writeMapKey(entry.getKey(), " + isUnsigned(keyField) + ", generator);");
+    final String value;
+    if (openEnum) {
+      value = "enumValue(" + mapValueConstant(field) + ", (Integer) entry.getValue())";
+    } else {
+      value = "((com.google.protobuf.ProtocolMessageEnum) entry.getValue()).getValueDescriptor()";
+    }
+    line("writeValue(" + mapValueConstant(field) + ", " + value + ", generator, serializerProvider);");
+    close();
+    line("generator.writeEndObject();");
+    close();
+  }
+
+  private String hasExpression(FieldDescriptor field, String accessor) {
+    if (field.getContainingOneof() != null) {
+      String oneof = ProtobufJavaNames.capitalizedCamelName(field.getContainingOneof().getName());
+      return "message.get" + oneof + "Case().getNumber() == " + field.getNumber();
+    }
+    if (!proto3 || field.getJavaType() == JavaType.MESSAGE) {
+      return "message.has" + accessor + "()";
+    }
+
+    String value = "message.get" + accessor + "()";
+    switch (field.getJavaType()) {
+      case INT:
+        return value + " != 0";
+      case LONG:
+        return value + " != 0L";
+      case FLOAT:
+        return "Float.floatToIntBits(" + value + ") != 0";
+      case DOUBLE:
+        return "Double.doubleToLongBits(" + value + ") != 0L";
+      case BOOLEAN:
+        return value;
+      case ENUM:
+        return "message.get" + accessor + "Value() != 0";
+      default:
+        return "!" + value + ".isEmpty()";
+    }
+  }
+
+  private String writeStatement(FieldDescriptor field, String value, String enumNumber, String utf8) {
+    String constant = fieldConstant(field);
+    switch (field.getJavaType()) {
+      case INT:
+        return "writeInt(" + constant + ", " + value + ", generator, serializerProvider);";
+      case LONG:
+        return "writeLong(" + constant + ", " + value + ", generator, serializerProvider);";
+      case FLOAT:
+        return "writeFloat(" + constant + ", " + value + ", generator, serializerProvider);";
+      case DOUBLE:
+        return "writeDouble(" + constant + ", " + value + ", generator, serializerProvider);";
+      case BOOLEAN:
+        return "generator.writeBoolean(" + value + ");";
+      case STRING:
+        // proto2 strings are kept as parsed, in UTF-8
+        return proto3 ? "generator.writeString(" + value + ");" : "writeString(" + utf8 + ", generator);";
+      case ENUM:
+        String enumValue = proto3 ? "enumValue(" + constant + ", " + enumNumber + ")"
+            : value + ".getValueDescriptor()";
+        return "writeValue(" + constant + ", " + enumValue + ", generator, serializerProvider);";
+      default:
+        return "writeValue(" + constant + ", " + value + ", generator, serializerProvider);";
+    }
+  }
+
+  private void writeDeserializer() {
+    open("public static final class Deserializer extends GeneratedMessageDeserializer<" + messageType + ", "
+        + builderType + ">");
+    line("private static final long serialVersionUID = 1L;");
+    line("");
+    open("Deserializer(ProtobufJacksonConfig config)");
+    line("super(" + messageType + ".class, config);");
+    close();
+    line("");
+
+    Map<String, FieldDescriptor> jsonNames = new LinkedHashMap<>();
+    for (FieldDescriptor field : descriptor.getFields()) {
+      jsonNames.put(jsonName(field), field);
+    }
+    writeReadMethod("readField", jsonNames);
+
+    // literal names only apply when they do not shadow a JSON name
+    Map<String, FieldDescriptor> literalNames = new LinkedHashMap<>();
+    for (FieldDescriptor field : descriptor.getFields()) {
+      if (!jsonNames.containsKey(field.getName())) {
+        literalNames.put(field.getName(), field);
+      }
+    }
+    if (!literalNames.isEmpty()) {
+      line("");
+      writeReadMethod("readLiteralField", literalNames);
+    }
+    close();
+  }
+
+  private void writeReadMethod(String methodName, Map<String, FieldDescriptor> names) {
+    line("@Override");
+    line("protected boolean " + methodName + "(" + builderType + " builder, String name, JsonParser parser,");
+    open("    DeserializationContext context) throws IOException");
+    if (names.isEmpty()) {
+      line("return false;");
+      close();
+      return;
+    }
+
+    open("switch (name)");
+    for (Map.Entry<String, FieldDescriptor> entry : names.entrySet()) {
+      FieldDescriptor field = entry.getValue();
+      line("case \"" + entry.getKey() + "\":");
+      indent++;
+      line("parser.nextToken();");
+      for (String statement : readStatements(field)) {
+        line(statement);
+      }
+      line("return true;");
+      indent--;
+    }
+    line("default:");
+    indent++;
+    line("return false;");
+    indent--;
+    close();
+    close();
+  }
+
+  private List<String> readStatements(FieldDescriptor field) {
+    List<String> statements = new ArrayList<>();
+    String reflective = "setField(builder, " + fieldConstant(field) + ", null, parser, context);";
+    String accessor = ProtobufJavaNames.accessorName(field);
+    String parse = parseExpression(field);
+    if (parse == null || field.isMapField()) {
+      statements.add(reflective);
+      return statements;
+    }
+
+    String check = field.getJavaType() == JavaType.STRING ? "parser.getCurrentToken() == JsonToken.VALUE_STRING"
+        : "isScalarToken(parser)";
+    if (field.isRepeated()) {
+      statements.add("if (parser.getCurrentToken() == JsonToken.START_ARRAY) {");
+      statements.add("  while (parser.nextToken() != JsonToken.END_ARRAY) {");
+      statements.add("    if (" + check + ") {");
+      statements.add("      builder.add" + accessor + "(" + parse + ");");
+      statements.add("    } else {");
+      statements.add("      addRepeatedValue(builder, " + fieldConstant(field) + ", parser, context);");
+      statements.add("    }");
+      statements.add("  }");
+    } else {
+      statements.add("if (" + check + ") {");
+      statements.add("  builder.set" + accessor + "(" + parse + ");");
+    }
+    statements.add("} else {");
+    statements.add("  " + reflective);
+    statements.add("}");
+    return statements;
+  }
+
+  private static String parseExpression(FieldDescriptor field) {
+    switch (field.getJavaType()) {
+      case INT:
+        return isUnsigned(field) ? "parseInt(" + fieldConstant(field) + ", parser, context)"
+            : "_parseIntPrimitive(parser, context)";
+      case LONG:
+        return isUnsigned(field) ? "parseLong(" + fieldConstant(field) + ", parser, context)"
+            : "_parseLongPrimitive(parser, context)";
+      case FLOAT:
+        return "parseFloat(parser, context)";
+      case DOUBLE:
+        return "parseDouble(parser, context)";
+      case BOOLEAN:
+        return "_parseBooleanPrimitive(parser, context)";
+      case STRING:
+        return "parser.getText()";
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isUnsigned(FieldDescriptor field) {
+    switch (field.getType()) {
+      case UINT32:
+      case FIXED32:
+      case UINT64:
+      case FIXED64:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private boolean writesDefaultValue(FieldDescriptor field) {
+    // messages still support field presence in proto3
+    return !proto3 && field.getJavaType() != JavaType.MESSAGE;
+  }
+
+  private static String jsonName(FieldDescriptor field) {
+    return JSON_NAMES.translate(field.getName());
+  }
+
+  private static String fieldConstant(FieldDescriptor field) {
+    return "FIELD_" + field.getNumber();
+  }
+
+  private static String mapValueConstant(FieldDescriptor field) {
+    return "FIELD_" + field.getNumber() + "_VALUE";
+  }
+
+  private static String nameConstant(FieldDescriptor field) {
+    return "FIELD_" + field.getNumber() + "_NAME";
+  }
+
+  private void open(String declaration) {
+    line(declaration + " {");
+    indent++;
+  }
+
+  private void elseIf(String condition) {
+    indent--;
+    line(condition == null ? "} else {" : "} else if (" + condition + ") {");
+    indent++;
+  }
+
+  private void close() {
+    indent--;
+    line("}");
+  }
+
+  private void line(String text) {
+    if (!text.isEmpty()) {
+      for (int i = 0; i < indent; i++) {
+        source.append("  ");
+      }
+      source.append(text);
+    }
+    source.append('\n');
+  }
+}
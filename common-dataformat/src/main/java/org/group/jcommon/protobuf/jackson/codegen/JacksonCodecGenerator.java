@@ -0,0 +1,158 @@
+package org.group.jcommon.protobuf.jackson.codegen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.DescriptorProtos.FileOptions.OptimizeMode;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor.Type;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorRequest;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorResponse;
+
+import org.group.jcommon.protobuf.jackson.ProtobufJavaNames;
+
+/**
+ * Generates a {@link org.group.jcommon.protobuf.jackson.GeneratedJacksonCodec}
+ * per message type, next to the classes generated by protoc's Java plugin.
+ *
+ * Runs as a protoc plugin, reading a {@code CodeGeneratorRequest} from stdin
+ * when started without arguments (e.g. as a {@code protocPlugin} of the
+ * protobuf-maven-plugin), or on a descriptor set written with
+ * {@code --descriptor_set_out --include_imports}:
+ *
+ * <pre>
+ * JacksonCodecGenerator &lt;descriptor set&gt; &lt;output directory&gt;
+ * </pre>
+ *
+ * No codec is generated for the well-known types, which have dedicated
+ * serializers, nor for message types the codecs do not cover (extendable
+ * messages, groups, lite messages and accessor names protoc may have changed);
+ * those keep using the reflective path.
+ */
+public final class JacksonCodecGenerator {
+  private static final String WELL_KNOWN_TYPES_PACKAGE = "google.protobuf";
+
+  private JacksonCodecGenerator() {
+  }
+
+  public static void main(String[] args) throws IOException, DescriptorValidationException {
+    if (args.length == 0) {
+      CodeGeneratorRequest request = CodeGeneratorRequest.parseFrom(System.in);
+      generate(request).writeTo(System.out);
+      System.out.flush();
+    } else if (args.length == 2) {
+      generate(Paths.get(args[0]), Paths.get(args[1]));
+    } else {
+      System.err.println("usage: " + JacksonCodecGenerator.class.getName()
+          + " [<descriptor set> <output directory>]");
+      System.exit(1);
+    }
+  }
+
+  public static CodeGeneratorResponse generate(CodeGeneratorRequest request) {
+    CodeGeneratorResponse.Builder response = CodeGeneratorResponse.newBuilder();
+    try {
+      Map<String, FileDescriptor> files = buildFiles(request.getProtoFileList());
+      for (String fileName : request.getFileToGenerateList()) {
+        for (Map.Entry<String, String> source : generate(files.get(fileName)).entrySet()) {
+          response.addFile(CodeGeneratorResponse.File.newBuilder()
+              .setName(source.getKey())
+              .setContent(source.getValue()));
+        }
+      }
+    } catch (DescriptorValidationException e) {
+      response.setError(e.getMessage());
+    }
+    return response.build();
+  }
+
+  /**
+   * Writes the codecs of every file in {@code descriptorSet} under
+   * {@code outputDirectory}.
+   */
+  public static void generate(Path descriptorSet, Path outputDirectory)
+      throws IOException, DescriptorValidationException {
+    final FileDescriptorSet fileSet;
+    try (InputStream in = Files.newInputStream(descriptorSet)) {
+      fileSet = FileDescriptorSet.parseFrom(in);
+    }
+
+    for (FileDescriptor file : buildFiles(fileSet.getFileList()).values()) {
+      for (Map.Entry<String, String> source : generate(file).entrySet()) {
+        Path path = outputDirectory.resolve(source.getKey());
+        Files.createDirectories(path.getParent());
+        Files.write(path, source.getValue().getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  /**
+   * Returns the sources of the codecs of {@code file}, by file name.
+   */
+  public static Map<String, String> generate(FileDescriptor file) {
+    Map<String, String> sources = new LinkedHashMap<>();
+    if (WELL_KNOWN_TYPES_PACKAGE.equals(file.getPackage())
+        || file.getOptions().getOptimizeFor() == OptimizeMode.LITE_RUNTIME) {
+      return sources;
+    }
+
+    List<Descriptor> messageTypes = new ArrayList<>(file.getMessageTypes());
+    for (int i = 0; i < messageTypes.size(); i++) {
+      Descriptor messageType = messageTypes.get(i);
+      messageTypes.addAll(messageType.getNestedTypes());
+      if (isSupported(messageType)) {
+        CodecWriter writer = new CodecWriter(messageType);
+        sources.put(writer.fileName(), writer.write());
+      }
+    }
+    return sources;
+  }
+
+  private static boolean isSupported(Descriptor messageType) {
+    if (messageType.getOptions().getMapEntry() || messageType.isExtendable()) {
+      return false;
+    }
+
+    for (FieldDescriptor field : messageType.getFields()) {
+      if (field.getType() == Type.GROUP || ProtobufJavaNames.accessorName(field) == null) {
+        return false;
+      }
+      // proto3 optional fields are in a synthetic oneof, which has no case accessor
+      if (field.toProto().getProto3Optional()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Map<String, FileDescriptor> buildFiles(List<FileDescriptorProto> protos)
+      throws DescriptorValidationException {
+    // protoc lists files after their dependencies
+    Map<String, FileDescriptor> files = new LinkedHashMap<>();
+    for (FileDescriptorProto proto : protos) {
+      FileDescriptor[] dependencies = new FileDescriptor[proto.getDependencyCount()];
+      for (int i = 0; i < dependencies.length; i++) {
+        dependencies[i] = files.get(proto.getDependency(i));
+        if (dependencies[i] == null) {
+          throw new IllegalArgumentException("Missing dependency " + proto.getDependency(i) + " of "
+              + proto.getName());
+        }
+      }
+      files.put(proto.getName(), FileDescriptor.buildFrom(proto, dependencies));
+    }
+    return files;
+  }
+}
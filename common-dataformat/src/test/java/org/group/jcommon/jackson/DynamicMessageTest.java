@@ -0,0 +1,88 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Duration;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.Value;
+
+import org.group.jcommon.proto.text.Level;
+import org.group.jcommon.proto.text.Sample;
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.proto.text.TextBullet;
+import org.group.jcommon.proto.text.TextProtos;
+import org.group.jcommon.protobuf.jackson.DynamicMessages;
+import org.group.jcommon.protobuf.jackson.DynamicSchemaRegistry;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class DynamicMessageTest {
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new ProtobufModule());
+
+    private final Sample sample = Sample.newBuilder()
+            .setId(42L)
+            .setPayload(ByteString.copyFromUtf8("payload"))
+            .setLevel(Level.HIGH)
+            .addHistory(Level.LOW)
+            .setBullet(TextBullet.newBuilder().setText("FIRST_USE").setHighlight(true))
+            .putSeries(7, Series.newBuilder().setName("cpu").addPoints(0.5).putLabels("a", "b").build())
+            .setCreated(Timestamp.newBuilder().setSeconds(1500000000L).setNanos(500000000))
+            .setTtl(Duration.newBuilder().setSeconds(90L))
+            .setAttributes(Struct.newBuilder().putFields("name", Value.newBuilder().setStringValue("x").build()))
+            .setLimit(Int64Value.newBuilder().setValue(5L))
+            .setUrl("https://example.com")
+            .build();
+
+    private static FileDescriptorSet fileDescriptorSet() {
+        return FileDescriptorSet.newBuilder().addFile(TextProtos.getDescriptor().toProto()).build();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        DynamicSchemaRegistry registry = new DynamicSchemaRegistry();
+        registry.register(fileDescriptorSet());
+        Descriptor descriptor = registry.find(Sample.getDescriptor().getFullName());
+        assertNotSame(Sample.getDescriptor(), descriptor);
+
+        DynamicMessage dynamic = DynamicMessage.parseFrom(descriptor, sample.toByteString());
+        String json = mapper.writeValueAsString(dynamic);
+        assertEquals(mapper.writeValueAsString(sample), json);
+
+        DynamicMessage read = registry.reader(mapper, descriptor.getFullName()).readValue(json);
+        assertEquals(dynamic, read);
+        assertEquals(sample, Sample.parseFrom(read.toByteString()));
+    }
+
+    @Test
+    public void testWellKnownType() throws Exception {
+        Timestamp timestamp = Timestamp.newBuilder().setSeconds(1500000000L).build();
+        DynamicMessage dynamic = DynamicMessages.toDynamic(timestamp, Timestamp.getDescriptor());
+        String json = mapper.writeValueAsString(dynamic);
+        assertEquals(mapper.writeValueAsString(timestamp), json);
+        assertEquals(dynamic, DynamicMessages.reader(mapper, Timestamp.getDescriptor()).readValue(json));
+    }
+
+    @Test
+    public void testRegisterReplaces() throws Exception {
+        DynamicSchemaRegistry registry = new DynamicSchemaRegistry();
+        registry.register(fileDescriptorSet());
+        Descriptor first = registry.find(Series.getDescriptor().getFullName());
+        registry.register(fileDescriptorSet());
+        assertNotSame(first, registry.find(Series.getDescriptor().getFullName()));
+
+        assertThrows(IllegalArgumentException.class, () -> registry.reader(mapper, "common.text.Missing"));
+        assertThrows(MismatchedInputException.class, () -> mapper.readerFor(DynamicMessage.class).readValue("{}"));
+    }
+}
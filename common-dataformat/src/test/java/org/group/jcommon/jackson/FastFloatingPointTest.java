@@ -0,0 +1,98 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.DoubleValue;
+import com.google.protobuf.FloatValue;
+import com.google.protobuf.Value;
+
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class FastFloatingPointTest {
+    private final ObjectMapper standard = new ObjectMapper().registerModule(new ProtobufModule());
+    private final ObjectMapper fast = new ObjectMapper().registerModule(new ProtobufModule(
+            ProtobufJacksonConfig.builder().fastFloatingPoint(true).shortestDecimalOutput(true).build()));
+
+    @Test
+    public void testSameValuesAsStandardPath() throws Exception {
+        Random random = new Random(42);
+        Series.Builder builder = Series.newBuilder().addPoints(0.1).addPoints(-0.0).addPoints(1e23)
+                .addPoints(Double.MIN_VALUE).addPoints(Double.MAX_VALUE).addPoints(2.2250738585072014E-308);
+        while (builder.getPointsCount() < 1000) {
+            double point = Double.longBitsToDouble(random.nextLong());
+            if (Double.isFinite(point)) {
+                builder.addPoints(point);
+            }
+        }
+        Series series = builder.build();
+
+        String json = fast.writeValueAsString(series);
+        assertEquals(series, fast.readValue(json, Series.class));
+        assertEquals(series, standard.readValue(json, Series.class));
+        assertEquals(series, fast.readValue(standard.writeValueAsString(series), Series.class));
+    }
+
+    @Test
+    public void testSameTextAsStandardPath() throws Exception {
+        // Double.toString is the shortest decimal since JDK 19 only
+        boolean shortestToString = !System.getProperty("java.specification.version").startsWith("1.")
+                && Integer.parseInt(System.getProperty("java.specification.version")) >= 19;
+        Random random = new Random(42);
+        double[] edges = { 0.0, -0.0, 0.1, 0.3, 1.0, 2e-3, 1e-3, 9.999999999999999e-4, 1e7, 9999999.999999998, 1e23,
+                2.82879384806159E17, Double.MIN_VALUE, Double.MIN_NORMAL, 2.2250738585072014E-308, Double.MAX_VALUE,
+                Float.MIN_VALUE, Float.MIN_NORMAL, Float.MAX_VALUE, 1.0E-5f, 3.4e38f };
+        for (int i = 0; i < 20000; i++) {
+            double value;
+            if (i < edges.length) {
+                value = edges[i];
+            } else if (i % 2 == 0) {
+                value = Double.longBitsToDouble(random.nextLong());
+            } else {
+                value = random.nextDouble() * Math.pow(10, random.nextInt(20) - 10);
+            }
+            if (!Double.isFinite(value)) {
+                continue;
+            }
+
+            DoubleValue doubleValue = DoubleValue.newBuilder().setValue(value).build();
+            assertSameText(standard.writeValueAsString(doubleValue), fast.writeValueAsString(doubleValue), false,
+                    shortestToString);
+            FloatValue floatValue = FloatValue.newBuilder().setValue(i % 2 == 0 ? (float) value
+                    : Float.intBitsToFloat(random.nextInt())).build();
+            if (Float.isFinite(floatValue.getValue())) {
+                assertSameText(standard.writeValueAsString(floatValue), fast.writeValueAsString(floatValue), true,
+                        shortestToString);
+            }
+        }
+    }
+
+    private static void assertSameText(String expected, String actual, boolean isFloat, boolean shortestToString) {
+        if (shortestToString) {
+            assertEquals(expected, actual);
+        } else {
+            // older JDKs sometimes write more digits, of the same value
+            if (isFloat) {
+                assertEquals(Float.parseFloat(expected), Float.parseFloat(actual), 0.0f, expected);
+            } else {
+                assertEquals(Double.parseDouble(expected), Double.parseDouble(actual), 0.0, expected);
+            }
+            assertTrue(actual.length() <= expected.length(), expected + " " + actual);
+        }
+    }
+
+    @Test
+    public void testShortestDecimalWritten() throws Exception {
+        assertEquals("2.0E-4", fast.writeValueAsString(DoubleValue.newBuilder().setValue(2e-4).build()));
+        assertEquals("0.3", fast.writeValueAsString(Value.newBuilder().setNumberValue(0.3).build()));
+        assertEquals(1e-7, fast.readValue("1e-7", Value.class).getNumberValue(), 0.0);
+    }
+}
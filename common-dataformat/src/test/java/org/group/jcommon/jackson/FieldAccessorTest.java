@@ -0,0 +1,46 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.group.jcommon.proto.text.TextBullet;
+import org.group.jcommon.protobuf.jackson.FieldAccessor;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class FieldAccessorTest {
+    // generated codecs are disabled so both mappers go through MessageSerializer/MessageDeserializer
+    private final ObjectMapper reflective = new ObjectMapper()
+            .registerModule(new ProtobufModule(ProtobufJacksonConfig.builder().generatedCodecs(false).build()));
+    private final ObjectMapper generated = new ObjectMapper().registerModule(new ProtobufModule(
+            ProtobufJacksonConfig.builder().generatedCodecs(false).generatedAccessors(true).build()));
+
+    @Test
+    public void testAccessorsResolved() {
+        FieldAccessor[] accessors = FieldAccessor.accessorsFor(TextBullet.class);
+        assertNotNull(accessors);
+        assertEquals(TextBullet.getDescriptor().getFields().size(), accessors.length);
+        for (FieldAccessor accessor : accessors) {
+            assertNotNull(accessor);
+        }
+
+        assertNull(FieldAccessor.accessorsFor(String.class));
+    }
+
+    @Test
+    public void testSameOutputAsReflectivePath() throws Exception {
+        TextBullet bullet = TextBullet.newBuilder().setText("hello").setHighlight(true).build();
+        String json = reflective.writeValueAsString(bullet);
+        assertEquals(json, generated.writeValueAsString(bullet));
+        assertEquals(json, generated.writeValueAsString(bullet.toBuilder()));
+
+        assertEquals(bullet, generated.readValue(json, TextBullet.class));
+        assertEquals(TextBullet.getDefaultInstance(), generated.readValue("{\"text\":null}", TextBullet.class));
+    }
+}
@@ -0,0 +1,164 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.Message;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.Value;
+
+import org.group.jcommon.proto.legacy.NameClash;
+import org.group.jcommon.proto.legacy.Priority;
+import org.group.jcommon.proto.legacy.Record;
+import org.group.jcommon.proto.text.Level;
+import org.group.jcommon.proto.text.Sample;
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.proto.text.TextBullet;
+import org.group.jcommon.protobuf.jackson.FieldMaskProjection;
+import org.group.jcommon.protobuf.jackson.GeneratedMessageSerializer;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class GeneratedCodecTest {
+    private static final Include[] INCLUSIONS = { Include.NON_NULL, Include.NON_DEFAULT, Include.NON_EMPTY,
+            Include.ALWAYS };
+
+    private final ObjectMapper generated = new ObjectMapper().registerModule(new ProtobufModule());
+    private final ObjectMapper reflective = new ObjectMapper()
+            .registerModule(new ProtobufModule(ProtobufJacksonConfig.builder().generatedCodecs(false).build()));
+
+    @Test
+    public void testGeneratedCodecUsed() throws Exception {
+        assertTrue(generated.getSerializerProviderInstance()
+                .findValueSerializer(TextBullet.class) instanceof GeneratedMessageSerializer);
+        assertTrue(generated.getSerializerProviderInstance()
+                .findValueSerializer(Record.class) instanceof GeneratedMessageSerializer);
+    }
+
+    @Test
+    public void testSameOutputAsReflectivePath() throws Exception {
+        TextBullet bullet = TextBullet.newBuilder().setText("hello").setHighlight(true).setHighlightColor("red").build();
+        String json = reflective.writeValueAsString(bullet);
+        assertEquals(json, generated.writeValueAsString(bullet));
+        assertEquals(bullet, generated.readValue(json, TextBullet.class));
+
+        generated.setSerializationInclusion(Include.ALWAYS);
+        reflective.setSerializationInclusion(Include.ALWAYS);
+        assertEquals(reflective.writeValueAsString(bullet), generated.writeValueAsString(bullet));
+    }
+
+    @Test
+    public void testSameOutputUnderEveryInclusion() throws Exception {
+        Sample sample = Sample.newBuilder()
+                .setId(-42L)
+                .setChecksum(-1L)
+                .setFlags(-1)
+                .setRatio(-0.0f)
+                .setPayload(ByteString.copyFromUtf8("payload"))
+                .setLevel(Level.HIGH)
+                .addHistory(Level.LOW)
+                .addHistory(Level.HIGH)
+                .setBullet(TextBullet.newBuilder().setText("FIRST_USE"))
+                .putSeries(7, Series.newBuilder().setName("cpu").addPoints(0.5).putLabels("a", "b").build())
+                .setCreated(Timestamp.newBuilder().setSeconds(1500000000L))
+                .setAttributes(Struct.newBuilder().putFields("name", Value.newBuilder().setStringValue("x").build()))
+                .setLimit(Int64Value.newBuilder().setValue(5L))
+                .setSlot(0)
+                .build();
+        for (Include include : INCLUSIONS) {
+            generated.setSerializationInclusion(include);
+            reflective.setSerializationInclusion(include);
+            assertSameOutput(sample);
+            assertSameOutput(Sample.getDefaultInstance());
+            assertSameOutput(Series.newBuilder().setName("empty").build());
+            assertSameOutput(TextBullet.getDefaultInstance());
+        }
+    }
+
+    @Test
+    public void testSameOutputWithSingleElementArraysUnwrapped() throws Exception {
+        generated.enable(SerializationFeature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED);
+        reflective.enable(SerializationFeature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED);
+        assertSameOutput(Series.newBuilder().addPoints(0.5).addTimestamps(1L).addTimestamps(2L).putLabels("a", "b")
+                .build());
+        assertSameOutput(Sample.newBuilder().addHistory(Level.LOW).build());
+        assertSameOutput(Record.newBuilder().addTags("one").build());
+    }
+
+    @Test
+    public void testSameOutputForUnknownEnumValues() throws Exception {
+        // proto3 enums are open, unknown numbers are kept
+        Sample sample = Sample.newBuilder().setLevelValue(7).addHistoryValue(1).addHistoryValue(8).build();
+        assertSameOutput(sample);
+        generated.enable(SerializationFeature.WRITE_ENUMS_USING_INDEX);
+        reflective.enable(SerializationFeature.WRITE_ENUMS_USING_INDEX);
+        assertSameOutput(sample);
+    }
+
+    @Test
+    public void testSameOutputForProto2Fields() throws Exception {
+        Record record = Record.newBuilder()
+                .setName("caf\u00e9 \u6f22\u5b57 \"quoted\"\n")
+                .setPriority(Priority.URGENT)
+                .addTags("a")
+                .addTags("\ud83d\ude00")
+                .setParent(Record.newBuilder().setName("").setCount(0))
+                .setPayload(ByteString.copyFromUtf8("payload"))
+                .build();
+        for (Include include : INCLUSIONS) {
+            generated.setSerializationInclusion(include);
+            reflective.setSerializationInclusion(include);
+            assertSameOutput(record);
+            assertSameOutput(Record.getDefaultInstance());
+        }
+        // unset proto2 fields are only left out under NON_DEFAULT
+        generated.setSerializationInclusion(Include.NON_DEFAULT);
+        assertEquals(record, generated.readValue(generated.writeValueAsBytes(record), Record.class));
+    }
+
+    @Test
+    public void testClashingFieldNames() throws Exception {
+        NameClash nameClash = NameClash.newBuilder().putLabels("a", "b").setLabelsValue("c").build();
+        assertSameOutput(nameClash);
+        assertEquals(nameClash, generated.readValue(reflective.writeValueAsString(nameClash), NameClash.class));
+    }
+
+    private void assertSameOutput(Message message) throws Exception {
+        // strings are written from their UTF-8 bytes to byte output only
+        assertEquals(reflective.writeValueAsString(message), generated.writeValueAsString(message));
+        assertEquals(new String(reflective.writeValueAsBytes(message), StandardCharsets.UTF_8),
+                new String(generated.writeValueAsBytes(message), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testProjectionFallsBack() throws Exception {
+        TextBullet bullet = TextBullet.newBuilder().setText("hello").setHighlight(true).build();
+        FieldMask fieldMask = FieldMask.newBuilder().addPaths("text").addPaths("color").build();
+        assertEquals("{\"text\":\"hello\"}",
+                FieldMaskProjection.writer(generated, fieldMask).writeValueAsString(bullet));
+        assertEquals(reflective.writeValueAsString(bullet), generated.writeValueAsString(bullet));
+    }
+
+    @Test
+    public void testOtherNamingStrategyFallsBack() throws Exception {
+        ObjectMapper snakeCase = new ObjectMapper().registerModule(new ProtobufModule())
+                .setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
+        TextBullet bullet = TextBullet.newBuilder().setHighlightColor("red").build();
+        String json = snakeCase.writeValueAsString(bullet);
+        assertEquals("{\"highlight_color\":\"red\"}", json);
+        assertEquals(bullet, snakeCase.readValue(json, TextBullet.class));
+    }
+}
@@ -0,0 +1,144 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.protobuf.jackson.FieldAccessor;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.group.jcommon.protobuf.jackson.buildin.deserializers.MessageDeserializer;
+import org.group.jcommon.protobuf.jackson.buildin.deserializers.StructDeserializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class MapFieldDeserializationTest {
+    private static final ProtobufJacksonConfig REFLECTIVE = ProtobufJacksonConfig.builder().generatedCodecs(false)
+            .build();
+    private static final ProtobufJacksonConfig ACCESSORS = ProtobufJacksonConfig.builder().generatedCodecs(false)
+            .generatedAccessors(true).build();
+
+    private final Series series = Series.newBuilder().setName("cpu").putLabels("host", "a").putLabels("zone", "b")
+            .build();
+    private final Struct struct = Struct.newBuilder().putFields("a", Value.newBuilder().setNumberValue(1).build())
+            .putFields("b", Value.newBuilder().setStructValue(Struct.newBuilder()
+                    .putFields("c", Value.newBuilder().setNullValueValue(0).build())).build())
+            .build();
+
+    @Test
+    public void testEntriesPutThroughAccessors() throws Exception {
+        List<String> paths = new ArrayList<>();
+        ObjectMapper accessors = recordingMapper(ACCESSORS, paths);
+        String json = accessors.writeValueAsString(series);
+        assertEquals(series, accessors.readValue(json, Series.class));
+        assertEquals(Collections.singletonList("labels: putLabels"), paths);
+
+        // the reflective path builds entry messages when accessors are off
+        paths.clear();
+        assertEquals(series, recordingMapper(REFLECTIVE, paths).readValue(json, Series.class));
+        assertEquals(Collections.singletonList("labels: addRepeatedField"), paths);
+    }
+
+    @Test
+    public void testStructFieldsPutThroughAccessors() throws Exception {
+        List<String> paths = new ArrayList<>();
+        ObjectMapper accessors = recordingMapper(ACCESSORS, paths);
+        String json = accessors.writeValueAsString(struct);
+        assertEquals(struct, accessors.readValue(json, Struct.class));
+        assertEquals(Arrays.asList("fields: putFields", "fields: putFields"), paths);
+
+        paths.clear();
+        assertEquals(struct, recordingMapper(REFLECTIVE, paths).readValue(json, Struct.class));
+        assertEquals(Arrays.asList("fields: addRepeatedField", "fields: addRepeatedField"), paths);
+    }
+
+    @Test
+    public void testAccessorsBoundToPutters() {
+        FieldDescriptor labels = Series.getDescriptor().findFieldByName("labels");
+        FieldAccessor accessor = FieldAccessor.accessorsFor(Series.Builder.class)[labels.getIndex()];
+        assertTrue(accessor.isMap());
+        Series.Builder builder = Series.newBuilder();
+        accessor.put(builder, "host", "a");
+        assertEquals(Collections.singletonMap("host", "a"), builder.getLabelsMap());
+        assertEquals(builder.getLabelsMap(), accessor.getMap(builder));
+    }
+
+    @Test
+    public void testSameEntriesOnEveryPath() throws Exception {
+        ObjectMapper generated = new ObjectMapper().registerModule(new ProtobufModule());
+        String json = generated.writeValueAsString(series);
+        for (ProtobufJacksonConfig config : Arrays.asList(REFLECTIVE, ACCESSORS)) {
+            ObjectMapper mapper = new ObjectMapper().registerModule(new ProtobufModule(config));
+            assertEquals(series, mapper.readValue(json, Series.class));
+            assertEquals(Series.getDefaultInstance(), mapper.readValue("{\"labels\":null}", Series.class));
+            assertEquals(struct, mapper.readValue(generated.writeValueAsString(struct), Struct.class));
+        }
+        assertEquals(series, generated.readValue(json, Series.class));
+    }
+
+    private static ObjectMapper recordingMapper(ProtobufJacksonConfig config, List<String> paths) {
+        return new ObjectMapper().registerModule(new ProtobufModule(config)).registerModule(new SimpleModule()
+                .addDeserializer(Series.class, new RecordingDeserializer(config, paths).buildAtEnd())
+                .addDeserializer(Struct.class, new RecordingStructDeserializer(config, paths).buildAtEnd()));
+    }
+
+    private static void record(List<String> paths, FieldDescriptor field, FieldAccessor accessor) {
+        String putter = field.getContainingType() == Struct.getDescriptor() ? "putFields" : "putLabels";
+        paths.add(field.getName() + ": " + (accessor != null ? putter : "addRepeatedField"));
+    }
+
+    /**
+     * Records whether map entries are put through their accessors.
+     */
+    private static final class RecordingDeserializer extends MessageDeserializer<Series, Series.Builder> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<String> paths;
+
+        RecordingDeserializer(ProtobufJacksonConfig config, List<String> paths) {
+            super(Series.class, config);
+            this.paths = paths;
+        }
+
+        @Override
+        protected void readMap(Message.Builder builder, FieldDescriptor field, FieldAccessor accessor,
+                JsonParser parser, DeserializationContext context) throws IOException {
+            record(paths, field, accessor);
+            super.readMap(builder, field, accessor, parser, context);
+        }
+    }
+
+    private static final class RecordingStructDeserializer extends StructDeserializer {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<String> paths;
+
+        RecordingStructDeserializer(ProtobufJacksonConfig config, List<String> paths) {
+            super(config);
+            this.paths = paths;
+        }
+
+        @Override
+        protected void readMap(Message.Builder builder, FieldDescriptor field, FieldAccessor accessor,
+                JsonParser parser, DeserializationContext context) throws IOException {
+            record(paths, field, accessor);
+            super.readMap(builder, field, accessor, parser, context);
+        }
+    }
+}
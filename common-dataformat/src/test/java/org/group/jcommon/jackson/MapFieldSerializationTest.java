@@ -0,0 +1,119 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.DynamicMessage;
+
+import org.group.jcommon.proto.text.Sample;
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.group.jcommon.protobuf.jackson.buildin.serializers.MessageSerializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class MapFieldSerializationTest {
+    // generated codecs are disabled so both mappers go through MessageSerializer
+    private final ObjectMapper reflective = new ObjectMapper().registerModule(new ProtobufModule(
+            ProtobufJacksonConfig.builder().generatedCodecs(false).build()))
+            .setSerializationInclusion(Include.NON_EMPTY);
+    private final ObjectMapper accessors = new ObjectMapper().registerModule(new ProtobufModule(
+            ProtobufJacksonConfig.builder().generatedCodecs(false).generatedAccessors(true).build()))
+            .setSerializationInclusion(Include.NON_EMPTY);
+    private final ObjectMapper generated = new ObjectMapper().registerModule(new ProtobufModule())
+            .setSerializationInclusion(Include.NON_EMPTY);
+
+    @Test
+    public void testWrittenFromMapStorage() throws Exception {
+        Series series = Series.newBuilder().putLabels("host", "a").build();
+        String json = "{\"labels\":{\"host\":\"a\"}}";
+
+        List<String> paths = new ArrayList<>();
+        ProtobufJacksonConfig config = ProtobufJacksonConfig.builder().generatedCodecs(false)
+                .generatedAccessors(true).build();
+        assertEquals(json, recordingMapper(config, paths).writeValueAsString(series));
+        assertEquals(Collections.singletonList("labels: getLabelsMap"), paths);
+
+        // entry messages, from the reflective API
+        paths.clear();
+        config = ProtobufJacksonConfig.builder().generatedCodecs(false).build();
+        assertEquals(json, recordingMapper(config, paths).writeValueAsString(series));
+        assertEquals(Collections.singletonList("labels: getField"), paths);
+    }
+
+    @Test
+    public void testKeysWrittenWithoutConversion() throws Exception {
+        Series a = Series.newBuilder().setName("a").build();
+        Sample sample = Sample.newBuilder().putSeries(0, a).putSeries(255, a).putSeries(256, a).putSeries(-1, a)
+                .build();
+        String json = "{\"series\":{\"0\":{\"name\":\"a\"},\"255\":{\"name\":\"a\"},\"256\":{\"name\":\"a\"},"
+                + "\"-1\":{\"name\":\"a\"}}}";
+        for (ObjectMapper mapper : Arrays.asList(reflective, accessors, generated)) {
+            assertEquals(json, mapper.writeValueAsString(sample));
+            assertEquals(json, mapper.writeValueAsString(DynamicMessage.newBuilder(sample).build()));
+            assertEquals(sample, mapper.readValue(json, Sample.class));
+        }
+    }
+
+    @Test
+    public void testEntriesOrderedByKeys() throws Exception {
+        Series series = Series.newBuilder().putLabels("zone", "b").putLabels("host", "a").build();
+        String expected = "{\"labels\":{\"host\":\"a\",\"zone\":\"b\"}}";
+        for (ObjectMapper mapper : Arrays.asList(reflective, accessors, generated)) {
+            ObjectMapper ordered = mapper.copy().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+            assertEquals(expected, ordered.writeValueAsString(series));
+            assertEquals(expected, ordered.writeValueAsString(DynamicMessage.newBuilder(series).build()));
+            assertEquals("{\"labels\":{\"zone\":\"b\",\"host\":\"a\"}}", mapper.writeValueAsString(series));
+        }
+    }
+
+    private static ObjectMapper recordingMapper(ProtobufJacksonConfig config, List<String> paths) {
+        return new ObjectMapper().registerModule(new ProtobufModule(config))
+                .registerModule(new SimpleModule().addSerializer(Series.class, new RecordingSerializer(config, paths)))
+                .setSerializationInclusion(Include.NON_EMPTY);
+    }
+
+    /**
+     * Records whether map fields are written from their map storage or from
+     * entry messages.
+     */
+    private static final class RecordingSerializer extends MessageSerializer {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<String> paths;
+
+        RecordingSerializer(ProtobufJacksonConfig config, List<String> paths) {
+            super(config);
+            this.paths = paths;
+        }
+
+        @Override
+        protected void writeMap(FieldDescriptor field, Object entries, JsonGenerator generator,
+                SerializerProvider serializerProvider) throws IOException {
+            paths.add(field.getName() + ": getField");
+            super.writeMap(field, entries, generator, serializerProvider);
+        }
+
+        @Override
+        protected void writeMap(FieldDescriptor field, Map<?, ?> map, JsonGenerator generator,
+                SerializerProvider serializerProvider) throws IOException {
+            paths.add(field.getName() + ": getLabelsMap");
+            super.writeMap(field, map, generator, serializerProvider);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.Timestamps;
+
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.group.jcommon.protobuf.jackson.ProtobufTimeFormat;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class ProtobufTimeFormatTest {
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new ProtobufModule());
+
+    @Test
+    public void testSameTimestampsAsTimestamps() throws Exception {
+        Random random = new Random(42);
+        char[] buffer = new char[ProtobufTimeFormat.MAX_TIMESTAMP_LENGTH];
+        for (int i = 0; i < 10000; i++) {
+            long seconds = i == 0 ? Timestamps.MIN_VALUE.getSeconds()
+                    : i == 1 ? Timestamps.MAX_VALUE.getSeconds()
+                    : Timestamps.MIN_VALUE.getSeconds() + (long) (random.nextDouble()
+                            * (Timestamps.MAX_VALUE.getSeconds() - Timestamps.MIN_VALUE.getSeconds()));
+            Timestamp timestamp = Timestamp.newBuilder().setSeconds(seconds).setNanos(nanos(random)).build();
+            String text = Timestamps.toString(timestamp);
+
+            int length = ProtobufTimeFormat.formatTimestamp(timestamp.getSeconds(), timestamp.getNanos(), buffer, 0);
+            assertEquals(text, new String(buffer, 0, length));
+            assertEquals(timestamp, ProtobufTimeFormat.parseTimestamp(text.toCharArray(), 0, text.length()));
+            assertEquals('"' + text + '"', mapper.writeValueAsString(timestamp));
+            assertEquals(timestamp, mapper.readValue('"' + text + '"', Timestamp.class));
+        }
+    }
+
+    @Test
+    public void testSameDurationsAsDurations() throws Exception {
+        Random random = new Random(42);
+        char[] buffer = new char[ProtobufTimeFormat.MAX_DURATION_LENGTH];
+        for (int i = 0; i < 10000; i++) {
+            long seconds = random.nextLong() % Durations.MAX_VALUE.getSeconds();
+            int nanos = seconds == 0 && random.nextBoolean() ? -nanos(random) : nanos(random);
+            Duration duration = Duration.newBuilder().setSeconds(seconds).setNanos(seconds < 0 ? -nanos : nanos).build();
+            String text = Durations.toString(duration);
+
+            int length = ProtobufTimeFormat.formatDuration(duration.getSeconds(), duration.getNanos(), buffer, 0);
+            assertEquals(text, new String(buffer, 0, length));
+            assertEquals(duration, ProtobufTimeFormat.parseDuration(text.toCharArray(), 0, text.length()));
+            assertEquals('"' + text + '"', mapper.writeValueAsString(duration));
+            assertEquals(duration, mapper.readValue('"' + text + '"', Duration.class));
+        }
+    }
+
+    @Test
+    public void testOtherForms() throws Exception {
+        String[] texts = { "1972-01-01T10:00:20.021-05:00", "1972-01-01T10:00:20+01:30", "2000-02-29T00:00:00.1Z",
+                "1969-12-31T23:59:59.123456789Z", "0001-01-01T00:00:00Z", "9999-12-31T23:59:59.999999999Z",
+                // out-of-range days roll over, Timestamps.parse being lenient
+                "2001-02-29T00:00:00Z" };
+        for (String text : texts) {
+            char[] chars = ("[" + text + "]").toCharArray();
+            assertEquals(Timestamps.parse(text), ProtobufTimeFormat.parseTimestamp(chars, 1, text.length()));
+        }
+        String[] durations = { "1.5s", "-0.5s", "0s", "-315576000000.999999999s", "1.000000001s" };
+        for (String text : durations) {
+            char[] chars = ("[" + text + "]").toCharArray();
+            assertEquals(Durations.parse(text), ProtobufTimeFormat.parseDuration(chars, 1, text.length()));
+        }
+    }
+
+    @Test
+    public void testInvalidValues() {
+        assertThrows(JsonMappingException.class, () -> mapper.readValue("\"1970-01-01 00:00:00Z\"", Timestamp.class));
+        assertThrows(JsonMappingException.class, () -> mapper.readValue("\"1.5\"", Duration.class));
+        assertThrows(JsonMappingException.class,
+                () -> mapper.writeValueAsString(Timestamp.newBuilder().setNanos(-1).build()));
+    }
+
+    private static int nanos(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return 0;
+            case 1:
+                return random.nextInt(1000) * 1000000;
+            case 2:
+                return random.nextInt(1000000) * 1000;
+            default:
+                return random.nextInt(1000000000);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.Value;
+
+import org.group.jcommon.jackson.util.ObjectMappers;
+import org.group.jcommon.proto.text.Sample;
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.proto.text.TextBullet;
+import org.group.jcommon.proto.text.TextProtos;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.group.jcommon.protobuf.jackson.ProtobufWarmup;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class ProtobufWarmupTest {
+
+    @Test
+    public void testNestedTypesAreWarmedUp() {
+        ProtobufWarmup warmup = ProtobufWarmup.builder().messageTypes(Sample.class).iterations(10).build();
+        assertTrue(warmup.messageTypes().contains(Sample.class));
+        assertTrue(warmup.messageTypes().contains(Series.class));
+        assertTrue(warmup.messageTypes().contains(TextBullet.class));
+        assertTrue(warmup.messageTypes().contains(Timestamp.class));
+        assertTrue(warmup.messageTypes().contains(Duration.class));
+        assertTrue(warmup.messageTypes().contains(Struct.class));
+        assertTrue(warmup.messageTypes().contains(Value.class));
+        assertTrue(warmup.messageTypes().contains(Int64Value.class));
+
+        ObjectMapper camelCase = new ObjectMapper().registerModule(new ProtobufModule());
+        ObjectMapper snakeCase = new ObjectMapper().registerModule(new ProtobufModule())
+                .setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
+        ProtobufWarmup.Report report = warmup.warmUp(camelCase, snakeCase);
+        assertEquals(warmup.messageTypes().size(), report.messageTypes());
+        assertTrue(report.failures().isEmpty(), report.toString());
+        assertTrue(report.elapsed(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    public void testFileDescriptors() {
+        ProtobufWarmup warmup = ProtobufWarmup.builder().fileDescriptors(TextProtos.getDescriptor()).build();
+        assertTrue(warmup.messageTypes().contains(Sample.class));
+        assertTrue(warmup.messageTypes().contains(TextBullet.class));
+
+        ProtobufWarmup.Report report = ObjectMappers.warmUp(warmup);
+        assertTrue(report.failures().isEmpty(), report.toString());
+    }
+}
@@ -0,0 +1,155 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+
+import org.group.jcommon.jackson.util.StripedBufferPool;
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.protobuf.jackson.ProtocolBufferMediaType;
+import org.group.jcommon.protobuf.jackson.ProtocolBufferMessageBodyProvider;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class ProtocolBufferMessageBodyProviderTest {
+    private final ProtocolBufferMessageBodyProvider provider = new ProtocolBufferMessageBodyProvider();
+
+    @Test
+    public void testJsonFormatCompatibleOutput() throws Exception {
+        Series series = Series.newBuilder().setName("cpu").addPoints(0.5).addTimestamps(1L).build();
+
+        long size = provider.getSize(series, Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TYPE_JSON);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(series, Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TYPE_JSON, null, out);
+
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals("{\"name\":\"cpu\",\"points\":[0.5],\"timestamps\":[\"1\"]}", json);
+        assertEquals(json.length(), size);
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testJsonFormatInputAccepted() throws Exception {
+        byte[] json = "{\"name\":\"cpu\",\"points\":[0.5],\"timestamps\":[\"1\", 2]}".getBytes(StandardCharsets.UTF_8);
+        Message series = provider.readFrom((Class) Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TYPE_JSON, null, new ByteArrayInputStream(json));
+        assertEquals(Series.newBuilder().setName("cpu").addPoints(0.5).addTimestamps(1L).addTimestamps(2L).build(),
+                series);
+    }
+
+    @Test
+    public void testLargeEntityStreamed() throws Exception {
+        ProtocolBufferMessageBodyProvider small = new ProtocolBufferMessageBodyProvider(16);
+        Series series = Series.newBuilder().setName("a fairly long series name").build();
+
+        assertEquals(-1, small.getSize(series, Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TYPE_JSON));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        small.writeTo(series, Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TYPE_JSON, null, out);
+        assertEquals("{\"name\":\"a fairly long series name\"}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testTextFormatRoundTrip() throws Exception {
+        Series series = Series.newBuilder().setName("caf\u00e9 \u2615").addPoints(0.5).build();
+
+        long size = provider.getSize(series, Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TEXT_TYPE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(series, Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TEXT_TYPE, null, out);
+
+        byte[] text = out.toByteArray();
+        assertEquals("name: \"caf\u00e9 \u2615\"\npoints: 0.5\n", new String(text, StandardCharsets.UTF_8));
+        assertEquals(text.length, size);
+        assertEquals(series, provider.readFrom((Class) Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TEXT_TYPE, null, new ByteArrayInputStream(text)));
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testBinaryEntityLimits() throws Exception {
+        ProtocolBufferMessageBodyProvider aliasing = ProtocolBufferMessageBodyProvider.builder().aliasing(true)
+                .sizeLimit(64).build();
+        Series series = Series.newBuilder().setName("cpu").addPoints(0.5).build();
+        ByteArrayInputStream in = new ByteArrayInputStream(series.toByteArray());
+        assertEquals(series, aliasing.readFrom((Class) Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TYPE, null, in));
+
+        Series large = Series.newBuilder().setName(String.join("", Collections.nCopies(64, "x"))).build();
+        ByteArrayInputStream largeIn = new ByteArrayInputStream(large.toByteArray());
+        assertThrows(InvalidProtocolBufferException.class, () -> aliasing.readFrom((Class) Series.class,
+                Series.class, null, ProtocolBufferMediaType.APPLICATION_PROTOBUF_TYPE, null, largeIn));
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testDeclaredLengthNotTrusted() throws Exception {
+        ProtocolBufferMessageBodyProvider aliasing = ProtocolBufferMessageBodyProvider.builder().aliasing(true).build();
+        Series series = Series.newBuilder().setName("cpu").addPoints(0.5).build();
+        MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, Integer.toString(Integer.MAX_VALUE));
+        assertEquals(series, aliasing.readFrom((Class) Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TYPE, headers,
+                new ByteArrayInputStream(series.toByteArray())));
+
+        // shorter than the entity, which then grows past the first array
+        Series large = Series.newBuilder().setName(String.join("", Collections.nCopies(100000, "x"))).build();
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, "10");
+        assertEquals(large, aliasing.readFrom((Class) Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TYPE, headers,
+                new ByteArrayInputStream(large.toByteArray())));
+    }
+
+    @Test
+    public void testTextBuffersRecycled() throws Exception {
+        StripedBufferPool pool = new StripedBufferPool(1, 16 * 1024);
+        ProtocolBufferMessageBodyProvider pooled = ProtocolBufferMessageBodyProvider.builder().bufferRecycling(pool)
+                .build();
+        Series series = Series.newBuilder().setName("cpu").addPoints(0.5).build();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(series, textRoundTrip(pooled, series));
+        }
+        // the entity buffer and writer buffer, then the read and text buffers
+        assertEquals(40, pool.acquired());
+        assertEquals(4, pool.allocated());
+        assertEquals(36, pool.reused());
+
+        // the entity and text outgrow the pool's buffers, which are not kept
+        Series large = Series.newBuilder().setName(String.join("", Collections.nCopies(20000, "x"))).build();
+        assertEquals(large, textRoundTrip(pooled, large));
+        assertEquals(2, pool.dropped());
+        assertTrue(pool.retainedBytes() <= pool.maxRetainedBytes());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Message textRoundTrip(ProtocolBufferMessageBodyProvider provider, Series series)
+            throws Exception {
+        long size = provider.getSize(series, Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TEXT_TYPE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(series, Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TEXT_TYPE, null, out);
+        assertEquals(out.size(), size);
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        return provider.readFrom((Class) Series.class, Series.class, null,
+                ProtocolBufferMediaType.APPLICATION_PROTOBUF_TEXT_TYPE, null, in);
+    }
+}
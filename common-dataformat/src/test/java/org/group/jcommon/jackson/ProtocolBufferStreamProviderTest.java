@@ -0,0 +1,70 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.ws.rs.core.MediaType;
+
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.protobuf.jackson.ProtocolBufferMediaType;
+import org.group.jcommon.protobuf.jackson.ProtocolBufferStreamProvider;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class ProtocolBufferStreamProviderTest {
+    private final ProtocolBufferStreamProvider provider = ProtocolBufferStreamProvider.builder().flushEvery(1).build();
+    private final List<Series> series = Arrays.asList(Series.newBuilder().setName("cpu").addPoints(0.5).build(),
+            Series.getDefaultInstance(), Series.newBuilder().setName("memory").addTimestamps(1L).build());
+
+    @SuppressWarnings("unused")
+    private Stream<Series> entity;
+
+    @Test
+    public void testDelimitedRoundTrip() throws Exception {
+        byte[] bytes = write(ProtocolBufferMediaType.APPLICATION_PROTOBUF_DELIMITED_TYPE);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (Series s : series) {
+            s.writeDelimitedTo(expected);
+        }
+        assertEquals(Arrays.toString(expected.toByteArray()), Arrays.toString(bytes));
+        assertEquals(series, read(ProtocolBufferMediaType.APPLICATION_PROTOBUF_DELIMITED_TYPE, bytes));
+    }
+
+    @Test
+    public void testNdjsonRoundTrip() throws Exception {
+        byte[] bytes = write(ProtocolBufferMediaType.APPLICATION_PROTOBUF_NDJSON_TYPE);
+
+        assertEquals("{\"name\":\"cpu\",\"points\":[0.5]}\n{}\n{\"name\":\"memory\",\"timestamps\":[\"1\"]}\n",
+                new String(bytes, StandardCharsets.UTF_8));
+        assertEquals(series, read(ProtocolBufferMediaType.APPLICATION_PROTOBUF_NDJSON_TYPE, bytes));
+    }
+
+    private byte[] write(MediaType mediaType) throws Exception {
+        Type type = getClass().getDeclaredField("entity").getGenericType();
+        assertTrue(provider.isWriteable(Stream.class, type, null, mediaType));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(series.stream(), Stream.class, type, null, mediaType, null, out);
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Series> read(MediaType mediaType, byte[] bytes) throws Exception {
+        Type type = getClass().getDeclaredField("entity").getGenericType();
+        assertTrue(provider.isReadable(Stream.class, type, null, mediaType));
+        Class<Object> streamType = (Class<Object>) (Class<?>) Stream.class;
+        Stream<Series> stream = (Stream<Series>) provider.readFrom(streamType, type, null, mediaType, null,
+                new ByteArrayInputStream(bytes));
+        return stream.collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,114 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Message;
+import com.google.protobuf.Value;
+
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.protobuf.jackson.FieldAccessor;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.group.jcommon.protobuf.jackson.buildin.deserializers.MessageDeserializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class RepeatedScalarFieldTest {
+    private static final FieldDescriptor POINTS = Series.getDescriptor().findFieldByName("points");
+    private static final FieldDescriptor TIMESTAMPS = Series.getDescriptor().findFieldByName("timestamps");
+
+    private final Series series = Series.newBuilder().setName("cpu").addPoints(0.5).addPoints(-1e-3)
+            .addTimestamps(1L).addTimestamps(Long.MAX_VALUE).build();
+
+    @Test
+    public void testElementsAddedThroughAccessors() throws Exception {
+        List<String> paths = new ArrayList<>();
+        ObjectMapper generated = recordingMapper(ProtobufJacksonConfig.builder().generatedCodecs(false)
+                .generatedAccessors(true).build(), paths);
+        String json = generated.writeValueAsString(series);
+        assertEquals(series, generated.readValue(json, Series.class));
+        assertEquals(Arrays.asList("points: addPoints", "timestamps: addTimestamps"), paths);
+
+        paths.clear();
+        ObjectMapper reflective = recordingMapper(ProtobufJacksonConfig.builder().generatedCodecs(false).build(),
+                paths);
+        assertEquals(series, reflective.readValue(json, Series.class));
+        assertEquals(Arrays.asList("points: addRepeatedField", "timestamps: addRepeatedField"), paths);
+    }
+
+    @Test
+    public void testAccessorsBoundToBuilders() {
+        FieldAccessor points = FieldAccessor.accessorsFor(Series.Builder.class)[POINTS.getIndex()];
+        assertTrue(points.isRepeated());
+        Series.Builder builder = Series.newBuilder();
+        points.addDouble(builder, 0.5);
+        points.addDouble(builder, -1e-3);
+        FieldAccessor.accessorsFor(Series.Builder.class)[TIMESTAMPS.getIndex()].addLong(builder, 1L);
+        assertEquals(Arrays.asList(0.5, -1e-3), builder.getPointsList());
+        assertEquals(Collections.singletonList(1L), builder.getTimestampsList());
+
+        // messages can't be added to
+        assertFalse(FieldAccessor.accessorsFor(Series.class)[POINTS.getIndex()].canGet());
+    }
+
+    @Test
+    public void testSameValuesOnEveryPath() throws Exception {
+        ObjectMapper reflective = new ObjectMapper().registerModule(new ProtobufModule(
+                ProtobufJacksonConfig.builder().generatedCodecs(false).build()));
+        ObjectMapper accessors = new ObjectMapper().registerModule(new ProtobufModule(
+                ProtobufJacksonConfig.builder().generatedCodecs(false).generatedAccessors(true).build()));
+        ObjectMapper generated = new ObjectMapper().registerModule(new ProtobufModule());
+        String json = "{\"name\":\"cpu\",\"points\":[0.5,-1e-3],\"timestamps\":[\"1\",9223372036854775807]}";
+        for (ObjectMapper mapper : Arrays.asList(reflective, accessors, generated)) {
+            assertEquals(series, mapper.readValue(json, Series.class));
+            assertEquals(Series.getDefaultInstance(), mapper.readValue("{\"points\":null}", Series.class));
+        }
+
+        ListValue list = ListValue.newBuilder().addValues(Value.newBuilder().setNumberValue(1))
+                .addValues(Value.newBuilder().setStringValue("a")).build();
+        assertEquals(list, reflective.readValue("[1,\"a\"]", ListValue.class));
+    }
+
+    private static ObjectMapper recordingMapper(ProtobufJacksonConfig config, List<String> paths) {
+        RecordingDeserializer deserializer = new RecordingDeserializer(config, paths);
+        return new ObjectMapper().registerModule(new ProtobufModule(config))
+                .registerModule(new SimpleModule().addDeserializer(Series.class, deserializer.buildAtEnd()));
+    }
+
+    /**
+     * Records whether repeated fields are added through their accessors.
+     */
+    private static final class RecordingDeserializer extends MessageDeserializer<Series, Series.Builder> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<String> paths;
+
+        RecordingDeserializer(ProtobufJacksonConfig config, List<String> paths) {
+            super(Series.class, config);
+            this.paths = paths;
+        }
+
+        @Override
+        protected void readRepeated(Message.Builder builder, FieldDescriptor field, FieldAccessor accessor,
+                Message defaultInstance, JsonParser parser, DeserializationContext context) throws IOException {
+            String adder = field == POINTS ? "addPoints" : "addTimestamps";
+            paths.add(field.getName() + ": " + (accessor != null ? adder : "addRepeatedField"));
+            super.readRepeated(builder, field, accessor, defaultInstance, parser, context);
+        }
+    }
+}
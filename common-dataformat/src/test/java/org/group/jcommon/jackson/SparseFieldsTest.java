@@ -0,0 +1,93 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+
+import org.group.jcommon.proto.legacy.Wide;
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.protobuf.jackson.FieldAccessor;
+import org.group.jcommon.protobuf.jackson.HasBits;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class SparseFieldsTest {
+    // generated codecs are disabled so both mappers go through MessageSerializer
+    private final ObjectMapper reflective = new ObjectMapper()
+            .registerModule(new ProtobufModule(ProtobufJacksonConfig.builder().generatedCodecs(false).build()))
+            .setSerializationInclusion(Include.NON_DEFAULT);
+    private final ObjectMapper accessors = new ObjectMapper().registerModule(new ProtobufModule(
+            ProtobufJacksonConfig.builder().generatedCodecs(false).generatedAccessors(true).build()))
+            .setSerializationInclusion(Include.NON_DEFAULT);
+
+    @Test
+    public void testOnlySetFieldsVisited() {
+        HasBits hasBits = HasBits.forClass(Wide.class);
+        assertNotNull(hasBits);
+
+        Wide wide = Wide.newBuilder().setF2("b").setF20("t").setF35(35).setB(2).build();
+        List<String> visited = new ArrayList<>();
+        for (int i = hasBits.next(wide, 0); i >= 0; i = hasBits.next(wide, i + 1)) {
+            visited.add(Wide.getDescriptor().getFields().get(i).getName());
+        }
+        // the set fields, and the ones without a has-bit, of 37
+        assertEquals(Arrays.asList("f2", "values", "f20", "f35", "a", "b"), visited);
+
+        visited.clear();
+        for (int i = hasBits.next(Wide.getDefaultInstance(), 0); i >= 0;
+                i = hasBits.next(Wide.getDefaultInstance(), i + 1)) {
+            visited.add(Wide.getDescriptor().getFields().get(i).getName());
+        }
+        assertEquals(Arrays.asList("values", "a", "b"), visited);
+    }
+
+    @Test
+    public void testSameOutputAsFullScan() throws Exception {
+        Wide wide = Wide.newBuilder().setF1(0).setF2("b").addValues(1).setF33(-1).setF34("x").setA("a").build();
+        String json = "{\"f1\":0,\"f2\":\"b\",\"values\":[1],\"f33\":-1,\"f34\":\"x\",\"a\":\"a\"}";
+        for (ObjectMapper mapper : Arrays.asList(reflective, accessors)) {
+            assertEquals(json, mapper.writeValueAsString(wide));
+            // builders and dynamic messages take the other paths
+            assertEquals(json, mapper.writeValueAsString(wide.toBuilder()));
+            assertEquals(json, mapper.writeValueAsString(DynamicMessage.newBuilder(wide).build()));
+            assertEquals(wide, mapper.readValue(json, Wide.class));
+        }
+        assertEquals("{}", reflective.writeValueAsString(Wide.getDefaultInstance()));
+    }
+
+    @Test
+    public void testNoHasBitsWithoutPresence() {
+        assertNull(HasBits.forClass(Wide.Builder.class));
+        assertNull(HasBits.forClass(DynamicMessage.class));
+        // proto3 fields without presence are checked one by one
+        assertNull(HasBits.forClass(Series.class));
+    }
+
+    @Test
+    public void testPresenceFromElementCounts() throws Exception {
+        Series series = Series.newBuilder().setName("cpu").addPoints(0.5).putLabels("host", "a").build();
+        Descriptor descriptor = Series.getDescriptor();
+        FieldAccessor[] fieldAccessors = FieldAccessor.accessorsFor(Series.class);
+        assertTrue(fieldAccessors[descriptor.findFieldByName("points").getIndex()].isPresent(series));
+        assertFalse(fieldAccessors[descriptor.findFieldByName("timestamps").getIndex()].isPresent(series));
+
+        String json = reflective.writeValueAsString(series);
+        assertEquals("{\"name\":\"cpu\",\"points\":[0.5],\"labels\":{\"host\":\"a\"}}", json);
+        assertEquals(json, reflective.writeValueAsString(DynamicMessage.newBuilder(series).build()));
+        assertEquals(json, accessors.writeValueAsString(series));
+    }
+}
@@ -0,0 +1,107 @@
+package org.group.jcommon.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import com.google.protobuf.UnsafeByteOperations;
+
+import org.group.jcommon.proto.legacy.Record;
+import org.group.jcommon.proto.text.Sample;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class StringAndBytesFieldTest {
+    private final ObjectMapper reflective = new ObjectMapper().registerModule(new ProtobufModule(
+            ProtobufJacksonConfig.builder().generatedCodecs(false).build()));
+    private final ObjectMapper accessors = new ObjectMapper().registerModule(new ProtobufModule(
+            ProtobufJacksonConfig.builder().generatedCodecs(false).generatedAccessors(true).build()));
+    private final ObjectMapper generated = new ObjectMapper().registerModule(new ProtobufModule());
+
+    @Test
+    public void testUtf8StringsWrittenAsIs() throws Exception {
+        Record record = Record.newBuilder().setName("caf\u00e9 \u6f22\u5b57 \"quoted\"\n").addTags("\u0000").build();
+        String json = "{\"name\":\"caf\u00e9 \u6f22\u5b57 \\\"quoted\\\"\\n\",\"count\":7,\"priority\":\"NORMAL\","
+                + "\"tags\":[\"\\u0000\"],\"payload\":\"\"}";
+        assertSameOutput(json, record);
+    }
+
+    @Test
+    public void testSupplementaryCharactersEscaped() throws Exception {
+        // UTF-8 output escapes surrogate pairs, whichever path writes the field
+        Record record = Record.newBuilder().setName("a\ud83d\ude00b").addTags("\ud83d\ude00").build();
+        String json = "{\"name\":\"a\\uD83D\\uDE00b\",\"count\":7,\"priority\":\"NORMAL\","
+                + "\"tags\":[\"\\uD83D\\uDE00\"],\"payload\":\"\"}";
+        for (ObjectMapper mapper : Arrays.asList(reflective, accessors, generated)) {
+            assertEquals(json, new String(mapper.writeValueAsBytes(record), StandardCharsets.UTF_8));
+            assertEquals(reflective.writeValueAsString(record), mapper.writeValueAsString(record));
+        }
+        Record read = generated.readValue(generated.writeValueAsBytes(record), Record.class);
+        assertEquals(record.getName(), read.getName());
+        assertEquals(record.getTagsList(), read.getTagsList());
+    }
+
+    @Test
+    public void testNonAsciiEscapedWhenEnabled() throws Exception {
+        Record record = Record.newBuilder().setName("caf\u00e9").build();
+        for (ObjectMapper mapper : Arrays.asList(reflective, accessors, generated)) {
+            mapper.getFactory().enable(JsonWriteFeature.ESCAPE_NON_ASCII.mappedFeature());
+            assertTrue(new String(mapper.writeValueAsBytes(record), StandardCharsets.UTF_8)
+                    .startsWith("{\"name\":\"caf\\u00E9\""));
+        }
+    }
+
+    @Test
+    public void testInvalidUtf8Replaced() throws Exception {
+        // proto2 strings are not checked when parsed
+        Record record = Record.parseFrom(new byte[] { 0x0A, 0x03, 'a', (byte) 0xC3, 0x28 });
+        assertSameOutput(reflective.writeValueAsString(record), record);
+        assertTrue(reflective.writeValueAsString(record).startsWith("{\"name\":\"a\ufffd(\""));
+    }
+
+    @Test
+    public void testBytesFromEveryKindOfByteString() throws Exception {
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(content.length);
+        direct.put(content);
+        ((Buffer) direct).flip();
+        ByteString[] payloads = {
+            ByteString.copyFrom(content),
+            ByteString.copyFrom(content).substring(1, 999),
+            ByteString.copyFrom(content, 0, 500).concat(ByteString.copyFrom(content, 500, 500)),
+            UnsafeByteOperations.unsafeWrap(direct),
+            ByteString.EMPTY
+        };
+        for (ByteString payload : payloads) {
+            Sample sample = Sample.newBuilder().setPayload(payload).build();
+            String json = payload.isEmpty() ? "{\"history\":[],\"series\":{}}"
+                    : "{\"payload\":\"" + Base64.getEncoder().encodeToString(payload.toByteArray())
+                            + "\",\"history\":[],\"series\":{}}";
+            assertSameOutput(json, sample);
+            assertEquals(sample, generated.readValue(json, Sample.class));
+            assertEquals(sample, generated.readValue(json.getBytes(StandardCharsets.UTF_8), Sample.class));
+        }
+    }
+
+    private void assertSameOutput(String json, Message message) throws Exception {
+        for (ObjectMapper mapper : Arrays.asList(reflective, accessors, generated)) {
+            assertEquals(json, mapper.writeValueAsString(message));
+            assertEquals(json, new String(mapper.writeValueAsBytes(message), StandardCharsets.UTF_8));
+        }
+    }
+}
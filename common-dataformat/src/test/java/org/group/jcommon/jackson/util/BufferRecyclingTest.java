@@ -0,0 +1,86 @@
+package org.group.jcommon.jackson.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class BufferRecyclingTest {
+    static class Order {
+        @JsonProperty
+        String id;
+    }
+
+    @Test
+    public void testStripedBufferPool() {
+        StripedBufferPool pool = BufferRecyclingStrategy.striped();
+        ObjectMappers.setBufferRecycling(pool);
+        try {
+            Order order = new Order();
+            order.id = "001";
+            for (int i = 0; i < 10; i++) {
+                String json = ObjectMappers.mustWriteValue(order);
+                assertEquals("001", ObjectMappers.mustReadValue(json, Order.class).id);
+            }
+        } finally {
+            ObjectMappers.setBufferRecycling(BufferRecyclingStrategy.threadLocal());
+        }
+        assertEquals(pool.acquired(), pool.reused() + pool.allocated());
+        assertTrue(pool.reused() > pool.allocated());
+        assertTrue(pool.retainedBytes() > 0 && pool.retainedBytes() <= pool.maxRetainedBytes());
+    }
+
+    @Test
+    public void testCompactBuffersRecycled() {
+        List<Integer> taken = new ArrayList<>();
+        List<Integer> given = new ArrayList<>();
+        BufferRecycler recycler = new BufferRecycler() {
+            @Override
+            public byte[] allocByteBuffer(int ix, int minSize) {
+                byte[] buffer = super.allocByteBuffer(ix, minSize);
+                if (ix == BufferRecycler.BYTE_WRITE_CONCAT_BUFFER) {
+                    taken.add(buffer.length);
+                }
+                return buffer;
+            }
+
+            @Override
+            public void releaseByteBuffer(int ix, byte[] buffer) {
+                if (ix == BufferRecycler.BYTE_WRITE_CONCAT_BUFFER) {
+                    given.add(buffer.length);
+                }
+                super.releaseByteBuffer(ix, buffer);
+            }
+        };
+        ObjectMappers.setBufferRecycling(() -> recycler);
+        try {
+            Order order = new Order();
+            order.id = "001";
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ObjectMappers.writeObjectCompact(order, out);
+            ObjectMappers.writeObjectCompact(order, out);
+            assertEquals("{\"id\":\"001\"}{\"id\":\"001\"}", out.toString());
+            assertEquals(Arrays.asList(2000, 2000), taken);
+            assertEquals(taken, given);
+
+            // larger buffers are not given back
+            order.id = String.join("", Collections.nCopies(300 * 1024, "x"));
+            ObjectMappers.writeObjectCompact(order, new ByteArrayOutputStream());
+            assertEquals(3, taken.size());
+            assertEquals(2, given.size());
+        } finally {
+            ObjectMappers.setBufferRecycling(BufferRecyclingStrategy.threadLocal());
+        }
+    }
+}
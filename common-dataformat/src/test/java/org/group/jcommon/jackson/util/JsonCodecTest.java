@@ -0,0 +1,136 @@
+package org.group.jcommon.jackson.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.google.common.collect.Lists;
+
+import org.group.jcommon.proto.text.TextBullet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class JsonCodecTest {
+    static class Order {
+        @JsonProperty
+        String id;
+        @JsonProperty
+        int cents;
+    }
+
+    /**
+     * Rejected by the compact writer when {@code broken}, for the value alone.
+     */
+    @JsonSerialize(using = PickySerializer.class)
+    static class Picky {
+        final boolean broken;
+
+        Picky(boolean broken) {
+            this.broken = broken;
+        }
+    }
+
+    /**
+     * Always rejected by the compact writer, as a definition error.
+     */
+    @JsonSerialize(using = PickySerializer.class)
+    static class Unsupported {
+    }
+
+    static class PickySerializer extends StdSerializer<Object> {
+        private static final long serialVersionUID = 1L;
+
+        PickySerializer() {
+            super(Object.class);
+        }
+
+        @Override
+        public void serialize(Object value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            if (provider.getConfig().getDefaultPropertyInclusion().getValueInclusion() == Include.NON_DEFAULT) {
+                if (value instanceof Unsupported) {
+                    throw InvalidDefinitionException.from(generator, "not compact",
+                            provider.constructType(value.getClass()));
+                } else if (((Picky) value).broken) {
+                    throw JsonMappingException.from(generator, "not compact");
+                }
+            }
+            generator.writeString(value.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    public void testCodec() {
+        JsonCodec<Order> codec = ObjectMappers.codec(Order.class);
+        assertTrue(codec == ObjectMappers.codec(Order.class));
+
+        Order order = codec.mustRead("{\"id\":\"001\",\"cents\":0}");
+        assertEquals("{\"id\":\"001\",\"cents\":0}", codec.mustWrite(order));
+        assertEquals("{\"id\":\"001\"}", codec.writeCompact(order));
+        assertEquals(ObjectMappers.writeObjectCompact(order), codec.writeCompact(order));
+        assertTrue(codec.compactSupported());
+
+        JsonCodec<List<TextBullet>> bullets = ObjectMappers.codec(new TypeReference<List<TextBullet>>() {
+        });
+        assertTrue(bullets == ObjectMappers.codec(new TypeReference<List<TextBullet>>() {
+        }));
+        List<TextBullet> list = bullets.mustRead("[{\"text\":\"a\"},{}]".getBytes(StandardCharsets.UTF_8));
+        assertEquals(Lists.newArrayList(TextBullet.newBuilder().setText("a").build(), TextBullet.getDefaultInstance()),
+                list);
+        assertEquals("[{\"text\":\"a\"},{}]", bullets.mustWrite(list));
+    }
+
+    @Test
+    public void testCompactFallbackRememberedForBeanDefinitions() {
+        assertEquals("\"Unsupported\"", ObjectMappers.writeObjectCompact(new Unsupported()));
+        assertFalse(ObjectMappers.codec(Unsupported.class).compactSupported());
+
+        JsonBuffer buffer = new JsonBuffer();
+        ObjectMappers.writeObjectCompact(new Unsupported(), buffer);
+        assertEquals("\"Unsupported\"", buffer.toString());
+    }
+
+    @Test
+    public void testCompactFallbackPerValue() {
+        assertEquals("\"Picky\"", ObjectMappers.writeObjectCompact(new Picky(true)));
+        assertTrue(ObjectMappers.codec(Picky.class).compactSupported());
+
+        Order order = new Order();
+        order.id = "001";
+        Map<String, Object> map = new HashMap<>();
+        map.put("picky", new Picky(true));
+        map.put("order", order);
+        assertEquals(ObjectMappers.mustWriteValue(map), ObjectMappers.writeObjectCompact(map));
+        List<Object> list = new ArrayList<>(map.values());
+        JsonBuffer buffer = new JsonBuffer();
+        ObjectMappers.writeObjectCompact(list, buffer);
+        assertEquals(ObjectMappers.mustWriteValue(list), buffer.toString());
+
+        // later containers of the same classes are still written compactly
+        map.put("picky", new Picky(false));
+        assertEquals(ObjectMappers.mustWriteValue(map).replace(",\"cents\":0", ""),
+                ObjectMappers.writeObjectCompact(map));
+        assertTrue(ObjectMappers.codec(HashMap.class).compactSupported());
+        list = new ArrayList<>(map.values());
+        buffer.reset();
+        ObjectMappers.writeObjectCompact(list, buffer);
+        assertEquals(ObjectMappers.mustWriteValue(list).replace(",\"cents\":0", ""), buffer.toString());
+        assertTrue(ObjectMappers.codec(ArrayList.class).compactSupported());
+    }
+}
@@ -0,0 +1,70 @@
+package org.group.jcommon.jackson.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import org.group.jcommon.proto.text.TextBullet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class ObjectMappersBytesTest {
+    static class Order {
+        @JsonProperty
+        String id;
+        @JsonProperty
+        int cents;
+    }
+
+    @Test
+    public void testReadBytesAndStreams() {
+        byte[] json = "{\"id\":\"001\",\"cents\":10}".getBytes(StandardCharsets.UTF_8);
+        assertEquals("001", ObjectMappers.mustReadValue(json, Order.class).id);
+        assertEquals(10, ObjectMappers.mustReadValue(new ByteArrayInputStream(json), Order.class).cents);
+
+        ByteBuffer buffer = ByteBuffer.allocate(json.length + 2);
+        buffer.put((byte) ' ').put(json);
+        ((Buffer) buffer).flip();
+        ((Buffer) buffer).position(1);
+        assertEquals("001", ObjectMappers.mustReadValue(buffer, Order.class).id);
+        assertEquals(1, buffer.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(json.length);
+        direct.put(json);
+        ((Buffer) direct).flip();
+        assertEquals(10, ObjectMappers.mustReadTree(direct).get("cents").asInt());
+
+        TextBullet bullet = TextBullet.newBuilder().setText("FIRST_USE").build();
+        byte[] proto = ObjectMappers.mustWriteValueAsBytes(bullet);
+        assertEquals(bullet, ObjectMappers.mustReadProto(proto, TextBullet.class));
+        assertEquals(bullet, ObjectMappers.mustReadProto(ByteBuffer.wrap(proto), TextBullet.class));
+    }
+
+    @Test
+    public void testWriteIntoReusedBuffer() {
+        Order order = new Order();
+        order.id = "001";
+        JsonBuffer buffer = new JsonBuffer(4);
+        for (int i = 0; i < 3; i++) {
+            buffer.reset();
+            ObjectMappers.writeObjectCompact(order, buffer);
+            assertEquals("{\"id\":\"001\"}", buffer.toString());
+        }
+        buffer.write('\n');
+        ObjectMappers.mustWriteValue(TextBullet.newBuilder().setText("a").build(), buffer);
+        assertEquals("{\"id\":\"001\"}\n{\"text\":\"a\"}", buffer.toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectMappers.writeObjectCompact(order, out);
+        ObjectMappers.mustWriteValue(order, out);
+        assertEquals("{\"id\":\"001\"}{\"id\":\"001\",\"cents\":0}",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,130 @@
+package org.group.jcommon.jackson.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Duration;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Message;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.FieldMaskUtil;
+import com.google.protobuf.util.FieldMaskUtil.MergeOptions;
+import com.google.protobuf.util.JsonFormat;
+
+import org.group.jcommon.proto.text.Level;
+import org.group.jcommon.proto.text.Sample;
+import org.group.jcommon.proto.text.Series;
+import org.group.jcommon.proto.text.TextBullet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The proto helpers of {@link ObjectMappers} against {@link JsonFormat}.
+ */
+@Tag("fast")
+public class ProtoJsonCompatibilityTest {
+    private final ObjectMapper plain = new ObjectMapper();
+
+    private final Sample sample = Sample.newBuilder()
+            .setId(-9007199254740993L)
+            .setChecksum(-1L)
+            .setFlags(-1)
+            .setRatio(0.25f)
+            .setPayload(ByteString.copyFromUtf8("payload"))
+            .setLevel(Level.HIGH)
+            .addHistory(Level.LOW).addHistory(Level.LEVEL_UNSPECIFIED)
+            .setBullet(TextBullet.getDefaultInstance())
+            .putSeries(7, Series.newBuilder().setName("cpu").addPoints(0.5).addTimestamps(1L).putLabels("a", "b")
+                    .build())
+            .setCreated(Timestamp.newBuilder().setSeconds(1500000000L).setNanos(500000000))
+            .setTtl(Duration.newBuilder().setSeconds(-3L).setNanos(-1000))
+            .setAttributes(Struct.newBuilder()
+                    .putFields("name", Value.newBuilder().setStringValue("x").build())
+                    .putFields("count", Value.newBuilder().setNumberValue(2).build())
+                    .putFields("none", Value.newBuilder().setNullValueValue(0).build()))
+            .setLimit(Int64Value.newBuilder().setValue(5L))
+            .setSlot(0)
+            .build();
+
+    private final List<Message> messages = Arrays.asList(sample, Sample.getDefaultInstance(),
+            Sample.newBuilder().setUrl("https://example.com").build(),
+            TextBullet.newBuilder().setText("FIRST_USE").setHighlightColor("red").build(),
+            Timestamp.newBuilder().setSeconds(-1L).setNanos(123000).build(),
+            Duration.newBuilder().setSeconds(90L).build(),
+            Int64Value.newBuilder().setValue(Long.MAX_VALUE).build(),
+            Value.newBuilder().setListValue(ListValue.newBuilder()
+                    .addValues(Value.newBuilder().setBoolValue(true))).build());
+
+    @Test
+    public void testCompactOutput() throws Exception {
+        for (Message message : messages) {
+            String expected = JsonFormat.printer().omittingInsignificantWhitespace().print(message);
+            assertEquals(expected, ObjectMappers.mustWriteValue(message));
+            assertEquals(expected, ObjectMappers.writeObjectCompact(message));
+            assertEquals(expected, ObjectMappers.mustWriteValue(message.toBuilder()));
+        }
+    }
+
+    @Test
+    public void testPrettyOutput() throws Exception {
+        for (Message message : messages) {
+            assertEquals(plain.readTree(JsonFormat.printer().print(message)),
+                    plain.readTree(ObjectMappers.mustWriteValuePretty(message)));
+        }
+    }
+
+    @Test
+    public void testReadJsonFormatOutput() throws Exception {
+        for (Message message : messages) {
+            String json = JsonFormat.printer().print(message);
+            assertEquals(message, ObjectMappers.mustReadProto(json, message.getClass()));
+        }
+    }
+
+    @Test
+    public void testTrees() throws Exception {
+        for (Message message : messages) {
+            JsonNode tree = ObjectMappers.mustProtoToTree(message);
+            assertEquals(plain.readTree(JsonFormat.printer().print(message)),
+                    plain.readTree(plain.writeValueAsString(tree)));
+            assertEquals(message, ObjectMappers.mustReadProto(tree, message.getClass()));
+        }
+        Struct attributes = sample.getAttributes();
+        assertEquals(attributes, ObjectMappers.mustReadProto(ObjectMappers.mustProtoToTree(attributes), Struct.class));
+        JsonNode parsed = plain.readTree("{\"name\":\"x\",\"count\":2,\"none\":null}");
+        assertEquals(attributes, ObjectMappers.mustReadProto(parsed, Struct.class));
+    }
+
+    @Test
+    public void testFieldMask() throws Exception {
+        for (String paths : Arrays.asList("id,bullet.text,series,url", "bullet.highlight,bullet", "ttl,created,slot",
+                "history.level,series.name,unknown,bullet.color", "")) {
+            FieldMask fieldMask = FieldMaskUtil.fromString(paths);
+            Sample.Builder trimmed = Sample.newBuilder();
+            // unset scalars such as the url of the oneof aren't written with their default value
+            FieldMaskUtil.merge(fieldMask, sample, trimmed, new MergeOptions().setReplacePrimitiveFields(true));
+            String expected = JsonFormat.printer().omittingInsignificantWhitespace().print(trimmed);
+            assertEquals(expected, ObjectMappers.mustWriteProto(sample, fieldMask), paths);
+            assertEquals(expected, ObjectMappers.mustWriteProto(sample.toBuilder(), fieldMask), paths);
+        }
+    }
+
+    @Test
+    public void testReadAsJsonFormatDoes() throws Exception {
+        String json = "{\"id\":12,\"checksum\":\"18446744073709551615\",\"level\":\"NOT_A_LEVEL\","
+                + "\"history\":[1,\"HIGH\"],\"unknown\":{\"a\":[1]},\"series\":{\"3\":{\"name\":\"m\"}},"
+                + "\"created\":\"2017-07-14T02:40:00.5Z\",\"ttl\":\"1.5s\",\"limit\":\"7\"}";
+        Sample.Builder expected = Sample.newBuilder();
+        JsonFormat.parser().ignoringUnknownFields().merge(json, expected);
+        assertEquals(expected.build(), ObjectMappers.mustReadProto(json, Sample.class));
+    }
+}
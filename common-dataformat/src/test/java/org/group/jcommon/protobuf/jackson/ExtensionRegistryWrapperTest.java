@@ -0,0 +1,123 @@
+package org.group.jcommon.protobuf.jackson;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.ExtensionRegistry.ExtensionInfo;
+
+import org.group.jcommon.proto.legacy.Extendable;
+import org.group.jcommon.proto.legacy.LegacyProtos;
+import org.group.jcommon.proto.legacy.Record;
+import org.group.jcommon.proto.legacy.Wide;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class ExtensionRegistryWrapperTest {
+    private static final ExtensionRegistry EXTENSIONS = ExtensionRegistry.newInstance();
+
+    static {
+        LegacyProtos.registerAllExtensions(EXTENSIONS);
+    }
+
+    @Test
+    public void testLookups() {
+        ExtensionRegistryWrapper wrapper = ExtensionRegistryWrapper.wrap(EXTENSIONS);
+        ExtensionTable camelCase = wrapper.getExtensionTable(Extendable.getDescriptor(), null);
+        ExtensionTable snakeCase = wrapper.getExtensionTable(Extendable.getDescriptor(),
+                PropertyNamingStrategy.SNAKE_CASE);
+        assertSame(camelCase, wrapper.getExtensionTable(Extendable.getDescriptor(), null));
+        assertSame(snakeCase, wrapper.getExtensionTable(Extendable.getDescriptor(),
+                PropertyNamingStrategy.SNAKE_CASE));
+
+        assertEquals(3, camelCase.size());
+        assertEquals(Arrays.asList("extraNote", "extraCount", "extraRecord"), names(camelCase));
+        assertEquals(Arrays.asList("extra_note", "extra_count", "extra_record"), names(snakeCase));
+        assertSame(LegacyProtos.extraCount.getDescriptor(), camelCase.descriptor(1));
+        assertSame(camelCase.get(1), camelCase.findByName(new String("extraCount".toCharArray())));
+        assertSame(camelCase.get(1), snakeCase.findByName("extra_count"));
+        assertNull(camelCase.findByName("extra_count"));
+        assertNull(snakeCase.findByName("extraCount"));
+        assertNull(camelCase.defaultInstance(0));
+        assertSame(Record.getDefaultInstance(), camelCase.defaultInstance(2));
+
+        // in field number order, the same set under every naming strategy
+        List<Integer> numbers = new ArrayList<>();
+        for (ExtensionInfo extension : wrapper.getExtensionsByDescriptor(Extendable.getDescriptor())) {
+            numbers.add(extension.descriptor.getNumber());
+        }
+        assertEquals(Arrays.asList(100, 101, 102), numbers);
+        assertSame(camelCase.extensions(), snakeCase.extensions());
+
+        assertEquals(0, wrapper.getExtensionTable(Record.getDescriptor(), null).size());
+        assertSame(ExtensionTable.EMPTY, ExtensionRegistryWrapper.empty()
+                .getExtensionTable(Extendable.getDescriptor(), null));
+    }
+
+    @Test
+    public void testBoundedRetention() {
+        ExtensionRegistryWrapper wrapper = ExtensionRegistryWrapper.wrap(EXTENSIONS, 1);
+        ExtensionTable table = wrapper.getExtensionTable(Extendable.getDescriptor(), null);
+        assertSame(table, wrapper.getExtensionTable(Extendable.getDescriptor(), null));
+
+        // another descriptor evicts the first, whose table is built again
+        wrapper.getExtensionTable(Record.getDescriptor(), null);
+        ExtensionTable rebuilt = wrapper.getExtensionTable(Extendable.getDescriptor(), null);
+        assertNotSame(table, rebuilt);
+        assertEquals(names(table), names(rebuilt));
+
+        ConcurrentMap<Descriptor, String> cache = wrapper.newDescriptorCache();
+        for (Descriptor descriptor : Arrays.asList(Extendable.getDescriptor(), Record.getDescriptor(),
+                Wide.getDescriptor())) {
+            cache.put(descriptor, descriptor.getName());
+            assertEquals(1, cache.size());
+        }
+        assertEquals("Wide", cache.get(Wide.getDescriptor()));
+
+        ConcurrentMap<Descriptor, String> unbounded = ExtensionRegistryWrapper.wrap(EXTENSIONS).newDescriptorCache();
+        unbounded.put(Extendable.getDescriptor(), "Extendable");
+        unbounded.put(Record.getDescriptor(), "Record");
+        assertEquals(2, unbounded.size());
+    }
+
+    @Test
+    public void testSoftRetention() {
+        ExtensionRegistryWrapper wrapper = ExtensionRegistryWrapper.wrapSoftly(EXTENSIONS);
+        WeakReference<ExtensionTable> table = new WeakReference<>(
+                wrapper.getExtensionTable(Extendable.getDescriptor(), null));
+        System.gc();
+        assertSame(table.get(), wrapper.getExtensionTable(Extendable.getDescriptor(), null));
+
+        // soft references are cleared before running out of memory
+        try {
+            List<long[]> filler = new ArrayList<>();
+            while (true) {
+                filler.add(new long[Integer.MAX_VALUE - 8]);
+            }
+        } catch (OutOfMemoryError expected) {
+            // the soft references are gone by now
+        }
+        assertNull(table.get());
+        assertEquals(Arrays.asList("extraNote", "extraCount", "extraRecord"),
+                names(wrapper.getExtensionTable(Extendable.getDescriptor(), null)));
+    }
+
+    private static List<String> names(ExtensionTable table) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < table.size(); i++) {
+            names.add(table.name(i));
+        }
+        return names;
+    }
+}
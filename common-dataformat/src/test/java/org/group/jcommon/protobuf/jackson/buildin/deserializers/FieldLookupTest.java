@@ -0,0 +1,142 @@
+package org.group.jcommon.protobuf.jackson.buildin.deserializers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.ExtensionRegistry;
+
+import org.group.jcommon.proto.legacy.Extendable;
+import org.group.jcommon.proto.legacy.LegacyProtos;
+import org.group.jcommon.proto.legacy.Record;
+import org.group.jcommon.protobuf.jackson.ExtensionRegistryWrapper;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class FieldLookupTest {
+    private static final ExtensionRegistry EXTENSIONS = ExtensionRegistry.newInstance();
+
+    static {
+        LegacyProtos.registerAllExtensions(EXTENSIONS);
+    }
+
+    private final ProtobufJacksonConfig config = ProtobufJacksonConfig.builder()
+            .extensionRegistry(ExtensionRegistryWrapper.wrap(EXTENSIONS)).build();
+    private final ProtobufJacksonConfig literal = ProtobufJacksonConfig.builder()
+            .extensionRegistry(ExtensionRegistryWrapper.wrap(EXTENSIONS)).acceptLiteralFieldnames(true).build();
+
+    @Test
+    public void testNamesNotInterned() throws Exception {
+        FieldLookup lookup = FieldLookup.build(Record.getDescriptor(), null, false, config, null);
+        String name = notInterned("name");
+        assertNotSame(name.intern(), name);
+        assertSame(Record.getDescriptor().findFieldByName("name"), lookup.get(name).field);
+
+        // generated codecs are disabled so that messages go through MessageDeserializer
+        ObjectMapper mapper = new ObjectMapper().registerModule(new ProtobufModule(
+                ProtobufJacksonConfig.builder().generatedCodecs(false).build()));
+        Record record = Record.newBuilder().setName("r").setCount(3).addTags("t").build();
+
+        TokenBuffer tokens = new TokenBuffer(mapper, false);
+        tokens.writeStartObject();
+        tokens.writeFieldName(notInterned("name"));
+        tokens.writeString("r");
+        tokens.writeFieldName(notInterned("count"));
+        tokens.writeNumber(3);
+        tokens.writeFieldName(notInterned("tags"));
+        tokens.writeStartArray();
+        tokens.writeString("t");
+        tokens.writeEndArray();
+        tokens.writeEndObject();
+        assertEquals(record, mapper.readValue(tokens.asParser(), Record.class));
+
+        ObjectNode tree = mapper.createObjectNode();
+        tree.put(notInterned("name"), "r");
+        tree.put(notInterned("count"), 3);
+        tree.putArray(notInterned("tags")).add("t");
+        assertEquals(record, mapper.readValue(mapper.treeAsTokens(tree), Record.class));
+        assertEquals(record, mapper.treeToValue(tree, Record.class));
+    }
+
+    @Test
+    public void testLiteralFieldnames() throws Exception {
+        Descriptor descriptor = Extendable.getDescriptor();
+        FieldLookup camelCase = FieldLookup.build(descriptor, null, true, config, null);
+        assertSame(descriptor.findFieldByName("display_name"), camelCase.get("displayName").field);
+        assertNull(camelCase.get("display_name"));
+
+        FieldLookup both = FieldLookup.build(descriptor, null, true, literal, null);
+        assertSame(descriptor.findFieldByName("display_name"), both.get("displayName").field);
+        assertSame(descriptor.findFieldByName("display_name"), both.get(notInterned("display_name")).field);
+        // extensions are looked up under the translated name only
+        assertSame(LegacyProtos.extraRecord.getDescriptor(), both.get("extraRecord").field);
+        assertSame(Record.getDefaultInstance(), both.get("extraRecord").defaultInstance);
+        assertNull(both.get("extra_record"));
+
+        FieldLookup snakeCase = FieldLookup.build(descriptor, PropertyNamingStrategy.SNAKE_CASE, true, literal, null);
+        assertSame(descriptor.findFieldByName("display_name"), snakeCase.get("display_name").field);
+        assertNull(snakeCase.get("displayName"));
+        assertSame(LegacyProtos.extraNote.getDescriptor(), snakeCase.get("extra_note").field);
+
+        ObjectMapper mapper = new ObjectMapper().registerModule(new ProtobufModule(ProtobufJacksonConfig.builder()
+                .extensionRegistry(ExtensionRegistryWrapper.wrap(EXTENSIONS)).acceptLiteralFieldnames(true)
+                .generatedCodecs(false).build()));
+        Extendable expected = Extendable.newBuilder().setDisplayName("a").setCount(2)
+                .setExtension(LegacyProtos.extraNote, "n").build();
+        assertEquals(expected, mapper.readValue("{\"display_name\":\"a\",\"count\":2,\"extraNote\":\"n\"}",
+                Extendable.class));
+    }
+
+    @Test
+    public void testCollidingNames() throws Exception {
+        // "AaAa", "AaBB", "BBAa" and "BBBB" have the same hash code, kept as they are by UPPER_CAMEL_CASE
+        Descriptor clash = descriptor("AaAa", "AaBB", "BBAa", "value_count", "valueCount");
+        FieldLookup lookup = FieldLookup.build(clash, PropertyNamingStrategy.UPPER_CAMEL_CASE, false, literal, null);
+        for (String name : new String[] { "AaAa", "AaBB", "BBAa" }) {
+            assertSame(clash.findFieldByName(name), lookup.get(notInterned(name)).field);
+        }
+        assertNull(lookup.get("BBBB"));
+        assertNull(lookup.get("aaAa"));
+
+        // a translated name wins over the literal name of another field
+        FieldLookup camelCase = FieldLookup.build(clash, null, false, literal, null);
+        assertSame(clash.findFieldByName("valueCount"), camelCase.get("valueCount").field);
+        assertSame(clash.findFieldByName("value_count"), camelCase.get("value_count").field);
+        assertSame(clash.findFieldByName("AaAa"), camelCase.get("AaAa").field);
+        assertSame(clash.findFieldByName("AaAa"), camelCase.get("aaAa").field);
+
+        // one lookup per setting, chained for the same descriptor
+        FieldLookup chained = FieldLookup.build(clash, null, false, literal, lookup);
+        assertSame(chained, FieldLookup.find(chained, null, false));
+        assertSame(lookup, FieldLookup.find(chained, PropertyNamingStrategy.UPPER_CAMEL_CASE, false));
+        assertNull(FieldLookup.find(chained, null, true));
+    }
+
+    private static Descriptor descriptor(String... names) throws Exception {
+        DescriptorProto.Builder message = DescriptorProto.newBuilder().setName("Clash");
+        for (int i = 0; i < names.length; i++) {
+            message.addField(FieldDescriptorProto.newBuilder().setName(names[i]).setNumber(i + 1)
+                    .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL).setType(FieldDescriptorProto.Type.TYPE_INT32));
+        }
+        FileDescriptorProto file = FileDescriptorProto.newBuilder().setName("clash.proto").addMessageType(message)
+                .build();
+        return FileDescriptor.buildFrom(file, new FileDescriptor[0]).findMessageTypeByName("Clash");
+    }
+
+    private static String notInterned(String name) {
+        return new String(name.toCharArray());
+    }
+}
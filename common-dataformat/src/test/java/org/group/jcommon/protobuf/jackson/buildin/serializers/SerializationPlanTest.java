@@ -0,0 +1,130 @@
+package org.group.jcommon.protobuf.jackson.buildin.serializers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.protobuf.ExtensionRegistry;
+
+import org.group.jcommon.proto.legacy.Extendable;
+import org.group.jcommon.proto.legacy.LegacyProtos;
+import org.group.jcommon.proto.legacy.Record;
+import org.group.jcommon.protobuf.jackson.ExtensionRegistryWrapper;
+import org.group.jcommon.protobuf.jackson.ProtobufJacksonConfig;
+import org.group.jcommon.protobuf.jackson.ProtobufModule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("fast")
+public class SerializationPlanTest {
+    private static final ExtensionRegistry EXTENSIONS = ExtensionRegistry.newInstance();
+
+    static {
+        LegacyProtos.registerAllExtensions(EXTENSIONS);
+    }
+
+    // generated codecs are disabled so that messages go through MessageSerializer
+    private final ProtobufJacksonConfig config = ProtobufJacksonConfig.builder()
+            .extensionRegistry(ExtensionRegistryWrapper.wrap(EXTENSIONS)).generatedCodecs(false).build();
+
+    private final Extendable message = Extendable.newBuilder().setDisplayName("a").addTags("t")
+            .setExtension(LegacyProtos.extraNote, "n")
+            .setExtension(LegacyProtos.extraRecord, Record.newBuilder().setName("r").build())
+            .build();
+
+    @Test
+    public void testPlansReusedPerSettings() {
+        MessageSerializer serializer = new MessageSerializer(config);
+        SerializerProvider nonDefault = provider(Include.NON_DEFAULT, null);
+        SerializationPlan plan = serializer.planFor(message, nonDefault);
+        assertSame(plan, serializer.planFor(Extendable.getDefaultInstance(), nonDefault));
+        assertSame(plan, serializer.planFor(message.toBuilder(), provider(Include.NON_DEFAULT, null)));
+
+        SerializationPlan snakeCase = serializer.planFor(message,
+                provider(Include.NON_DEFAULT, PropertyNamingStrategy.SNAKE_CASE));
+        SerializationPlan always = serializer.planFor(message, provider(Include.ALWAYS, null));
+        assertNotSame(plan, snakeCase);
+        assertNotSame(plan, always);
+        assertNotSame(snakeCase, always);
+        assertNotSame(plan, serializer.planFor(Record.getDefaultInstance(), nonDefault));
+
+        // chained per descriptor, each one found again
+        assertSame(plan, serializer.planFor(message, nonDefault));
+        assertSame(snakeCase, serializer.planFor(message,
+                provider(Include.NON_DEFAULT, PropertyNamingStrategy.SNAKE_CASE)));
+        assertSame(always, serializer.planFor(message, provider(Include.ALWAYS, null)));
+
+        assertEquals(Arrays.asList("extraNote", "extraCount", "extraRecord"), names(plan.extensionFields));
+        assertEquals(Arrays.asList("extra_note", "extra_count", "extra_record"), names(snakeCase.extensionFields));
+        assertEquals(Arrays.asList("display_name", "count", "tags"), names(snakeCase.fields));
+    }
+
+    @Test
+    public void testSameOutputForEverySetting() throws Exception {
+        String defaults = "{\"name\":\"r\",\"count\":7,\"priority\":\"NORMAL\",";
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("ALWAYS", "{\"displayName\":\"a\",\"count\":0,\"tags\":[\"t\"],\"extraNote\":\"n\","
+                + "\"extraCount\":0,\"extraRecord\":" + defaults + "\"tags\":[],\"parent\":null,\"payload\":\"\"}}");
+        expected.put("NON_NULL", "{\"displayName\":\"a\",\"count\":0,\"tags\":[\"t\"],\"extraNote\":\"n\","
+                + "\"extraCount\":0,\"extraRecord\":" + defaults + "\"tags\":[],\"payload\":\"\"}}");
+        expected.put("NON_EMPTY", "{\"displayName\":\"a\",\"count\":0,\"tags\":[\"t\"],\"extraNote\":\"n\","
+                + "\"extraCount\":0,\"extraRecord\":" + defaults + "\"payload\":\"\"}}");
+        expected.put("NON_DEFAULT",
+                "{\"displayName\":\"a\",\"tags\":[\"t\"],\"extraNote\":\"n\",\"extraRecord\":{\"name\":\"r\"}}");
+
+        // one serializer, and so one set of plans, for every mapper
+        MessageSerializer serializer = new MessageSerializer(config);
+        List<ObjectMapper> mappers = new ArrayList<>();
+        List<String> outputs = new ArrayList<>();
+        for (PropertyNamingStrategy namingStrategy : Arrays.asList(null, PropertyNamingStrategy.SNAKE_CASE)) {
+            for (Map.Entry<String, String> e : expected.entrySet()) {
+                mappers.add(new ObjectMapper().registerModule(new ProtobufModule(config))
+                        .registerModule(new SimpleModule().addSerializer(serializer))
+                        .setPropertyNamingStrategy(namingStrategy)
+                        .setSerializationInclusion(Include.valueOf(e.getKey())));
+                outputs.add(namingStrategy == null ? e.getValue() : e.getValue().replace("displayName",
+                        "display_name").replace("extraNote", "extra_note").replace("extraCount", "extra_count")
+                        .replace("extraRecord", "extra_record"));
+            }
+        }
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < mappers.size(); i++) {
+                assertEquals(outputs.get(i), mappers.get(i).writeValueAsString(message));
+                assertEquals(outputs.get(i), new String(mappers.get(i).writeValueAsBytes(message),
+                        StandardCharsets.UTF_8));
+            }
+            // the other way round, once every plan is there
+            Collections.reverse(mappers);
+            Collections.reverse(outputs);
+        }
+        // only what is set is written under NON_DEFAULT, extensions read back included
+        assertEquals(message, mappers.get(3).readValue(outputs.get(3), Extendable.class));
+    }
+
+    private static SerializerProvider provider(Include include, PropertyNamingStrategy namingStrategy) {
+        return new ObjectMapper().setSerializationInclusion(include).setPropertyNamingStrategy(namingStrategy)
+                .getSerializerProviderInstance();
+    }
+
+    private static List<String> names(SerializationPlan.PlannedField[] fields) {
+        List<String> names = new ArrayList<>();
+        for (SerializationPlan.PlannedField field : fields) {
+            names.add(field.name.getValue());
+        }
+        return names;
+    }
+}